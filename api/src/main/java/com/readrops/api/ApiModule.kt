@@ -12,10 +12,14 @@ import com.readrops.api.services.nextcloudnews.adapters.NextNewsFeedsAdapter
 import com.readrops.api.services.nextcloudnews.adapters.NextNewsFoldersAdapter
 import com.readrops.api.services.nextcloudnews.adapters.NextNewsItemsAdapter
 import com.readrops.api.utils.AuthInterceptor
+import com.readrops.api.utils.ServiceCache
+import com.readrops.api.utils.NetworkMetrics
+import com.readrops.db.Database
 import com.readrops.db.entities.Item
 import com.squareup.moshi.Moshi
 import com.squareup.moshi.Types
 import okhttp3.OkHttpClient
+import org.koin.core.parameter.parametersOf
 import org.koin.core.qualifier.named
 import org.koin.dsl.module
 import retrofit2.Retrofit
@@ -25,16 +29,31 @@ import java.util.concurrent.TimeUnit
 
 val apiModule = module {
 
+    single { NetworkMetrics(get<Database>().hostMetricsDao()) }
+
+    // account clients derived from this one share its network metrics
     single {
         OkHttpClient.Builder()
                 .callTimeout(1, TimeUnit.MINUTES)
                 .readTimeout(1, TimeUnit.HOURS)
-                .addInterceptor(get<AuthInterceptor>())
                 .addInterceptor(NiddlerOkHttpInterceptor(get(), "niddler"))
+                .eventListenerFactory(get<NetworkMetrics>())
                 .build()
     }
 
-    single { AuthInterceptor() }
+    // account client, with its own immutable credentials so accounts can be used concurrently
+    // shares the connection pool and the dispatcher of the main client, which has no credentials
+    // its response bytes are counted apart from the other clients calling the same host
+    factory(named("accountClient")) { (credentials: Credentials) ->
+        val networkMetrics = get<NetworkMetrics>()
+
+        get<OkHttpClient>().newBuilder()
+                .addInterceptor(AuthInterceptor(credentials))
+                .eventListenerFactory(networkMetrics.counting(networkMetrics.accountCounter(credentials)))
+                .build()
+    }
+
+    single { ServiceCache() }
 
     single { LocalRSSDataSource(get()) }
 
@@ -43,22 +62,25 @@ val apiModule = module {
     factory { params -> FreshRSSDataSource(get(parameters = { params })) }
 
     factory { (credentials: Credentials) ->
-        Retrofit.Builder()
-                .baseUrl(credentials.url)
-                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
-                .client(get())
-                .addConverterFactory(MoshiConverterFactory.create(get(named("freshrssMoshi"))))
-                .build()
-                .create(FreshRSSService::class.java)
+        get<ServiceCache>().get(FreshRSSService::class.java, credentials) {
+            Retrofit.Builder()
+                    .baseUrl(credentials.url)
+                    .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                    .client(get(named("accountClient")) { parametersOf(credentials) })
+                    .addConverterFactory(MoshiConverterFactory.create(get(named("freshrssMoshi"))))
+                    .build()
+                    .create(FreshRSSService::class.java)
+        }
     }
 
     single(named("freshrssMoshi")) {
         Moshi.Builder()
-                .add(Types.newParameterizedType(List::class.java, Item::class.java), FreshRSSItemsAdapter())
-                .add(Types.newParameterizedType(List::class.java, String::class.java), FreshRSSItemsIdsAdapter())
+                .add(Types.newParameterizedType(FreshRSSPage::class.java, String::class.java),
+                        FreshRSSPageAdapter(FreshRSSItemsIdsAdapter()::fromJsonPage))
                 .add(FreshRSSFeedsAdapter())
                 .add(FreshRSSFoldersAdapter())
                 .add(FreshRSSUserInfoAdapter())
+                .add(FreshRSSUnreadCountAdapter())
                 .build()
     }
 
@@ -69,13 +91,15 @@ val apiModule = module {
     factory { params -> NextNewsDataSource(get(parameters = { params })) }
 
     factory { (credentials: Credentials) ->
-        Retrofit.Builder()
-                .baseUrl(credentials.url)
-                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
-                .client(get())
-                .addConverterFactory(MoshiConverterFactory.create(get(named("nextcloudNewsMoshi"))))
-                .build()
-                .create(NextNewsService::class.java)
+        get<ServiceCache>().get(NextNewsService::class.java, credentials) {
+            Retrofit.Builder()
+                    .baseUrl(credentials.url)
+                    .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                    .client(get(named("accountClient")) { parametersOf(credentials) })
+                    .addConverterFactory(MoshiConverterFactory.create(get(named("nextcloudNewsMoshi"))))
+                    .build()
+                    .create(NextNewsService::class.java)
+        }
     }
 
     single(named("nextcloudNewsMoshi")) {
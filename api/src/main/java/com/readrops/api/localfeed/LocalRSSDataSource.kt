@@ -6,7 +6,7 @@ import com.gitlab.mvysny.konsumexml.Konsumer
 import com.gitlab.mvysny.konsumexml.konsumeXml
 import com.readrops.api.localfeed.json.JSONFeedAdapter
 import com.readrops.api.utils.ApiUtils
-import com.readrops.api.utils.AuthInterceptor
+import com.readrops.api.utils.ByteCounter
 import com.readrops.api.utils.exceptions.ParseException
 import com.readrops.api.utils.exceptions.UnknownFormatException
 import com.readrops.db.entities.Feed
@@ -18,25 +18,27 @@ import okhttp3.OkHttpClient
 import okhttp3.Request
 import okhttp3.Response
 import okio.Buffer
-import org.koin.core.component.KoinComponent
-import org.koin.core.component.get
 import java.io.IOException
 import java.lang.Exception
 import java.net.HttpURLConnection
 
-class LocalRSSDataSource(private val httpClient: OkHttpClient) : KoinComponent {
+class LocalRSSDataSource(private val httpClient: OkHttpClient) {
 
     /**
      * Query RSS url
      * @param url url to query
      * @param headers request headers
+     * @param onResponse called with the response once its headers are received, before the body is read and parsed
+     * @param byteCounter counts the bytes received by this call, redirects included
      * @return a Feed object with its items
      */
     @Throws(ParseException::class, UnknownFormatException::class, NetworkErrorException::class, IOException::class)
     @WorkerThread
-    fun queryRSSResource(url: String, headers: Headers?): Pair<Feed, List<Item>>? {
-        get<AuthInterceptor>().credentials = null
-        val response = queryUrl(url, headers)
+    @JvmOverloads
+    fun queryRSSResource(url: String, headers: Headers?, onResponse: ResponseListener? = null,
+                         byteCounter: ByteCounter? = null): Pair<Feed, List<Item>>? {
+        val response = queryUrl(url, headers, byteCounter)
+        onResponse?.onResponse(response)
 
         return when {
             response.isSuccessful -> {
@@ -87,9 +89,10 @@ class LocalRSSDataSource(private val httpClient: OkHttpClient) : KoinComponent {
     }
 
     @Throws(IOException::class)
-    private fun queryUrl(url: String, headers: Headers?): Response {
+    private fun queryUrl(url: String, headers: Headers?, byteCounter: ByteCounter? = null): Response {
         val requestBuilder = Request.Builder().url(url)
         headers?.let { requestBuilder.headers(it) }
+        byteCounter?.let { requestBuilder.tag(ByteCounter::class.java, it) }
 
         return httpClient.newCall(requestBuilder.build()).execute()
     }
@@ -170,4 +173,8 @@ class LocalRSSDataSource(private val httpClient: OkHttpClient) : KoinComponent {
                     if (siteUrl == null) siteUrl = response.request.url.scheme + "://" + response.request.url.host
                 }
             }
-}
\ No newline at end of file
+
+    fun interface ResponseListener {
+        fun onResponse(response: Response)
+    }
+}
@@ -47,7 +47,7 @@ object OPMLParser {
                                 for (feed in folderAndFeeds.value) {
                                     "outline" {
                                         feed.name?.let { attribute("title", it) }
-                                        attribute("xmlUrl", feed.url!!)
+                                        attribute("xmlUrl", feed.originalUrl ?: feed.url!!)
                                         feed.siteUrl?.let { attribute("htmlUrl", it) }
                                     }
                                 }
@@ -56,7 +56,7 @@ object OPMLParser {
                             for (feed in folderAndFeeds.value) { // feeds without folder
                                 "outline" {
                                     feed.name?.let { attribute("title", it) }
-                                    attribute("xmlUrl", feed.url!!)
+                                    attribute("xmlUrl", feed.originalUrl ?: feed.url!!)
                                     feed.siteUrl?.let { attribute("htmlUrl", it) }
                                 }
                             }
@@ -0,0 +1,59 @@
+package com.readrops.api.services
+
+import com.readrops.db.entities.Item
+
+/**
+ * What notifications need to know about the items inserted by a sync, without keeping the items:
+ * their database ids, their count per feed, and the preview of each feed first new item.
+ * Items can be added from the database writer thread while the summary is read from another one.
+ */
+class NewItemsSummary {
+
+    private val ids = mutableListOf<Long>()
+    private val feedCounts = linkedMapOf<Int, Int>()
+    private val firstItems = hashMapOf<Int, NewItemPreview>()
+
+    /**
+     * @param items inserted items, with their database ids
+     */
+    @Synchronized
+    fun addAll(items: List<Item>) {
+        for (item in items) {
+            ids += item.id.toLong()
+            feedCounts[item.feedId] = (feedCounts[item.feedId] ?: 0) + 1
+
+            if (item.feedId !in firstItems) firstItems[item.feedId] = NewItemPreview(item.id, item.feedId, item.title, item.imageLink)
+        }
+    }
+
+    val itemIds: List<Long>
+        @Synchronized get() = ids.toList()
+
+    val count: Int
+        @Synchronized get() = ids.size
+
+    val isEmpty: Boolean
+        get() = count == 0
+
+    /**
+     * New items count per feed id, in insertion order of the feeds
+     */
+    val countsByFeed: Map<Int, Int>
+        @Synchronized get() = LinkedHashMap(feedCounts)
+
+    /**
+     * @return the new item of the feed if it is the only one, null otherwise
+     */
+    @Synchronized
+    fun singleItem(feedId: Int): NewItemPreview? = if (feedCounts[feedId] == 1) firstItems[feedId] else null
+}
+
+/**
+ * Item fields displayed by a notification
+ */
+data class NewItemPreview(
+        val id: Int,
+        val feedId: Int,
+        val title: String?,
+        val imageLink: String?,
+)
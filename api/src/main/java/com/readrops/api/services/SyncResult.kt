@@ -3,8 +3,9 @@ package com.readrops.api.services
 import com.readrops.db.entities.Feed
 import com.readrops.db.entities.Folder
 import com.readrops.db.entities.Item
+import java.util.Collections
 
-class SyncResult(var items: List<Item> = mutableListOf(),
+class SyncResult(var newItems: NewItemsSummary = NewItemsSummary(),
                  var starredItems: List<Item> = mutableListOf(),
                  var feeds: List<Feed> = listOf(),
                  var folders: List<Folder> = listOf(),
@@ -12,4 +13,25 @@ class SyncResult(var items: List<Item> = mutableListOf(),
                  var readIds: List<String>? = null,
                  var starredIds: List<String>? = null,
                  var isError: Boolean = false
-)
+) {
+
+    /**
+     * Sync stages durations in milliseconds, in completion order.
+     * Stages may overlap, they can be completed from different threads.
+     */
+    val stageDurations: Map<String, Long> = Collections.synchronizedMap(linkedMapOf())
+
+    fun addStageDuration(stage: String, duration: Long) {
+        (stageDurations as MutableMap)[stage] = duration
+    }
+
+    /**
+     * Failed requests descriptions, a sync can continue after some of them
+     */
+    val errors: List<String> = Collections.synchronizedList(mutableListOf())
+
+    fun addError(error: String) {
+        (errors as MutableList) += error
+        isError = true
+    }
+}
@@ -1,30 +1,63 @@
 package com.readrops.api.services.freshrss;
 
+import android.os.SystemClock;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.readrops.api.services.SyncResult;
 import com.readrops.api.services.SyncType;
+import com.readrops.api.services.freshrss.FreshRSSSyncSink.ItemsIdsState;
+import com.readrops.api.services.freshrss.adapters.FreshRSSItemsAdapter;
+import com.readrops.api.services.freshrss.adapters.FreshRSSPage;
+import com.readrops.api.services.freshrss.adapters.FreshRSSUnreadCount;
 import com.readrops.api.services.freshrss.adapters.FreshRSSUserInfo;
 import com.readrops.db.entities.Feed;
 import com.readrops.db.entities.Folder;
 import com.readrops.db.entities.Item;
+import com.readrops.db.entities.MarkAllReadOperation;
+import com.readrops.db.entities.MarkAllReadScope;
+import com.squareup.moshi.JsonReader;
 
+import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Properties;
 
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Single;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
 import okhttp3.MultipartBody;
 import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
 
 public class FreshRSSDataSource {
 
-    private static final int MAX_ITEMS = 2500;
-    private static final int MAX_STARRED_ITEMS = 1000;
+    private static final int ITEMS_PAGE_SIZE = 1000;
+    private static final int ITEMS_CHUNK_SIZE = 100;
+    private static final int IDS_PAGE_SIZE = 1000;
+
+    // covers items created during the previous sync, in seconds
+    private static final long STATES_WINDOW_MARGIN = 3600;
+
+    private static final int EDIT_TAG_CHUNK_SIZE = 250;
+    private static final int MAX_CONCURRENT_PUSHES = 4;
+    private static final int PUSH_RETRIES = 2;
+
+    public static final String STAGE_PUSH = "push";
+    public static final String STAGE_FOLDERS_FEEDS = "folders and feeds";
+    public static final String STAGE_PULL = "pull";
+    public static final String STAGE_PULL_ITEMS = "pull items";
+    public static final String STAGE_PULL_ITEMS_IDS = "pull items ids";
+
+    public static final String STEP_UNREAD_ITEMS = "unread_items";
+    public static final String STEP_STARRED_ITEMS = "starred_items";
 
     public static final String GOOGLE_READ = "user/-/state/com.google/read";
     public static final String GOOGLE_UNREAD = "user/-/state/com.google/unread";
@@ -34,6 +67,7 @@ public class FreshRSSDataSource {
     private static final String FEED_PREFIX = "feed/";
 
     private final FreshRSSService api;
+    private final FreshRSSItemsAdapter itemsAdapter = new FreshRSSItemsAdapter();
 
     public FreshRSSDataSource(FreshRSSService api) {
         this.api = api;
@@ -82,40 +116,141 @@ public class FreshRSSDataSource {
     }
 
     /**
-     * Synchronize feeds, folders, items and push read/unread items
+     * Synchronize feeds, folders, items and push read/unread items.
+     * The sync runs in stages : local changes are pushed first so pulled states include them,
+     * then folders and feeds, then items and items ids which are pulled in parallel.
+     * Items and items ids are fetched page by page and handed to the sink,
+     * items being streamed by chunks while each response is downloaded,
+     * so the memory used doesn't depend on the account size.
+     * Each stage duration is reported in {@link SyncResult#getStageDurations()}.
+     * Pages stop being requested once the subscription is disposed,
+     * an initial sync can then be resumed from the last checkpoint handed to the sink.
      *
      * @param syncType   INITIAL or CLASSIC
      * @param syncData   data to sync (read/unread items ids, lastModified timestamp)
      * @param writeToken token for making modifications on the server
-     * @return the result of the synchronization
+     * @param sink       receiver of the pulled folders, feeds, items and items ids, must accept calls from two threads
+     * @return the result of the synchronization, without items
      */
-    public Single<SyncResult> sync(@NonNull SyncType syncType, @NonNull FreshRSSSyncData syncData, @NonNull String writeToken) {
+    public Single<SyncResult> sync(@NonNull SyncType syncType, @NonNull FreshRSSSyncData syncData, @NonNull String writeToken,
+                                   @NonNull FreshRSSSyncSink sink) {
+        SyncResult syncResult = new SyncResult();
+
+        // mark-all-read operations must be applied before the other changes and before fetching items ids
+        Completable pushChanges = markAllAsRead(syncData, writeToken)
+                .andThen(pushItemsStates(syncData, writeToken));
+
+        Completable pullFoldersAndFeeds = Single.zip(getFolders(), getFeeds(), (folders, feeds) -> {
+            sink.onFoldersAndFeeds(folders, feeds);
+
+            syncResult.setFolders(folders);
+            syncResult.setFeeds(feeds);
+            return syncResult;
+        }).ignoreElement();
+
+        return timeStage(STAGE_PUSH, pushChanges, syncResult)
+                .andThen(timeStage(STAGE_FOLDERS_FEEDS, pullFoldersAndFeeds, syncResult))
+                .andThen(timeStage(STAGE_PULL, pullItems(syncType, syncData, sink, syncResult), syncResult))
+                .toSingleDefault(syncResult);
+    }
+
+    /**
+     * Items and items ids are independent, they are pulled in parallel.
+     * Ids pulls stay sequential as items states are rebuilt from them in order.
+     */
+    private Completable pullItems(@NonNull SyncType syncType, @NonNull FreshRSSSyncData syncData,
+                                  @NonNull FreshRSSSyncSink sink, @NonNull SyncResult syncResult) {
+        Completable items;
+        Completable itemsIds;
+
         if (syncType == SyncType.INITIAL_SYNC) {
-            return Single.zip(setItemsReadState(syncData, writeToken).toSingleDefault(""),
-                    setItemsStarState(syncData, writeToken).toSingleDefault(""),
-                    getFolders(),
-                    getFeeds(),
-                    getItems(Arrays.asList(GOOGLE_READ, GOOGLE_STARRED), MAX_ITEMS, null),
-                    getItemsIds(GOOGLE_READ, GOOGLE_READING_LIST, MAX_ITEMS), // unread items ids
-                    getItemsIds(null, GOOGLE_STARRED, MAX_STARRED_ITEMS), // starred items ids
-                    getStarredItems(MAX_STARRED_ITEMS),
-                    (readState, starState, folders, feeds, items, unreadItemsIds, starredItemsIds, starredItems) ->
-                            new SyncResult(items, starredItems, feeds, folders, unreadItemsIds, Collections.emptyList(), starredItemsIds, false)
-            );
+            items = getInitialItems(syncData, sink);
+
+            itemsIds = Completable.fromAction(sink::onItemsStatesReset).andThen(Completable.concatArray(
+                    getItemsIds(GOOGLE_READ, GOOGLE_READING_LIST, null, ids -> sink.onItemsIds(ids, ItemsIdsState.UNREAD)),
+                    getItemsIds(null, GOOGLE_STARRED, null, ids -> sink.onItemsIds(ids, ItemsIdsState.STARRED))
+            ));
         } else {
-            return Single.zip(setItemsReadState(syncData, writeToken).toSingleDefault(""),
-                    setItemsStarState(syncData, writeToken).toSingleDefault(""),
-                    getFolders(),
-                    getFeeds(),
-                    getItems(null, MAX_ITEMS, syncData.getLastModified()),
-                    getItemsIds(GOOGLE_READ, GOOGLE_READING_LIST, MAX_ITEMS), // unread items ids
-                    getItemsIds(GOOGLE_UNREAD, GOOGLE_READING_LIST, MAX_ITEMS), // read items ids
-                    getItemsIds(null, GOOGLE_STARRED, MAX_STARRED_ITEMS), // starred items ids
-                    (readState, starState, folders, feeds, items, unreadItemsIds, readItemsIds, starredItemsIds) ->
-                            new SyncResult(items, Collections.emptyList(), feeds, folders, unreadItemsIds, readItemsIds, starredItemsIds, false)
-
-            );
+            items = getItems(null, syncData.getLastModified(), chunk -> sink.onItems(chunk, false));
+
+            if (syncData.getFullStatesSync()) {
+                itemsIds = reconcileItemsStates(sink);
+            } else {
+                // read states of the items created since the last sync: FreshRSS filters on the item creation time,
+                // not on the state change time, so changes made elsewhere on older items are not pulled here.
+                // They are caught by the repository unread count check, or by the periodic reconciliation.
+                long startTime = syncData.getLastModified() - STATES_WINDOW_MARGIN;
+                itemsIds = getItemsStates(startTime, sink);
+            }
         }
+
+        return Completable.mergeArray(
+                timeStage(STAGE_PULL_ITEMS, items, syncResult).subscribeOn(Schedulers.io()),
+                timeStage(STAGE_PULL_ITEMS_IDS, itemsIds, syncResult).subscribeOn(Schedulers.io())
+        );
+    }
+
+    /**
+     * Unread then starred items, each page being checkpointed.
+     * The pull resumes from the data checkpoint if a previous one was interrupted.
+     */
+    private Completable getInitialItems(@NonNull FreshRSSSyncData syncData, @NonNull FreshRSSSyncSink sink) {
+        boolean starredStep = STEP_STARRED_ITEMS.equals(syncData.getCheckpointStep());
+        boolean unreadStep = STEP_UNREAD_ITEMS.equals(syncData.getCheckpointStep());
+
+        Completable unreadItems = starredStep ? Completable.complete() :
+                getItems(Arrays.asList(GOOGLE_READ, GOOGLE_STARRED), null,
+                        unreadStep ? syncData.getCheckpointContinuation() : null,
+                        chunk -> sink.onItems(chunk, false),
+                        continuation -> sink.onCheckpoint(STEP_UNREAD_ITEMS, continuation))
+                        .andThen(Completable.fromAction(() -> sink.onCheckpoint(STEP_STARRED_ITEMS, null)));
+
+        return unreadItems.andThen(getStarredItems(starredStep ? syncData.getCheckpointContinuation() : null,
+                chunk -> sink.onItems(chunk, true),
+                continuation -> sink.onCheckpoint(STEP_STARRED_ITEMS, continuation)));
+    }
+
+    /**
+     * Drop the local items states and pull the full unread, read and starred ids lists.
+     * Transfer depends on the account size, it should run only periodically or when states have drifted.
+     *
+     * @param sink receiver of the ids pages
+     * @return Completable
+     */
+    public Completable reconcileItemsStates(@NonNull FreshRSSSyncSink sink) {
+        return Completable.fromAction(sink::onItemsStatesReset)
+                .andThen(getItemsStates(null, sink));
+    }
+
+    /**
+     * The starred list is small and has no count to check it against,
+     * it is always pulled in full so items unstarred elsewhere are caught
+     */
+    private Completable getItemsStates(@Nullable Long startTime, @NonNull FreshRSSSyncSink sink) {
+        return Completable.concatArray(
+                getItemsIds(GOOGLE_READ, GOOGLE_READING_LIST, startTime, ids -> sink.onItemsIds(ids, ItemsIdsState.UNREAD)),
+                getItemsIds(GOOGLE_UNREAD, GOOGLE_READING_LIST, startTime, ids -> sink.onItemsIds(ids, ItemsIdsState.READ)),
+                Completable.fromAction(sink::onStarredStatesReset),
+                getItemsIds(null, GOOGLE_STARRED, null, ids -> sink.onItemsIds(ids, ItemsIdsState.STARRED))
+        );
+    }
+
+    /**
+     * Fetch the number of unread items of the account, used to detect local read states drift
+     *
+     * @return the reading list unread count
+     */
+    public Single<Integer> getUnreadCount() {
+        return api.getUnreadCount()
+                .map(FreshRSSUnreadCount::getReadingListCount);
+    }
+
+    private Completable timeStage(@NonNull String stage, @NonNull Completable completable, @NonNull SyncResult syncResult) {
+        return Completable.defer(() -> {
+            long start = SystemClock.elapsedRealtime();
+
+            return completable.doOnComplete(() -> syncResult.addStageDuration(stage, SystemClock.elapsedRealtime() - start));
+        });
     }
 
     /**
@@ -137,31 +272,112 @@ public class FreshRSSDataSource {
     }
 
     /**
-     * Fetch the items
+     * Fetch the items page by page, streaming each response
+     *
+     * @param excludeTargets type of items to exclude (read items and starred items)
+     * @param lastModified   fetch only items created after this timestamp
+     * @param consumer       receives the items by chunks while they are parsed
+     * @return Completable
+     */
+    public Completable getItems(@Nullable List<String> excludeTargets, @Nullable Long lastModified, @NonNull Consumer<List<Item>> consumer) {
+        return getItems(excludeTargets, lastModified, null, consumer, null);
+    }
+
+    /**
+     * Fetch the items page by page from a continuation, streaming each response
      *
      * @param excludeTargets type of items to exclude (read items and starred items)
-     * @param max            max number of items to fetch
      * @param lastModified   fetch only items created after this timestamp
-     * @return the items
+     * @param continuation   continuation of the first page to fetch, null to start from the newest items
+     * @param consumer       receives the items by chunks while they are parsed
+     * @param onPage         receives the next page continuation once a page has been consumed
+     * @return Completable
      */
-    public Single<List<Item>> getItems(@Nullable List<String> excludeTargets, int max, @Nullable Long lastModified) {
-        return api.getItems(excludeTargets, max, lastModified);
+    public Completable getItems(@Nullable List<String> excludeTargets, @Nullable Long lastModified, @Nullable String continuation,
+                                @NonNull Consumer<List<Item>> consumer, @Nullable Consumer<String> onPage) {
+        return getAllPages(pageContinuation -> api.getItems(excludeTargets, ITEMS_PAGE_SIZE, lastModified, pageContinuation)
+                .map(body -> parseItems(body, consumer)), continuation, onPage);
     }
 
     /**
-     * Fetch starred items
+     * Fetch starred items page by page, streaming each response
      *
-     * @param max max number of items to fetch
-     * @return items
+     * @param consumer receives the items by chunks while they are parsed
+     * @return Completable
      */
-    public Single<List<Item>> getStarredItems(int max) {
-        return api.getStarredItems(max);
+    public Completable getStarredItems(@NonNull Consumer<List<Item>> consumer) {
+        return getStarredItems(null, consumer, null);
     }
 
-    public Single<List<String>> getItemsIds(String excludeTarget, String includeTarget, int max) {
-        return api.getItemsIds(excludeTarget, includeTarget, max);
+    /**
+     * Fetch starred items page by page from a continuation, streaming each response
+     *
+     * @param continuation continuation of the first page to fetch, null to start from the newest items
+     * @param consumer     receives the items by chunks while they are parsed
+     * @param onPage       receives the next page continuation once a page has been consumed
+     * @return Completable
+     */
+    public Completable getStarredItems(@Nullable String continuation, @NonNull Consumer<List<Item>> consumer,
+                                       @Nullable Consumer<String> onPage) {
+        return getAllPages(pageContinuation -> api.getStarredItems(ITEMS_PAGE_SIZE, pageContinuation)
+                .map(body -> parseItems(body, consumer)), continuation, onPage);
+    }
+
+    /**
+     * Fetch items ids page by page
+     *
+     * @param excludeTarget type of items to exclude
+     * @param includeTarget type of items to include
+     * @param startTime     fetch only ids of items created after this timestamp, in seconds
+     * @param consumer      receives each page of ids
+     * @return Completable
+     */
+    public Completable getItemsIds(@Nullable String excludeTarget, @Nullable String includeTarget, @Nullable Long startTime,
+                                   @NonNull Consumer<List<String>> consumer) {
+        return getAllPages(continuation -> api.getItemsIds(excludeTarget, includeTarget, startTime, IDS_PAGE_SIZE, continuation)
+                .doOnSuccess(page -> consumer.accept(page.getItems())), null, null);
     }
 
+    private FreshRSSPage<Item> parseItems(ResponseBody body, Consumer<List<Item>> consumer) {
+        try (ResponseBody responseBody = body) {
+            return itemsAdapter.fromJsonPage(JsonReader.of(responseBody.source()), ITEMS_CHUNK_SIZE, consumer);
+        }
+    }
+
+    /**
+     * Request pages following continuation tokens, the next page is requested once the previous one is consumed.
+     * No page is requested once the subscription is disposed.
+     *
+     * @param continuation continuation of the first page, null to start from the first page
+     * @param onPage       receives the next page continuation after each page but the last one
+     */
+    private <T> Completable getAllPages(@NonNull Function<String, Single<FreshRSSPage<T>>> pageRequest,
+                                        @Nullable String continuation, @Nullable Consumer<String> onPage) {
+        return Completable.create(emitter -> {
+            String pageContinuation = continuation;
+
+            do {
+                if (emitter.isDisposed()) {
+                    return;
+                }
+
+                FreshRSSPage<T> page = pageRequest.apply(pageContinuation).blockingGet();
+
+                // stop if the server sends the same token again
+                if (page.getItemCount() == 0 || Objects.equals(pageContinuation, page.getContinuation())) {
+                    break;
+                }
+
+                pageContinuation = page.getContinuation();
+
+                if (pageContinuation != null && onPage != null) {
+                    onPage.accept(pageContinuation);
+                }
+            } while (pageContinuation != null);
+
+            emitter.onComplete();
+        });
+    }
 
     /**
      * Mark items read or unread
@@ -195,6 +411,18 @@ public class FreshRSSDataSource {
         }
     }
 
+    /**
+     * Mark all items of a stream as read
+     *
+     * @param streamId  reading list, folder or feed id
+     * @param timestamp only items older than this timestamp (in microseconds) are marked
+     * @param token     token for modifications
+     * @return Completable
+     */
+    public Completable markAllAsRead(@NonNull String streamId, long timestamp, @NonNull String token) {
+        return api.markAllAsRead(token, streamId, timestamp);
+    }
+
     /**
      * Create a new feed
      *
@@ -265,52 +493,53 @@ public class FreshRSSDataSource {
     }
 
     /**
-     * Set items star state
+     * Push pending mark-all-read operations, one request per operation
      *
-     * @param syncData data containing items to mark
+     * @param syncData data containing the operations
      * @param token    token for modifications
-     * @return A concatenation of two completable (read and unread completable)
+     * @return A concatenation of the operations completables
      */
-    private Completable setItemsReadState(@NonNull FreshRSSSyncData syncData, @NonNull String token) {
-        Completable readItemsCompletable;
-        if (syncData.getReadItemsIds().isEmpty()) {
-            readItemsCompletable = Completable.complete();
-        } else {
-            readItemsCompletable = setItemsReadState(true, syncData.getReadItemsIds(), token);
-        }
+    private Completable markAllAsRead(@NonNull FreshRSSSyncData syncData, @NonNull String token) {
+        List<Completable> completables = new ArrayList<>();
 
-        Completable unreadItemsCompletable;
-        if (syncData.getUnreadItemsIds().isEmpty()) {
-            unreadItemsCompletable = Completable.complete();
-        } else {
-            unreadItemsCompletable = setItemsReadState(false, syncData.getUnreadItemsIds(), token);
+        for (MarkAllReadOperation operation : syncData.getMarkAllReadOperations()) {
+            String streamId = operation.getScope() == MarkAllReadScope.ACCOUNT ?
+                    GOOGLE_READING_LIST : operation.getRemoteTargetId();
+
+            completables.add(markAllAsRead(streamId, operation.getWatermark(), token));
         }
 
-        return readItemsCompletable.concatWith(unreadItemsCompletable);
+        return Completable.concat(completables);
     }
 
     /**
-     * Set items star state
+     * Push read, unread, starred and unstarred items.
+     * Ids are sent by chunks of {@link #EDIT_TAG_CHUNK_SIZE} so a large backlog doesn't make a huge request,
+     * chunks are sent in parallel and retried on network errors.
      *
      * @param syncData data containing items to mark
      * @param token    token for modifications
-     * @return A concatenation of two completable (starred and unstarred completable)
+     * @return A merge of all the chunks completables
      */
-    private Completable setItemsStarState(@NonNull FreshRSSSyncData syncData, @NonNull String token) {
-        Completable starredItemsCompletable;
-        if (syncData.getStarredItemsIds().isEmpty()) {
-            starredItemsCompletable = Completable.complete();
-        } else {
-            starredItemsCompletable = setItemsStarState(true, syncData.getStarredItemsIds(), token);
-        }
+    private Completable pushItemsStates(@NonNull FreshRSSSyncData syncData, @NonNull String token) {
+        List<Completable> chunks = new ArrayList<>();
 
-        Completable unstarredItemsCompletable;
-        if (syncData.getUnstarredItemsIds().isEmpty()) {
-            unstarredItemsCompletable = Completable.complete();
-        } else {
-            unstarredItemsCompletable = setItemsStarState(false, syncData.getUnstarredItemsIds(), token);
-        }
+        addEditTagChunks(chunks, token, GOOGLE_READ, null, syncData.getReadItemsIds());
+        addEditTagChunks(chunks, token, null, GOOGLE_READ, syncData.getUnreadItemsIds());
+        addEditTagChunks(chunks, token, GOOGLE_STARRED, null, syncData.getStarredItemsIds());
+        addEditTagChunks(chunks, token, null, GOOGLE_STARRED, syncData.getUnstarredItemsIds());
+
+        return Completable.merge(Flowable.fromIterable(chunks), MAX_CONCURRENT_PUSHES);
+    }
 
-        return starredItemsCompletable.concatWith(unstarredItemsCompletable);
+    private void addEditTagChunks(@NonNull List<Completable> chunks, @NonNull String token, @Nullable String addAction,
+                                  @Nullable String removeAction, @NonNull List<String> itemIds) {
+        for (int start = 0; start < itemIds.size(); start += EDIT_TAG_CHUNK_SIZE) {
+            List<String> chunk = itemIds.subList(start, Math.min(start + EDIT_TAG_CHUNK_SIZE, itemIds.size()));
+
+            chunks.add(api.setItemsState(token, addAction, removeAction, chunk)
+                    .retry(PUSH_RETRIES, throwable -> throwable instanceof IOException)
+                    .subscribeOn(Schedulers.io()));
+        }
     }
 }
@@ -1,9 +1,10 @@
 package com.readrops.api.services.freshrss
 
+import com.readrops.api.services.freshrss.adapters.FreshRSSPage
+import com.readrops.api.services.freshrss.adapters.FreshRSSUnreadCount
 import com.readrops.api.services.freshrss.adapters.FreshRSSUserInfo
 import com.readrops.db.entities.Feed
 import com.readrops.db.entities.Folder
-import com.readrops.db.entities.Item
 import io.reactivex.Completable
 import io.reactivex.Single
 import okhttp3.RequestBody
@@ -27,22 +28,32 @@ interface FreshRSSService {
     @get:GET("reader/api/0/tag/list?output=json")
     val folders: Single<List<Folder>>
 
+    // items responses are parsed while being downloaded
+    @Streaming
     @GET("reader/api/0/stream/contents/user/-/state/com.google/reading-list")
     fun getItems(@Query("xt") excludeTarget: List<String>?, @Query("n") max: Int,
-                 @Query("ot") lastModified: Long?): Single<List<Item>>
+                 @Query("ot") lastModified: Long?, @Query("c") continuation: String?): Single<ResponseBody>
 
+    @Streaming
     @GET("reader/api/0/stream/contents/user/-/state/com.google/starred")
-    fun getStarredItems(@Query("n") max: Int): Single<List<Item>>
+    fun getStarredItems(@Query("n") max: Int, @Query("c") continuation: String?): Single<ResponseBody>
 
     @GET("reader/api/0/stream/items/ids")
-    fun getItemsIds(@Query("xt") excludeTarget: String?, @Query("s") includeTarget: String?,
-                    @Query("n") max: Int): Single<List<String>>
+    fun getItemsIds(@Query("xt") excludeTarget: String?, @Query("s") includeTarget: String?, @Query("ot") startTime: Long?,
+                    @Query("n") max: Int, @Query("c") continuation: String?): Single<FreshRSSPage<String>>
+
+    @get:GET("reader/api/0/unread-count?output=json")
+    val unreadCount: Single<FreshRSSUnreadCount>
 
     @FormUrlEncoded
     @POST("reader/api/0/edit-tag")
     fun setItemsState(@Field("T") token: String, @Field("a") addAction: String?,
                       @Field("r") removeAction: String?, @Field("i") itemIds: List<String>): Completable
 
+    @FormUrlEncoded
+    @POST("reader/api/0/mark-all-as-read")
+    fun markAllAsRead(@Field("T") token: String, @Field("s") streamId: String, @Field("ts") timestamp: Long): Completable
+
     @FormUrlEncoded
     @POST("reader/api/0/subscription/edit")
     fun createOrDeleteFeed(@Field("T") token: String, @Field("s") feedUrl: String, @Field("ac") action: String): Completable
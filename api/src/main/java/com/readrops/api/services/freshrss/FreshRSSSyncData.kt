@@ -1,9 +1,17 @@
 package com.readrops.api.services.freshrss
 
+import com.readrops.db.entities.MarkAllReadOperation
+
 data class FreshRSSSyncData(
         var lastModified: Long = 0,
         var readItemsIds: List<String> = listOf(),
         var unreadItemsIds: List<String> = listOf(),
         var starredItemsIds: List<String> = listOf(),
         var unstarredItemsIds: List<String> = listOf(),
+        var markAllReadOperations: List<MarkAllReadOperation> = listOf(),
+        // pull the full items ids lists instead of the ids of the items created since lastModified
+        var fullStatesSync: Boolean = true,
+        // initial sync step and continuation to resume from
+        var checkpointStep: String? = null,
+        var checkpointContinuation: String? = null,
 )
\ No newline at end of file
@@ -0,0 +1,48 @@
+package com.readrops.api.services.freshrss
+
+import com.readrops.db.entities.Feed
+import com.readrops.db.entities.Folder
+import com.readrops.db.entities.Item
+
+/**
+ * Receives the data pulled by [FreshRSSDataSource.sync] page by page.
+ * Each page is handed over before the next one is requested, so only one page is held in memory.
+ */
+interface FreshRSSSyncSink {
+
+    /**
+     * Called before any items page, as items need their feed
+     */
+    fun onFoldersAndFeeds(folders: List<Folder>, feeds: List<Feed>)
+
+    fun onItems(items: List<Item>, starred: Boolean)
+
+    /**
+     * Called during the initial sync after each items page, once its items have been handed over.
+     * An interrupted initial sync can be resumed from the last step and continuation,
+     * a null continuation meaning the start of the step.
+     */
+    fun onCheckpoint(step: String, continuation: String?)
+
+    /**
+     * Called before full items ids lists are pulled, the current states must be dropped
+     */
+    fun onItemsStatesReset()
+
+    /**
+     * Called before the full starred ids list is pulled, the current stars must be dropped
+     */
+    fun onStarredStatesReset()
+
+    /**
+     * Unread ids pages come first, then read ids pages and finally starred ids pages.
+     * Ids are merged into the current states.
+     */
+    fun onItemsIds(ids: List<String>, state: ItemsIdsState)
+
+    enum class ItemsIdsState {
+        UNREAD,
+        READ,
+        STARRED
+    }
+}
@@ -3,6 +3,7 @@ package com.readrops.api.services.freshrss.adapters
 import android.util.TimingLogger
 import com.readrops.api.services.freshrss.FreshRSSDataSource.GOOGLE_READ
 import com.readrops.api.services.freshrss.FreshRSSDataSource.GOOGLE_STARRED
+import com.readrops.api.utils.ChunkedConsumer
 import com.readrops.api.utils.exceptions.ParseException
 import com.readrops.api.utils.extensions.nextNonEmptyString
 import com.readrops.api.utils.extensions.nextNullableString
@@ -10,6 +11,7 @@ import com.readrops.db.entities.Item
 import com.squareup.moshi.JsonAdapter
 import com.squareup.moshi.JsonReader
 import com.squareup.moshi.JsonWriter
+import io.reactivex.functions.Consumer
 import org.joda.time.DateTimeZone
 import org.joda.time.LocalDateTime
 
@@ -19,24 +21,52 @@ class FreshRSSItemsAdapter : JsonAdapter<List<Item>>() {
         // no need of this
     }
 
-    override fun fromJson(reader: JsonReader): List<Item>? {
+    override fun fromJson(reader: JsonReader): List<Item>? = fromJsonPage(reader).items
+
+    /**
+     * Parse the items and the continuation token used to request the next page
+     */
+    fun fromJsonPage(reader: JsonReader): FreshRSSPage<Item> {
         val items = mutableListOf<Item>()
+        val continuation = parsePage(reader) { items += it }
+
+        return FreshRSSPage(items, continuation)
+    }
+
+    /**
+     * Streaming variant, items are handed to [consumer] by chunks of [chunkSize] while being parsed.
+     * The returned page only holds the continuation token and the items count.
+     */
+    fun fromJsonPage(reader: JsonReader, chunkSize: Int, consumer: Consumer<List<Item>>): FreshRSSPage<Item> {
+        val chunkedConsumer = ChunkedConsumer(chunkSize, consumer)
+        val continuation = parsePage(reader, chunkedConsumer::add)
+        chunkedConsumer.flush()
+
+        return FreshRSSPage(listOf(), continuation, chunkedConsumer.count)
+    }
+
+    private fun parsePage(reader: JsonReader, onItem: (Item) -> Unit): String? {
+        var continuation: String? = null
 
         return try {
             reader.beginObject()
             while (reader.hasNext()) {
-                if (reader.nextName() == "items") parseItems(reader, items) else reader.skipValue()
+                when (reader.nextName()) {
+                    "items" -> parseItems(reader, onItem)
+                    "continuation" -> continuation = reader.nextNullableString()
+                    else -> reader.skipValue()
+                }
             }
 
             reader.endObject()
 
-            items
+            continuation
         } catch (e: Exception) {
             throw ParseException(e.message)
         }
     }
 
-    private fun parseItems(reader: JsonReader, items: MutableList<Item>) {
+    private fun parseItems(reader: JsonReader, onItem: (Item) -> Unit) {
         reader.beginArray()
 
         while (reader.hasNext()) {
@@ -60,8 +90,8 @@ class FreshRSSItemsAdapter : JsonAdapter<List<Item>>() {
                 }
             }
 
-            items += item
             reader.endObject()
+            onItem(item)
         }
 
         reader.endArray()
@@ -1,8 +1,8 @@
 package com.readrops.api.services.freshrss.adapters
 
-import android.annotation.SuppressLint
 import com.readrops.api.utils.exceptions.ParseException
 import com.readrops.api.utils.extensions.nextNonEmptyString
+import com.readrops.api.utils.extensions.nextNullableString
 import com.squareup.moshi.JsonAdapter
 import com.squareup.moshi.JsonReader
 import com.squareup.moshi.JsonWriter
@@ -13,18 +13,41 @@ class FreshRSSItemsIdsAdapter : JsonAdapter<List<String>>() {
         // not useful here
     }
 
-    @SuppressLint("CheckResult")
-    override fun fromJson(reader: JsonReader): List<String>? = with(reader) {
+    override fun fromJson(reader: JsonReader): List<String>? = fromJsonPage(reader).items
+
+    /**
+     * Parse the ids and the continuation token used to request the next page
+     */
+    fun fromJsonPage(reader: JsonReader): FreshRSSPage<String> = with(reader) {
         val ids = arrayListOf<String>()
+        var continuation: String? = null
 
         return try {
             beginObject()
-            nextName()
-            beginArray()
 
             while (hasNext()) {
-                beginObject()
+                when (nextName()) {
+                    "itemRefs" -> parseIds(reader, ids)
+                    "continuation" -> continuation = nextNullableString()
+                    else -> skipValue()
+                }
+            }
+
+            endObject()
+
+            FreshRSSPage(ids, continuation)
+        } catch (e: Exception) {
+            throw ParseException(e.message)
+        }
+    }
 
+    private fun parseIds(reader: JsonReader, ids: MutableList<String>) = with(reader) {
+        beginArray()
+
+        while (hasNext()) {
+            beginObject()
+
+            while (hasNext()) {
                 when (nextName()) {
                     "id" -> {
                         val value = nextNonEmptyString()
@@ -35,24 +58,12 @@ class FreshRSSItemsIdsAdapter : JsonAdapter<List<String>>() {
                     }
                     else -> skipValue()
                 }
-
-                endObject()
-            }
-
-            endArray()
-
-            // skip continuation
-            if (hasNext()) {
-                skipName()
-                skipValue()
             }
 
             endObject()
-
-            ids
-        } catch (e: Exception) {
-            throw ParseException(e.message)
         }
+
+        endArray()
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.readrops.api.services.freshrss.adapters
+
+import com.squareup.moshi.JsonAdapter
+import com.squareup.moshi.JsonReader
+import com.squareup.moshi.JsonWriter
+
+/**
+ * A page of a Google Reader stream
+ *
+ * @param continuation token to request the next page, null for the last page
+ * @param itemCount    number of items in the page, which were not kept if the page was streamed
+ */
+data class FreshRSSPage<T>(
+        val items: List<T>,
+        val continuation: String? = null,
+        val itemCount: Int = items.size,
+)
+
+class FreshRSSPageAdapter<T>(private val parsePage: (JsonReader) -> FreshRSSPage<T>) : JsonAdapter<FreshRSSPage<T>>() {
+
+    override fun toJson(writer: JsonWriter, value: FreshRSSPage<T>?) {
+        // not useful here
+    }
+
+    override fun fromJson(reader: JsonReader): FreshRSSPage<T> = parsePage(reader)
+}
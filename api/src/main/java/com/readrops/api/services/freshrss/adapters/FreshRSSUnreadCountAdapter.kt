@@ -0,0 +1,71 @@
+package com.readrops.api.services.freshrss.adapters
+
+import com.readrops.api.services.freshrss.FreshRSSDataSource
+import com.readrops.api.utils.exceptions.ParseException
+import com.readrops.api.utils.extensions.nextNullableString
+import com.squareup.moshi.FromJson
+import com.squareup.moshi.JsonReader
+import com.squareup.moshi.ToJson
+
+data class FreshRSSUnreadCount(
+        val readingListCount: Int,
+)
+
+class FreshRSSUnreadCountAdapter {
+
+    @ToJson
+    fun toJson(unreadCount: FreshRSSUnreadCount) = ""
+
+    /**
+     * Keeps the reading list count, or the sum of the feeds counts if the server doesn't send it
+     */
+    @FromJson
+    fun fromJson(reader: JsonReader): FreshRSSUnreadCount = with(reader) {
+        var readingListCount: Int? = null
+        var feedsCount = 0
+
+        return try {
+            beginObject()
+
+            while (hasNext()) {
+                when (nextName()) {
+                    "unreadcounts" -> {
+                        beginArray()
+
+                        while (hasNext()) {
+                            var id: String? = null
+                            var count = 0
+
+                            beginObject()
+                            while (hasNext()) {
+                                when (nextName()) {
+                                    "id" -> id = nextNullableString()
+                                    "count" -> count = nextInt()
+                                    else -> skipValue()
+                                }
+                            }
+                            endObject()
+
+                            when {
+                                id == FreshRSSDataSource.GOOGLE_READING_LIST -> readingListCount = count
+                                id?.startsWith(FEED_PREFIX) == true -> feedsCount += count
+                            }
+                        }
+
+                        endArray()
+                    }
+                    else -> skipValue()
+                }
+            }
+
+            endObject()
+            FreshRSSUnreadCount(readingListCount ?: feedsCount)
+        } catch (e: Exception) {
+            throw ParseException(e.message)
+        }
+    }
+
+    companion object {
+        private const val FEED_PREFIX = "feed/"
+    }
+}
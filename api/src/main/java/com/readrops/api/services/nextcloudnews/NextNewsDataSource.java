@@ -1,12 +1,15 @@
 package com.readrops.api.services.nextcloudnews;
 
 import android.content.res.Resources;
+import android.os.SystemClock;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.readrops.api.services.SyncResult;
 import com.readrops.api.services.SyncType;
+import com.readrops.api.services.nextcloudnews.adapters.NextNewsItemsAdapter;
 import com.readrops.api.services.nextcloudnews.adapters.NextNewsUserAdapter;
 import com.readrops.api.utils.ApiUtils;
 import com.readrops.api.utils.exceptions.ConflictException;
@@ -15,28 +18,46 @@ import com.readrops.api.utils.extensions.KonsumerExtensionsKt;
 import com.readrops.db.entities.Feed;
 import com.readrops.db.entities.Folder;
 import com.readrops.db.entities.Item;
+import com.readrops.db.entities.MarkAllReadOperation;
 import com.readrops.db.entities.account.Account;
 import com.readrops.db.pojo.StarItem;
+import com.squareup.moshi.JsonReader;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+import io.reactivex.Single;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
 import retrofit2.Response;
 
 public class NextNewsDataSource {
 
     private static final String TAG = NextNewsDataSource.class.getSimpleName();
 
-    private static final int MAX_ITEMS = 5000;
-    private static final int MAX_STARRED_ITEMS = 1000;
+    private static final int ITEMS_BATCH_SIZE = 500;
+    private static final int ITEMS_CHUNK_SIZE = 100;
+
+    public static final String STEP_UNREAD_ITEMS = "unread_items";
+    public static final String STEP_STARRED_ITEMS = "starred_items";
+
+    public static final String STAGE_PUSH = "push";
+    public static final String STAGE_PULL = "pull";
 
     private NextNewsService api;
+    private final NextNewsItemsAdapter itemsAdapter = new NextNewsItemsAdapter();
 
     public NextNewsDataSource(NextNewsService api) {
         this.api = api;
@@ -72,88 +93,249 @@ public class NextNewsDataSource {
         return response.body();
     }
 
-    public SyncResult sync(@NonNull SyncType syncType, @Nullable NextNewsSyncData data) throws IOException {
+    /**
+     * Push local changes, then pull folders, feeds and items.
+     * Independent requests are sent concurrently : state pushes together, then folders, feeds and items together.
+     * Items are streamed to the sink by chunks while being parsed, once folders and feeds have been handed over.
+     * Each failed request is recorded in {@link SyncResult#getErrors()},
+     * push and pull durations in {@link SyncResult#getStageDurations()}.
+     * The sync returns early once {@link NextNewsSyncSink#isCancelled()} is true.
+     *
+     * @return the result of the synchronization, without items
+     */
+    public SyncResult sync(@NonNull SyncType syncType, @Nullable NextNewsSyncData data, @NonNull NextNewsSyncSink sink) throws IOException {
         SyncResult syncResult = new SyncResult();
+        long start = SystemClock.elapsedRealtime();
+
         switch (syncType) {
             case INITIAL_SYNC:
-                initialSync(syncResult);
+                initialSync(syncResult, data != null ? data : new NextNewsSyncData(), sink);
                 break;
             case CLASSIC_SYNC:
                 if (data == null)
                     throw new NullPointerException("NextNewsSyncData can't be null");
 
-                classicSync(syncResult, data);
+                classicSync(syncResult, data, sink);
                 break;
         }
 
+        Long pushDuration = syncResult.getStageDurations().get(STAGE_PUSH);
+        syncResult.addStageDuration(STAGE_PULL, SystemClock.elapsedRealtime() - start - (pushDuration != null ? pushDuration : 0));
+
         return syncResult;
     }
 
-    private void initialSync(SyncResult syncResult) throws IOException {
-        getFeedsAndFolders(syncResult);
+    /**
+     * Unread then starred items are fetched by batches, from the newest to the oldest.
+     * The sync resumes from the data checkpoint if a previous one was interrupted.
+     */
+    private void initialSync(SyncResult syncResult, NextNewsSyncData data, NextNewsSyncSink sink) throws IOException {
+        boolean starredStep = STEP_STARRED_ITEMS.equals(data.getCheckpointStep());
+        boolean unreadStep = STEP_UNREAD_ITEMS.equals(data.getCheckpointStep());
 
-        // unread items
-        Response<List<Item>> itemsResponse = api.getItems(ItemQueryType.ALL.value, false, MAX_ITEMS).execute();
-        List<Item> itemList = itemsResponse.body();
+        ItemQueryType type = starredStep ? ItemQueryType.STARRED : ItemQueryType.ALL;
+        long offset = starredStep || unreadStep ? data.getCheckpointOffset() : 0;
 
-        if (!itemsResponse.isSuccessful())
-            syncResult.setError(true);
+        // the first batch is requested with folders and feeds
+        Future<Response<ResponseBody>> firstBatch = dispatch(api.getItems(type.value, starredStep, ITEMS_BATCH_SIZE, offset));
 
-        if (itemList != null)
-            syncResult.setItems(itemList);
+        if (!getFeedsAndFolders(syncResult, sink)) {
+            discard(firstBatch);
+            return;
+        }
 
-        // starred items
-        Response<List<Item>> starredItemsResponse = api.getItems(ItemQueryType.STARRED.value, true, MAX_STARRED_ITEMS).execute();
-        List<Item> starredItems = starredItemsResponse.body();
+        if (!starredStep && !getItemsBatches(ItemQueryType.ALL, false, offset, firstBatch, STEP_UNREAD_ITEMS, syncResult, sink))
+            return;
 
-        if (!itemsResponse.isSuccessful())
-            syncResult.setError(true);
+        if (sink.isCancelled())
+            return;
 
-        if (itemList != null)
-            syncResult.setStarredItems(starredItems);
+        getItemsBatches(ItemQueryType.STARRED, true, starredStep ? offset : 0, starredStep ? firstBatch : null,
+                STEP_STARRED_ITEMS, syncResult, sink);
     }
 
-    private void classicSync(SyncResult syncResult, NextNewsSyncData data) throws IOException {
+    private void classicSync(SyncResult syncResult, NextNewsSyncData data, NextNewsSyncSink sink) throws IOException {
+        long start = SystemClock.elapsedRealtime();
         putModifiedItems(data, syncResult);
-        getFeedsAndFolders(syncResult);
+        syncResult.addStageDuration(STAGE_PUSH, SystemClock.elapsedRealtime() - start);
 
-        Response<List<Item>> itemsResponse = api.getNewItems(data.getLastModified(), ItemQueryType.ALL.value).execute();
-        List<Item> itemList = itemsResponse.body();
+        // pushed states are kept locally until the sync succeeds, the next one pushes them again
+        if (sink.isCancelled())
+            return;
 
-        if (!itemsResponse.isSuccessful())
-            syncResult.setError(true);
+        // pulled items must include the pushed states
+        Future<Response<ResponseBody>> newItems = dispatch(api.getNewItems(data.getLastModified(), ItemQueryType.ALL.value));
 
-        if (itemList != null)
-            syncResult.setItems(itemList);
+        if (!getFeedsAndFolders(syncResult, sink)) {
+            discard(newItems);
+            return;
+        }
+
+        getItems(newItems, "new items", syncResult, items -> sink.onItems(items, false));
     }
 
-    private void getFeedsAndFolders(SyncResult syncResult) throws IOException {
-        Response<List<Feed>> feedResponse = api.getFeeds().execute();
-        List<Feed> feedList = feedResponse.body();
+    /**
+     * Fetch items by batches of {@link #ITEMS_BATCH_SIZE}, each batch being streamed to the sink.
+     * The API offset is an item id, only older items are returned.
+     *
+     * @param offset     0 to start from the newest item
+     * @param firstBatch first batch request if it was already dispatched, null otherwise
+     * @return true if all batches were fetched, false on error or cancellation
+     */
+    private boolean getItemsBatches(ItemQueryType type, boolean read, long offset, @Nullable Future<Response<ResponseBody>> firstBatch,
+                                    String step, SyncResult syncResult, NextNewsSyncSink sink) throws IOException {
+        boolean starred = type == ItemQueryType.STARRED;
+        Future<Response<ResponseBody>> batch = firstBatch;
+
+        while (true) {
+            if (batch == null)
+                batch = dispatch(api.getItems(type.value, read, ITEMS_BATCH_SIZE, offset));
+
+            long[] oldestId = {Long.MAX_VALUE};
+            int count = getItems(batch, step, syncResult, items -> {
+                for (Item item : items) {
+                    oldestId[0] = Math.min(oldestId[0], Long.parseLong(item.getRemoteId()));
+                }
+
+                sink.onItems(items, starred);
+            });
+            batch = null;
+
+            if (syncResult.isError())
+                return false;
+
+            // stop if the server doesn't go further
+            if (count == 0 || (offset > 0 && oldestId[0] >= offset))
+                return true;
+
+            offset = oldestId[0];
+            sink.onCheckpoint(step, offset);
+
+            if (count < ITEMS_BATCH_SIZE)
+                return true;
+
+            // resumed from the checkpoint by the next sync
+            if (sink.isCancelled())
+                return false;
+        }
+    }
 
-        if (!feedResponse.isSuccessful())
-            syncResult.setError(true);
+    /**
+     * @return the number of items, 0 if the request failed
+     */
+    private int getItems(Future<Response<ResponseBody>> request, String name, SyncResult syncResult,
+                         Consumer<List<Item>> consumer) throws IOException {
+        Response<ResponseBody> response = await(request);
+
+        try (ResponseBody body = response.body()) {
+            if (!response.isSuccessful() || body == null) {
+                syncResult.addError(name + ": HTTP " + response.code());
+                return 0;
+            }
 
-        Response<List<Folder>> folderResponse = api.getFolders().execute();
-        List<Folder> folderList = folderResponse.body();
+            return itemsAdapter.fromJson(JsonReader.of(body.source()), ITEMS_CHUNK_SIZE, consumer);
+        }
+    }
+
+    /**
+     * @return true if folders and feeds were fetched and handed to the sink
+     */
+    private boolean getFeedsAndFolders(SyncResult syncResult, NextNewsSyncSink sink) throws IOException {
+        Future<Response<List<Feed>>> feedsRequest = dispatch(api.getFeeds());
+        Future<Response<List<Folder>>> foldersRequest = dispatch(api.getFolders());
 
-        if (!folderResponse.isSuccessful())
-            syncResult.setError(true);
+        Response<List<Feed>> feedResponse = await(feedsRequest);
+        Response<List<Folder>> folderResponse = await(foldersRequest);
 
-        if (folderList != null)
-            syncResult.setFolders(folderList);
+        if (feedResponse.isSuccessful() && feedResponse.body() != null)
+            syncResult.setFeeds(feedResponse.body());
+        else
+            syncResult.addError("feeds: HTTP " + feedResponse.code());
+
+        if (folderResponse.isSuccessful() && folderResponse.body() != null)
+            syncResult.setFolders(folderResponse.body());
+        else
+            syncResult.addError("folders: HTTP " + folderResponse.code());
 
-        if (feedList != null)
-            syncResult.setFeeds(feedList);
+        if (syncResult.isError())
+            return false;
 
+        sink.onFoldersAndFeeds(syncResult.getFolders(), syncResult.getFeeds());
+        return true;
     }
 
     private void putModifiedItems(NextNewsSyncData data, SyncResult syncResult) throws IOException {
-        setReadState(data.getReadItems(), syncResult, StateType.READ);
-        setReadState(data.getUnreadItems(), syncResult, StateType.UNREAD);
+        // mark-all-read operations are older than remaining individual changes
+        for (MarkAllReadOperation operation : data.getMarkAllReadOperations()) {
+            checkResponse(await(dispatch(setAllItemsRead(operation))), "mark all read", syncResult);
+        }
+
+        // changes concern distinct items, they can be pushed in any order
+        Map<String, Future<Response<ResponseBody>>> pushes = new LinkedHashMap<>();
+
+        if (!data.getReadItems().isEmpty())
+            pushes.put("read items", dispatch(setReadState(data.getReadItems(), StateType.READ)));
+
+        if (!data.getUnreadItems().isEmpty())
+            pushes.put("unread items", dispatch(setReadState(data.getUnreadItems(), StateType.UNREAD)));
 
-        setStarState(data.getStarredItems(), syncResult, StateType.STAR);
-        setStarState(data.getUnstarredItems(), syncResult, StateType.UNSTAR);
+        if (!data.getStarredItems().isEmpty())
+            pushes.put("starred items", dispatch(setStarState(data.getStarredItems(), StateType.STAR)));
+
+        if (!data.getUnstarredItems().isEmpty())
+            pushes.put("unstarred items", dispatch(setStarState(data.getUnstarredItems(), StateType.UNSTAR)));
+
+        for (Map.Entry<String, Future<Response<ResponseBody>>> push : pushes.entrySet()) {
+            checkResponse(await(push.getValue()), push.getKey(), syncResult);
+        }
+    }
+
+    private void checkResponse(Response<ResponseBody> response, String name, SyncResult syncResult) {
+        if (response.body() != null)
+            response.body().close();
+
+        if (!response.isSuccessful())
+            syncResult.addError(name + ": HTTP " + response.code());
+    }
+
+    /**
+     * Execute the call on an io thread, its response is retrieved with {@link #await(Future)}
+     */
+    private static <T> Future<Response<T>> dispatch(Call<T> call) {
+        return Single.fromCallable(call::execute)
+                .subscribeOn(Schedulers.io())
+                .toFuture();
+    }
+
+    private static <T> Response<T> await(Future<Response<T>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            else if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else
+                throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Drop a dispatched items request, its body is never read
+     */
+    private static void discard(Future<Response<ResponseBody>> future) {
+        try {
+            ResponseBody body = await(future).body();
+            if (body != null)
+                body.close();
+        } catch (Exception e) {
+            Log.d(TAG, "discard: " + e.getMessage());
+        }
     }
 
     public List<Folder> createFolder(Folder folder) throws IOException, UnknownFormatException, ConflictException {
@@ -244,36 +426,37 @@ public class NextNewsDataSource {
             return false;
     }
 
-    private void setReadState(List<String> items, SyncResult syncResult, StateType stateType) throws IOException {
-        if (!items.isEmpty()) {
-            Map<String, List<String>> itemIdsMap = new HashMap<>();
-            itemIdsMap.put("items", items);
+    private Call<ResponseBody> setReadState(List<String> items, StateType stateType) {
+        Map<String, List<String>> itemIdsMap = new HashMap<>();
+        itemIdsMap.put("items", items);
+
+        return api.setReadState(stateType.name().toLowerCase(), itemIdsMap);
+    }
 
-            Response readItemsResponse = api.setReadState(stateType.name().toLowerCase(),
-                    itemIdsMap).execute();
+    private Call<ResponseBody> setAllItemsRead(MarkAllReadOperation operation) {
+        Map<String, Long> body = Collections.singletonMap("newestItemId", operation.getWatermark());
 
-            if (!readItemsResponse.isSuccessful())
-                syncResult.setError(true);
+        switch (operation.getScope()) {
+            case FEED:
+                return api.setAllFeedItemsRead(Integer.parseInt(operation.getRemoteTargetId()), body);
+            case FOLDER:
+                return api.setAllFolderItemsRead(Integer.parseInt(operation.getRemoteTargetId()), body);
+            default:
+                return api.setAllItemsRead(body);
         }
     }
 
-    private void setStarState(List<StarItem> items, SyncResult syncResult, StateType stateType) throws IOException {
-        if (!items.isEmpty()) {
-            List<Map<String, String>> body = new ArrayList<>();
-            for (StarItem item : items) {
-                Map<String, String> itemBody = new HashMap<>();
-                itemBody.put("feedId", item.getFeedRemoteId());
-                itemBody.put("guidHash", item.getGuidHash());
-
-                body.add(itemBody);
-            }
+    private Call<ResponseBody> setStarState(List<StarItem> items, StateType stateType) {
+        List<Map<String, String>> body = new ArrayList<>();
+        for (StarItem item : items) {
+            Map<String, String> itemBody = new HashMap<>();
+            itemBody.put("feedId", item.getFeedRemoteId());
+            itemBody.put("guidHash", item.getGuidHash());
 
-            Response response = api.setStarState(stateType.name().toLowerCase(),
-                    Collections.singletonMap("items", body)).execute();
-            if (!response.isSuccessful()) {
-                syncResult.setError(true);
-            }
+            body.add(itemBody);
         }
+
+        return api.setStarState(stateType.name().toLowerCase(), Collections.singletonMap("items", body));
     }
 
     public enum StateType {
@@ -2,7 +2,6 @@ package com.readrops.api.services.nextcloudnews
 
 import com.readrops.db.entities.Feed
 import com.readrops.db.entities.Folder
-import com.readrops.db.entities.Item
 import okhttp3.ResponseBody
 import retrofit2.Call
 import retrofit2.http.*
@@ -19,11 +18,15 @@ interface NextNewsService {
     @get:GET("feeds")
     val feeds: Call<List<Feed>>
 
+    // items responses are parsed while being downloaded
+    @Streaming
     @GET("items")
-    fun getItems(@Query("type") type: Int, @Query("getRead") read: Boolean, @Query("batchSize") batchSize: Int): Call<List<Item>>
+    fun getItems(@Query("type") type: Int, @Query("getRead") read: Boolean, @Query("batchSize") batchSize: Int,
+                 @Query("offset") offset: Long): Call<ResponseBody>
 
+    @Streaming
     @GET("items/updated")
-    fun getNewItems(@Query("lastModified") lastModified: Long, @Query("type") type: Int): Call<List<Item>>
+    fun getNewItems(@Query("lastModified") lastModified: Long, @Query("type") type: Int): Call<ResponseBody>
 
     @PUT("items/{stateType}/multiple")
     fun setReadState(@Path("stateType") stateType: String, @Body itemIdsMap: Map<String, List<String>>): Call<ResponseBody>
@@ -31,6 +34,15 @@ interface NextNewsService {
     @PUT("items/{starType}/multiple")
     fun setStarState(@Path("starType") starType: String?, @Body body: Map<String?, List<Map<String, String>>>): Call<ResponseBody>
 
+    @PUT("items/read")
+    fun setAllItemsRead(@Body newestItemIdMap: Map<String, Long>): Call<ResponseBody>
+
+    @PUT("feeds/{feedId}/read")
+    fun setAllFeedItemsRead(@Path("feedId") feedId: Int, @Body newestItemIdMap: Map<String, Long>): Call<ResponseBody>
+
+    @PUT("folders/{folderId}/read")
+    fun setAllFolderItemsRead(@Path("folderId") folderId: Int, @Body newestItemIdMap: Map<String, Long>): Call<ResponseBody>
+
     @POST("feeds")
     fun createFeed(@Query("url") url: String, @Query("folderId") folderId: Int): Call<List<Feed>>
 
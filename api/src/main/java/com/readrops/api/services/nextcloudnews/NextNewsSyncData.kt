@@ -1,5 +1,6 @@
 package com.readrops.api.services.nextcloudnews
 
+import com.readrops.db.entities.MarkAllReadOperation
 import com.readrops.db.pojo.StarItem
 
 data class NextNewsSyncData(
@@ -8,4 +9,8 @@ data class NextNewsSyncData(
         var readItems: List<String> = listOf(),
         var starredItems: List<StarItem> = listOf(),
         var unstarredItems: List<StarItem> = listOf(),
+        var markAllReadOperations: List<MarkAllReadOperation> = listOf(),
+        // initial sync resume point, see NextNewsSyncSink.onCheckpoint
+        var checkpointStep: String? = null,
+        var checkpointOffset: Long = 0,
 )
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.readrops.api.services.nextcloudnews
+
+import com.readrops.db.entities.Feed
+import com.readrops.db.entities.Folder
+import com.readrops.db.entities.Item
+
+/**
+ * Receives the data pulled by [NextNewsDataSource.sync].
+ * Items are handed over by chunks while the response is parsed, so the whole response is never held in memory.
+ */
+interface NextNewsSyncSink {
+
+    /**
+     * Called before any items chunk, as items need their feed
+     */
+    fun onFoldersAndFeeds(folders: List<Folder>, feeds: List<Feed>)
+
+    fun onItems(items: List<Item>, starred: Boolean)
+
+    /**
+     * Called after each initial sync batch, once its items have been handed over.
+     * An interrupted initial sync can be resumed from the last step and offset.
+     */
+    fun onCheckpoint(step: String, offset: Long)
+
+    /**
+     * Checked between requests and batches, the sync returns early once it is true.
+     * Already handed over batches and their checkpoint are kept.
+     */
+    fun isCancelled(): Boolean
+}
@@ -1,14 +1,15 @@
 package com.readrops.api.services.nextcloudnews.adapters
 
-import android.annotation.SuppressLint
 import com.readrops.db.entities.Item
 import com.readrops.api.utils.ApiUtils
+import com.readrops.api.utils.ChunkedConsumer
 import com.readrops.api.utils.exceptions.ParseException
 import com.readrops.api.utils.extensions.nextNonEmptyString
 import com.readrops.api.utils.extensions.nextNullableString
 import com.squareup.moshi.JsonAdapter
 import com.squareup.moshi.JsonReader
 import com.squareup.moshi.JsonWriter
+import io.reactivex.functions.Consumer
 import org.joda.time.DateTimeZone
 import org.joda.time.LocalDateTime
 
@@ -18,12 +19,28 @@ class NextNewsItemsAdapter : JsonAdapter<List<Item>>() {
         // no need of this
     }
 
-    @SuppressLint("CheckResult")
-    @Override
     override fun fromJson(reader: JsonReader): List<Item> {
         val items = mutableListOf<Item>()
+        parseItems(reader) { items += it }
 
-        return try {
+        return items
+    }
+
+    /**
+     * Streaming variant, items are handed to [consumer] by chunks of [chunkSize] while being parsed
+     *
+     * @return the number of parsed items
+     */
+    fun fromJson(reader: JsonReader, chunkSize: Int, consumer: Consumer<List<Item>>): Int {
+        val chunkedConsumer = ChunkedConsumer(chunkSize, consumer)
+        parseItems(reader, chunkedConsumer::add)
+        chunkedConsumer.flush()
+
+        return chunkedConsumer.count
+    }
+
+    private fun parseItems(reader: JsonReader, onItem: (Item) -> Unit) {
+        try {
             reader.beginObject()
             reader.nextName() // "items", beginning of items array
             reader.beginArray()
@@ -58,14 +75,12 @@ class NextNewsItemsAdapter : JsonAdapter<List<Item>>() {
                 if (enclosureMime != null && ApiUtils.isMimeImage(enclosureMime!!))
                     item.imageLink = enclosureLink
 
-                items += item
                 reader.endObject()
+                onItem(item)
             }
 
             reader.endArray()
             reader.endObject()
-
-            items
         } catch (e: Exception) {
             throw ParseException(e.message)
         }
@@ -1,6 +1,8 @@
 package com.readrops.api.utils
 
+import okhttp3.Response
 import org.jsoup.Jsoup
+import java.net.HttpURLConnection
 import java.util.regex.Pattern
 
 object ApiUtils {
@@ -15,6 +17,7 @@ object ApiUtils {
     const val HTTP_UNPROCESSABLE = 422
     const val HTTP_NOT_FOUND = 404
     const val HTTP_CONFLICT = 409
+    const val HTTP_PERMANENT_REDIRECT = 308
 
     private const val RSS_CONTENT_TYPE_REGEX = "([^;]+)"
 
@@ -31,6 +34,27 @@ object ApiUtils {
         }
     }
 
+    /**
+     * Follow the redirects of the response from the first request while they are permanent
+     *
+     * @param response final response of a call
+     * @return the url the first request permanently moved to, null if it wasn't permanently redirected
+     */
+    @JvmStatic
+    fun permanentRedirectUrl(response: Response): String? {
+        val chain = generateSequence(response) { it.priorResponse }.toList().asReversed()
+        var url: String? = null
+
+        for (i in 0 until chain.size - 1) {
+            val code = chain[i].code
+            if (code != HttpURLConnection.HTTP_MOVED_PERM && code != HTTP_PERMANENT_REDIRECT) break
+
+            url = chain[i + 1].request.url.toString()
+        }
+
+        return url
+    }
+
     /**
      * Remove html tags and trim the text
      *
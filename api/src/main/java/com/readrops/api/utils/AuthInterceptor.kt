@@ -5,14 +5,18 @@ import okhttp3.Interceptor
 import okhttp3.Response
 import java.net.URI
 
-class AuthInterceptor(var credentials: Credentials? = null) : Interceptor {
+/**
+ * Adds the authorization header of an account to its client requests.
+ * Credentials are immutable, each account client has its own interceptor.
+ */
+class AuthInterceptor(private val credentials: Credentials?) : Interceptor {
 
     override fun intercept(chain: Interceptor.Chain): Response {
         val requestBuilder = chain.request().newBuilder()
 
         credentials?.let {
             if (it.authorization != null) {
-                requestBuilder.addHeader("Authorization", it.authorization)
+                requestBuilder.header("Authorization", it.authorization)
             }
         }
 
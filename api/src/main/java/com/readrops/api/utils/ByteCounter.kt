@@ -0,0 +1,20 @@
+package com.readrops.api.utils
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Response body bytes of the calls it is attached to, counted by [NetworkMetrics].
+ * Attach it to a request as its tag, or to a client with [NetworkMetrics.counting],
+ * so concurrent calls to the same host are attributed to their own caller.
+ */
+class ByteCounter {
+
+    private val bytes = AtomicLong()
+
+    val bytesReceived: Long
+        get() = bytes.get()
+
+    fun add(byteCount: Long) {
+        bytes.addAndGet(byteCount)
+    }
+}
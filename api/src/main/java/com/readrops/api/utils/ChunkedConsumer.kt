@@ -0,0 +1,31 @@
+package com.readrops.api.utils
+
+import io.reactivex.functions.Consumer
+
+/**
+ * Hands values to [consumer] by lists of [chunkSize] values.
+ * Lets adapters stream parsed items without holding a whole response in memory.
+ */
+class ChunkedConsumer<T>(private val chunkSize: Int, private val consumer: Consumer<List<T>>) {
+
+    private var chunk = ArrayList<T>(chunkSize)
+
+    var count = 0
+        private set
+
+    fun add(value: T) {
+        chunk.add(value)
+        count++
+
+        if (chunk.size >= chunkSize) flush()
+    }
+
+    fun flush() {
+        if (chunk.isNotEmpty()) {
+            val fullChunk = chunk
+            chunk = ArrayList(chunkSize)
+
+            consumer.accept(fullChunk)
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.readrops.api.utils
+
+import android.util.Log
+import com.readrops.api.services.Credentials
+import com.readrops.db.dao.HostMetricsDao
+import com.readrops.db.entities.HostMetrics
+import okhttp3.Call
+import okhttp3.Connection
+import okhttp3.EventListener
+import okhttp3.Handshake
+import okhttp3.Protocol
+import java.io.IOException
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.Proxy
+import java.util.concurrent.TimeUnit
+
+/**
+ * Aggregates DNS, connection, TLS and time to first byte timings, body bytes and connection reuse per host,
+ * from the events of every call of the clients it is set on.
+ * Only counters are kept, in a store bounded to the [maxHosts] most recently used hosts,
+ * and persisted with [persistIfDue] so they survive the process.
+ * Calls are attributed to the host of their original request, redirects included.
+ * Their response bytes are also added to the [ByteCounter] of the request tag or of the client.
+ */
+class NetworkMetrics(private val dao: HostMetricsDao?, private val maxHosts: Int = DEFAULT_MAX_HOSTS) : EventListener.Factory {
+
+    private val hosts = object : LinkedHashMap<String, HostMetrics>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, HostMetrics>?) = size > maxHosts
+    }
+
+    private val accountCounters = object : LinkedHashMap<Pair<String, String?>, ByteCounter>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Pair<String, String?>, ByteCounter>?) =
+                size > MAX_ACCOUNT_COUNTERS
+    }
+
+    private var restored = dao == null
+    // the first call persists, processes started for a single sync wouldn't last the interval
+    private var lastPersist = 0L
+
+    override fun create(call: Call): EventListener =
+            MetricsListener(call.request().url.host, call.request().tag(ByteCounter::class.java))
+
+    /**
+     * Listener factory for a client whose calls are counted by [counter], unless their request has its own counter tag
+     */
+    fun counting(counter: ByteCounter): EventListener.Factory = object : EventListener.Factory {
+        override fun create(call: Call): EventListener =
+                MetricsListener(call.request().url.host, call.request().tag(ByteCounter::class.java) ?: counter)
+    }
+
+    /**
+     * Counter of the account clients built for these credentials, shared by the client and the account syncs
+     */
+    fun accountCounter(credentials: Credentials): ByteCounter = synchronized(accountCounters) {
+        accountCounters.getOrPut(credentials.url to credentials.authorization) { ByteCounter() }
+    }
+
+    /**
+     * @return response bytes received from the host, 0 if it isn't in the store
+     */
+    fun bytesReceived(host: String): Long = synchronized(hosts) {
+        hosts[host]?.bytesReceived ?: 0
+    }
+
+    /**
+     * @return a copy of the host measures, null if it isn't in the store
+     */
+    fun getHostMetrics(host: String): HostMetrics? = synchronized(hosts) {
+        hosts[host]?.copy()
+    }
+
+    /**
+     * Copy of all the measures, previously persisted ones included.
+     * Can read the database.
+     */
+    fun snapshot(): List<HostMetrics> {
+        restore()
+
+        return synchronized(hosts) { hosts.values.map { it.copy() } }
+    }
+
+    /**
+     * Write the measures if they haven't been written for [PERSIST_INTERVAL] milliseconds by this process.
+     * Meant to be called from a background thread after network work, a sync for example.
+     */
+    fun persistIfDue() {
+        if (dao == null || System.currentTimeMillis() - lastPersist < PERSIST_INTERVAL) return
+
+        try {
+            dao.replaceAll(snapshot())
+            lastPersist = System.currentTimeMillis()
+        } catch (e: Exception) {
+            Log.e(TAG, "persistIfDue: ${e.message}")
+        }
+    }
+
+    /**
+     * Text table of the measures, averages in milliseconds, for bug reports.
+     * Can read the database.
+     */
+    fun dump(): String = buildString {
+        appendLine("host | calls | failed | dns | connect | tls | ttfb | received | sent | reuse")
+
+        for (metrics in snapshot().sortedByDescending { it.calls }) {
+            with(metrics) {
+                appendLine("$host | $calls | $failedCalls | ${average(dnsTime, dnsCount)} | ${average(connectTime, connectCount)} | " +
+                        "${average(tlsTime, tlsCount)} | ${average(ttfbTime, ttfbCount)} | $bytesReceived | $bytesSent | " +
+                        "%.2f".format(reuseRatio))
+            }
+        }
+    }
+
+    private fun average(totalMicros: Long, count: Long) =
+            if (count > 0) "%.1f".format(totalMicros / count / 1000.0) else "-"
+
+    /**
+     * Add the persisted measures to the ones recorded since the process start, once
+     */
+    private fun restore() {
+        synchronized(this) {
+            if (restored) return
+
+            try {
+                val persisted = dao!!.selectAll()
+
+                synchronized(hosts) {
+                    for (metrics in persisted) {
+                        hosts.getOrPut(metrics.host) { HostMetrics(metrics.host) }.add(metrics)
+                    }
+                }
+            } catch (e: Exception) {
+                Log.e(TAG, "restore: ${e.message}")
+            }
+
+            restored = true
+        }
+    }
+
+    private fun record(host: String, update: HostMetrics.() -> Unit) = synchronized(hosts) {
+        hosts.getOrPut(host) { HostMetrics(host) }.update()
+    }
+
+    /**
+     * One listener per call, its events are sequential
+     */
+    private inner class MetricsListener(private val host: String, private val counter: ByteCounter?) : EventListener() {
+
+        private var dnsStart = 0L
+        private var connectStart = 0L
+        private var tlsStart = 0L
+        private var requestStart = 0L
+        private var newConnection = false
+
+        override fun dnsStart(call: Call, domainName: String) {
+            dnsStart = System.nanoTime()
+        }
+
+        override fun dnsEnd(call: Call, domainName: String, inetAddressList: List<InetAddress>) {
+            val duration = elapsedMicros(dnsStart)
+            record(host) { dnsCount++; dnsTime += duration }
+        }
+
+        override fun connectStart(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy) {
+            connectStart = System.nanoTime()
+            newConnection = true
+        }
+
+        override fun secureConnectStart(call: Call) {
+            tlsStart = System.nanoTime()
+        }
+
+        override fun secureConnectEnd(call: Call, handshake: Handshake?) {
+            val duration = elapsedMicros(tlsStart)
+            record(host) { tlsCount++; tlsTime += duration }
+        }
+
+        override fun connectEnd(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy, protocol: Protocol?) {
+            val duration = elapsedMicros(connectStart)
+            record(host) { connectCount++; connectTime += duration }
+        }
+
+        override fun connectionAcquired(call: Call, connection: Connection) {
+            val reused = !newConnection
+            newConnection = false
+
+            record(host) {
+                connectionsAcquired++
+                if (reused) connectionsReused++
+            }
+        }
+
+        override fun requestHeadersStart(call: Call) {
+            requestStart = System.nanoTime()
+        }
+
+        override fun responseHeadersStart(call: Call) {
+            val duration = elapsedMicros(requestStart)
+            record(host) { ttfbCount++; ttfbTime += duration }
+        }
+
+        override fun requestBodyEnd(call: Call, byteCount: Long) {
+            record(host) { bytesSent += byteCount }
+        }
+
+        override fun responseBodyEnd(call: Call, byteCount: Long) {
+            record(host) { bytesReceived += byteCount }
+            counter?.add(byteCount)
+        }
+
+        override fun callEnd(call: Call) {
+            record(host) { calls++ }
+        }
+
+        override fun callFailed(call: Call, ioe: IOException) {
+            record(host) { calls++; failedCalls++ }
+        }
+
+        private fun elapsedMicros(start: Long) = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start)
+    }
+
+    companion object {
+        private val TAG = NetworkMetrics::class.java.simpleName
+
+        const val DEFAULT_MAX_HOSTS = 100
+        const val MAX_ACCOUNT_COUNTERS = 8
+        const val PERSIST_INTERVAL = 15 * 60 * 1000L
+    }
+}
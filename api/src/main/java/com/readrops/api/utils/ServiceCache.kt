@@ -0,0 +1,26 @@
+package com.readrops.api.utils
+
+import com.readrops.api.services.Credentials
+
+/**
+ * Keeps the services built for the last used credentials, as building a Retrofit instance
+ * and its service proxy each time a repository is created is costly.
+ * New credentials (new token, new password) give a new entry, the old one being evicted later.
+ */
+class ServiceCache(private val maxSize: Int = DEFAULT_MAX_SIZE) {
+
+    private val services = object : LinkedHashMap<Key, Any>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, Any>?) = size > maxSize
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    fun <T : Any> get(serviceClass: Class<T>, credentials: Credentials, build: () -> T): T = synchronized(services) {
+        services.getOrPut(Key(serviceClass, credentials.url, credentials.authorization), build) as T
+    }
+
+    private data class Key(val serviceClass: Class<*>, val url: String, val authorization: String?)
+
+    companion object {
+        const val DEFAULT_MAX_SIZE = 8
+    }
+}
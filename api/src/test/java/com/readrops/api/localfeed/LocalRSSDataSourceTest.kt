@@ -4,7 +4,6 @@ import android.accounts.NetworkErrorException
 import com.readrops.api.TestUtils
 import com.readrops.api.apiModule
 import com.readrops.api.utils.ApiUtils
-import com.readrops.api.utils.AuthInterceptor
 import com.readrops.api.utils.exceptions.ParseException
 import com.readrops.api.utils.exceptions.UnknownFormatException
 import junit.framework.TestCase.*
@@ -40,7 +39,6 @@ class LocalRSSDataSourceTest : KoinTest {
                 OkHttpClient.Builder()
                         .callTimeout(1, TimeUnit.MINUTES)
                         .readTimeout(1, TimeUnit.HOURS)
-                        .addInterceptor(get<AuthInterceptor>())
                         .build()
             }
         })
@@ -149,6 +147,35 @@ class LocalRSSDataSourceTest : KoinTest {
         assertNull(pair)
     }
 
+    @Test
+    fun permanentRedirectTest() {
+        mockServer.enqueue(MockResponse().setResponseCode(HttpURLConnection.HTTP_MOVED_PERM)
+                .addHeader("Location", "/moved"))
+        mockServer.enqueue(MockResponse().setResponseCode(HttpURLConnection.HTTP_MOVED_TEMP)
+                .addHeader("Location", "/temporary"))
+        mockServer.enqueue(MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_MODIFIED))
+
+        var redirectUrl: String? = null
+        val pair = localRSSDataSource.queryRSSResource(url.toString(), null,
+                LocalRSSDataSource.ResponseListener { redirectUrl = ApiUtils.permanentRedirectUrl(it) })
+
+        assertNull(pair)
+        assertEquals("http://localhost:8080/moved", redirectUrl)
+    }
+
+    @Test
+    fun temporaryRedirectTest() {
+        mockServer.enqueue(MockResponse().setResponseCode(HttpURLConnection.HTTP_MOVED_TEMP)
+                .addHeader("Location", "/temporary"))
+        mockServer.enqueue(MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_MODIFIED))
+
+        var redirectUrl: String? = "not called"
+        localRSSDataSource.queryRSSResource(url.toString(), null,
+                LocalRSSDataSource.ResponseListener { redirectUrl = ApiUtils.permanentRedirectUrl(it) })
+
+        assertNull(redirectUrl)
+    }
+
     @Test(expected = NetworkErrorException::class)
     fun response404Test() {
         mockServer.enqueue(MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_FOUND))
@@ -0,0 +1,33 @@
+package com.readrops.api.services
+
+import com.readrops.db.entities.Item
+import junit.framework.TestCase.*
+import org.junit.Test
+
+class NewItemsSummaryTest {
+
+    @Test
+    fun summaryTest() {
+        val summary = NewItemsSummary()
+        assertTrue(summary.isEmpty)
+
+        summary.addAll(listOf(Item(id = 1, feedId = 10, title = "first", content = "<p>content</p>"),
+                Item(id = 2, feedId = 10, title = "second")))
+        summary.addAll(listOf(Item(id = 3, feedId = 20, title = "third", imageLink = "image")))
+
+        assertEquals(3, summary.count)
+        assertEquals(listOf(1L, 2L, 3L), summary.itemIds)
+        assertEquals(mapOf(10 to 2, 20 to 1), summary.countsByFeed)
+    }
+
+    @Test
+    fun singleItemTest() {
+        val summary = NewItemsSummary()
+        summary.addAll(listOf(Item(id = 1, feedId = 10), Item(id = 2, feedId = 10),
+                Item(id = 3, feedId = 20, title = "title", imageLink = "image")))
+
+        assertNull(summary.singleItem(10))
+        assertNull(summary.singleItem(30))
+        assertEquals(NewItemPreview(3, 20, "title", "image"), summary.singleItem(20))
+    }
+}
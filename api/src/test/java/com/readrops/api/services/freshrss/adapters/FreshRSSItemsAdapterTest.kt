@@ -2,6 +2,7 @@ package com.readrops.api.services.freshrss.adapters
 
 import com.readrops.api.TestUtils
 import com.readrops.db.entities.Item
+import com.squareup.moshi.JsonReader
 import com.squareup.moshi.Moshi
 import com.squareup.moshi.Types
 import junit.framework.TestCase.assertEquals
@@ -40,4 +41,13 @@ class FreshRSSItemsAdapterTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    fun continuationTest() {
+        val stream = TestUtils.loadResource("services/freshrss/adapters/items.json")
+
+        val page = FreshRSSItemsAdapter().fromJsonPage(JsonReader.of(Buffer().readFrom(stream)))
+
+        assertEquals(page.continuation, "1620164205822673")
+    }
+
+}
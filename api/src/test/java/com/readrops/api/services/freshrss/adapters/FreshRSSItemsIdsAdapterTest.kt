@@ -1,5 +1,6 @@
 package com.readrops.api.services.freshrss.adapters
 
+import com.squareup.moshi.JsonReader
 import com.squareup.moshi.Moshi
 import com.squareup.moshi.Types
 import junit.framework.TestCase.assertEquals
@@ -27,4 +28,14 @@ class FreshRSSItemsIdsAdapterTest {
                 "tag:google.com,2005:reader/item/0005b2bebeed9f7f"
         ))
     }
-}
\ No newline at end of file
+
+    @Test
+    fun continuationTest() {
+        val stream = javaClass.classLoader!!.getResourceAsStream("services/freshrss/adapters/items_starred_ids.json")
+
+        val page = FreshRSSItemsIdsAdapter().fromJsonPage(JsonReader.of(Buffer().readFrom(stream)))
+
+        assertEquals(page.items.size, 5)
+        assertEquals(page.continuation, "1600675234695337")
+    }
+}
@@ -0,0 +1,32 @@
+package com.readrops.api.services.freshrss.adapters
+
+import com.readrops.api.TestUtils
+import com.squareup.moshi.Moshi
+import junit.framework.TestCase.assertEquals
+import okio.Buffer
+import org.junit.Test
+
+class FreshRSSUnreadCountAdapterTest {
+
+    private val adapter = Moshi.Builder()
+            .add(FreshRSSUnreadCountAdapter())
+            .build()
+            .adapter(FreshRSSUnreadCount::class.java)
+
+    @Test
+    fun unreadCountTest() {
+        val stream = TestUtils.loadResource("services/freshrss/adapters/unread_count.json")
+
+        val unreadCount = adapter.fromJson(Buffer().readFrom(stream))!!
+
+        assertEquals(unreadCount.readingListCount, 12)
+    }
+
+    @Test
+    fun feedsUnreadCountTest() {
+        val unreadCount = adapter.fromJson("{\"max\": 150000, \"unreadcounts\": [{\"id\": \"feed/2\", \"count\": 5}, " +
+                "{\"id\": \"user/-/label/Tech\", \"count\": 12}, {\"id\": \"feed/3\", \"count\": 7}]}")!!
+
+        assertEquals(unreadCount.readingListCount, 12)
+    }
+}
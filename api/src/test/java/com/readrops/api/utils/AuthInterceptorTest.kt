@@ -1,5 +1,6 @@
 package com.readrops.api.utils
 
+import com.readrops.api.services.Credentials
 import com.readrops.api.services.freshrss.FreshRSSCredentials
 import junit.framework.TestCase.assertEquals
 import junit.framework.TestCase.assertNull
@@ -13,13 +14,10 @@ import org.junit.Test
 
 class AuthInterceptorTest {
 
-    private val interceptor = AuthInterceptor()
     private val mockServer = MockWebServer()
-    private lateinit var okHttpClient: OkHttpClient
 
     @Before
     fun before() {
-        okHttpClient = OkHttpClient.Builder().addInterceptor(interceptor).build()
         mockServer.start(8080)
     }
 
@@ -28,10 +26,14 @@ class AuthInterceptorTest {
         mockServer.close()
     }
 
+    private fun client(credentials: Credentials?) = OkHttpClient.Builder()
+            .addInterceptor(AuthInterceptor(credentials))
+            .build()
+
     @Test
     fun credentialsUrlTest() {
         mockServer.enqueue(MockResponse())
-        interceptor.credentials = FreshRSSCredentials("token", "http://localhost:8080/rss")
+        val okHttpClient = client(FreshRSSCredentials("token", "http://localhost:8080/rss"))
 
         okHttpClient.newCall(Request.Builder().url(mockServer.url("/url")).build()).execute()
         val request = mockServer.takeRequest()
@@ -42,7 +44,7 @@ class AuthInterceptorTest {
     @Test
     fun nullCredentialsTest() {
         mockServer.enqueue(MockResponse())
-        interceptor.credentials = null
+        val okHttpClient = client(null)
 
         okHttpClient.newCall(Request.Builder().url(mockServer.url("/url")).build()).execute()
         val request = mockServer.takeRequest()
@@ -50,4 +52,24 @@ class AuthInterceptorTest {
         assertEquals(request.requestUrl.toString(), "http://localhost:8080/url")
         assertNull(request.headers["Authorization"])
     }
-}
\ No newline at end of file
+
+    @Test
+    fun derivedClientsTest() {
+        mockServer.enqueue(MockResponse())
+        mockServer.enqueue(MockResponse())
+
+        val sharedClient = OkHttpClient.Builder().build()
+        val firstClient = sharedClient.newBuilder()
+                .addInterceptor(AuthInterceptor(FreshRSSCredentials("first", "http://localhost:8080/rss")))
+                .build()
+        val secondClient = sharedClient.newBuilder()
+                .addInterceptor(AuthInterceptor(FreshRSSCredentials("second", "http://localhost:8080/rss")))
+                .build()
+
+        firstClient.newCall(Request.Builder().url(mockServer.url("/url")).build()).execute()
+        secondClient.newCall(Request.Builder().url(mockServer.url("/url")).build()).execute()
+
+        assertEquals(mockServer.takeRequest().headers["Authorization"], "GoogleLogin auth=first")
+        assertEquals(mockServer.takeRequest().headers["Authorization"], "GoogleLogin auth=second")
+    }
+}
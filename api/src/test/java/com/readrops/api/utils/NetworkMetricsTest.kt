@@ -0,0 +1,156 @@
+package com.readrops.api.utils
+
+import com.readrops.db.dao.HostMetricsDao
+import com.readrops.db.entities.HostMetrics
+import junit.framework.TestCase.assertEquals
+import junit.framework.TestCase.assertNull
+import junit.framework.TestCase.assertTrue
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+class NetworkMetricsTest {
+
+    private val mockServer = MockWebServer()
+
+    @Before
+    fun before() {
+        mockServer.start(8080)
+    }
+
+    @After
+    fun tearDown() {
+        mockServer.close()
+    }
+
+    private fun client(networkMetrics: NetworkMetrics) = OkHttpClient.Builder()
+            .eventListenerFactory(networkMetrics)
+            .build()
+
+    private fun OkHttpClient.get(path: String) = newCall(Request.Builder().url(mockServer.url(path)).build())
+            .execute()
+            .use { it.body?.string() }
+
+    @Test
+    fun hostMetricsTest() {
+        val networkMetrics = NetworkMetrics(null)
+        val client = client(networkMetrics)
+
+        mockServer.enqueue(MockResponse().setBody("0123456789"))
+        mockServer.enqueue(MockResponse().setBody("01234"))
+
+        client.get("/first")
+        client.get("/second")
+
+        val metrics = networkMetrics.getHostMetrics(mockServer.hostName)!!
+        assertEquals(2, metrics.calls)
+        assertEquals(0, metrics.failedCalls)
+        assertEquals(15, metrics.bytesReceived)
+        assertEquals(2, metrics.ttfbCount)
+        assertEquals(1, metrics.connectCount)
+        assertEquals(0, metrics.tlsCount)
+
+        // the second call uses the pooled connection
+        assertEquals(2, metrics.connectionsAcquired)
+        assertEquals(1, metrics.connectionsReused)
+        assertEquals(0.5, metrics.reuseRatio)
+
+        assertEquals(15, networkMetrics.bytesReceived(mockServer.hostName))
+    }
+
+    @Test
+    fun boundedStoreTest() {
+        val networkMetrics = NetworkMetrics(null, 1)
+        val client = client(networkMetrics)
+
+        mockServer.enqueue(MockResponse().setBody("0123456789"))
+        mockServer.enqueue(MockResponse().setBody("01234"))
+
+        client.get("/url")
+        // same server, other host name
+        client.newCall(Request.Builder().url("http://127.0.0.1:8080/url").build()).execute().use { it.body?.string() }
+
+        assertEquals(1, networkMetrics.snapshot().size)
+        assertEquals("127.0.0.1", networkMetrics.snapshot().first().host)
+        assertNull(networkMetrics.getHostMetrics(mockServer.hostName))
+    }
+
+    @Test
+    fun dumpTest() {
+        val networkMetrics = NetworkMetrics(null)
+
+        mockServer.enqueue(MockResponse().setBody("0123456789"))
+        client(networkMetrics).get("/url")
+
+        val lines = networkMetrics.dump().lines()
+        assertTrue(lines[1].startsWith(mockServer.hostName + " | 1 | 0 |"))
+    }
+
+    @Test
+    fun byteCountersTest() {
+        val networkMetrics = NetworkMetrics(null)
+        val clientCounter = ByteCounter()
+        val requestCounter = ByteCounter()
+        val client = OkHttpClient.Builder()
+                .eventListenerFactory(networkMetrics.counting(clientCounter))
+                .build()
+
+        mockServer.enqueue(MockResponse().setBody("0123456789"))
+        mockServer.enqueue(MockResponse().setBody("01234"))
+        mockServer.enqueue(MockResponse().setBody("012"))
+
+        client.get("/client")
+        client.newCall(Request.Builder().url(mockServer.url("/request")).tag(ByteCounter::class.java, requestCounter).build())
+                .execute()
+                .use { it.body?.string() }
+        // other client calling the same host
+        client(networkMetrics).get("/other")
+
+        assertEquals(10, clientCounter.bytesReceived)
+        assertEquals(5, requestCounter.bytesReceived)
+        assertEquals(18, networkMetrics.bytesReceived(mockServer.hostName))
+    }
+
+    @Test
+    fun persistTest() {
+        val dao = FakeHostMetricsDao()
+        val networkMetrics = NetworkMetrics(dao)
+
+        mockServer.enqueue(MockResponse().setBody("0123456789"))
+        client(networkMetrics).get("/url")
+
+        // the first call after the process start persists
+        networkMetrics.persistIfDue()
+        assertEquals(1, dao.metrics.size)
+        assertEquals(10, dao.metrics.first().bytesReceived)
+
+        mockServer.enqueue(MockResponse().setBody("01234"))
+        client(networkMetrics).get("/url")
+
+        // then not before the interval
+        networkMetrics.persistIfDue()
+        assertEquals(10, dao.metrics.first().bytesReceived)
+    }
+
+    @Test
+    fun unknownHostTest() {
+        assertEquals(0, NetworkMetrics(null).bytesReceived("example.com"))
+    }
+
+    private class FakeHostMetricsDao : HostMetricsDao() {
+
+        val metrics = mutableListOf<HostMetrics>()
+
+        override fun selectAll(): List<HostMetrics> = metrics.map { it.copy() }
+
+        override fun insert(metrics: List<HostMetrics>) {
+            this.metrics += metrics
+        }
+
+        override fun deleteAll() = metrics.clear()
+    }
+}
@@ -0,0 +1,37 @@
+package com.readrops.api.utils
+
+import com.readrops.api.services.freshrss.FreshRSSCredentials
+import junit.framework.TestCase.assertNotSame
+import junit.framework.TestCase.assertSame
+import org.junit.Test
+
+class ServiceCacheTest {
+
+    private val cache = ServiceCache(2)
+
+    @Test
+    fun sameCredentialsTest() {
+        val first = cache.get(Any::class.java, FreshRSSCredentials("token", "https://url.com")) { Any() }
+        val second = cache.get(Any::class.java, FreshRSSCredentials("token", "https://url.com")) { Any() }
+
+        assertSame(first, second)
+    }
+
+    @Test
+    fun newCredentialsTest() {
+        val first = cache.get(Any::class.java, FreshRSSCredentials("token", "https://url.com")) { Any() }
+        val second = cache.get(Any::class.java, FreshRSSCredentials("new token", "https://url.com")) { Any() }
+
+        assertNotSame(first, second)
+    }
+
+    @Test
+    fun evictionTest() {
+        val first = cache.get(Any::class.java, FreshRSSCredentials("token1", "https://url.com")) { Any() }
+        cache.get(Any::class.java, FreshRSSCredentials("token2", "https://url.com")) { Any() }
+        cache.get(Any::class.java, FreshRSSCredentials("token3", "https://url.com")) { Any() }
+
+        val newFirst = cache.get(Any::class.java, FreshRSSCredentials("token1", "https://url.com")) { Any() }
+        assertNotSame(first, newFirst)
+    }
+}
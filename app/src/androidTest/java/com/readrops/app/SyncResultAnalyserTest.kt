@@ -11,9 +11,9 @@ import com.readrops.db.entities.Item
 import com.readrops.db.entities.account.Account
 import com.readrops.db.entities.account.AccountType
 import com.readrops.api.services.SyncResult
-import org.joda.time.LocalDateTime
 import org.junit.After
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
 import org.junit.Assert.assertTrue
 import org.junit.Before
 import org.junit.Test
@@ -43,34 +43,33 @@ class SyncResultAnalyserTest {
         isNotificationsEnabled = true
     }
 
+    // account 1 feeds
+    private var feed1 = 0
+    private var feed2 = 0 // notifications disabled
+    private var feed3 = 0
+
+    // account 2 feed, the account has notifications disabled
+    private var feed4 = 0
+
+    // account 3 feeds
+    private var feed5 = 0
+    private var feed6 = 0 // notifications disabled
+
     @Before
     fun setupDb() {
         database = Room.inMemoryDatabaseBuilder(context, Database::class.java)
                 .build()
 
-        var account1Id = 0
-        database.accountDao().insert(account1).subscribe { id -> account1Id = id.toInt() }
-        account1.id = account1Id
-
-        var account2Id = 0
-        database.accountDao().insert(account2).subscribe { id -> account2Id = id.toInt() }
-        account2.id = account2Id
-
-        var account3Id = 0
-        database.accountDao().insert(account3).subscribe { id -> account3Id = id.toInt() }
-        account3.id = account3Id
-
-        val accountIds = listOf(account1Id, account2Id, account3Id)
-        for (i in 0..2) {
-            val feed = Feed().apply {
-                name = "feed ${i + 1}"
-                iconUrl = "https://i0.wp.com/mrmondialisation.org/wp-content/uploads/2017/05/ico_final.gif"
-                this.accountId = accountIds.find { it == (i + 1) }!!
-                isNotificationEnabled = i % 2 == 0
-            }
+        account1.id = database.accountDao().compatInsert(account1).toInt()
+        account2.id = database.accountDao().compatInsert(account2).toInt()
+        account3.id = database.accountDao().compatInsert(account3).toInt()
 
-            database.feedDao().insert(feed).subscribe()
-        }
+        feed1 = insertFeed("feed 1", account1, true)
+        feed2 = insertFeed("feed 2", account1, false)
+        feed3 = insertFeed("feed 3", account1, true)
+        feed4 = insertFeed("feed 4", account2, true)
+        feed5 = insertFeed("feed 5", account3, true)
+        feed6 = insertFeed("feed 6", account3, false)
     }
 
     @After
@@ -78,69 +77,75 @@ class SyncResultAnalyserTest {
         database.close()
     }
 
-    @Test
-    fun testOneElementEveryWhere() {
-        val item = Item().apply {
-            title = "caseOneElementEveryWhere"
-            feedId = 1
-            remoteId = "item 1"
-            pubDate = LocalDateTime.now()
+    private fun insertFeed(name: String, account: Account, notificationEnabled: Boolean): Int {
+        val feed = Feed().apply {
+            this.name = name
+            iconUrl = "https://i0.wp.com/mrmondialisation.org/wp-content/uploads/2017/05/ico_final.gif"
+            accountId = account.id
+            isNotificationEnabled = notificationEnabled
         }
 
-        database.itemDao()
-                .insert(item)
-                .subscribe()
+        return database.feedDao().compatInsert(feed).toInt()
+    }
 
-        val syncResult = SyncResult().apply { items = mutableListOf(item) }
+    /**
+     * Insert the items like a sync does and summarize them with their database ids
+     */
+    private fun newItems(feedId: Int, count: Int, title: String? = null): List<Item> {
+        val items = (1..count).map {
+            Item().apply {
+                this.title = title
+                this.feedId = feedId
+            }
+        }
+
+        database.itemDao().insert(items).forEachIndexed { index, id -> items[index].id = id.toInt() }
+        return items
+    }
+
+    private fun syncResult(vararg items: List<Item>) = SyncResult().apply {
+        items.forEach { newItems.addAll(it) }
+    }
+
+    @Test
+    fun testOneElementEveryWhere() {
+        val syncResult = syncResult(newItems(feed1, 1, "caseOneElementEveryWhere"))
         val notifContent = SyncResultAnalyser(context, mapOf(Pair(account1, syncResult)), database).getSyncNotifContent()
 
         assertEquals("caseOneElementEveryWhere", notifContent.content)
         assertEquals("feed 1", notifContent.title)
         assertTrue(notifContent.largeIcon != null)
-        assertTrue(notifContent.accountId!! > 0)
-
-        database.itemDao()
-                .delete(item)
-                .subscribe()
+        assertTrue(notifContent.item != null)
+        assertEquals(account1.id, notifContent.accountId)
     }
 
     @Test
     fun testTwoItemsOneFeed() {
-        val item = Item().apply {
-            title = "caseTwoItemsOneFeed"
-            feedId = 1
-        }
-
-        val syncResult = SyncResult().apply { items = listOf(item, item, item) }
+        val syncResult = syncResult(newItems(feed1, 3, "caseTwoItemsOneFeed"))
         val notifContent = SyncResultAnalyser(context, mapOf(Pair(account1, syncResult)), database).getSyncNotifContent()
 
-        assertEquals(context.getString(R.string.new_items, 3), notifContent.content)
+        assertEquals(context.getString(R.string.new_items, "3"), notifContent.content)
         assertEquals("feed 1", notifContent.title)
         assertTrue(notifContent.largeIcon != null)
-        assertTrue(notifContent.accountId!! > 0)
+        assertTrue(notifContent.item == null)
+        assertEquals(account1.id, notifContent.accountId)
     }
 
     @Test
     fun testMultipleFeeds() {
-        val item = Item().apply { feedId = 1 }
-        val item2 = Item().apply { feedId = 3 }
-
-        val syncResult = SyncResult().apply { items = listOf(item, item2) }
+        val syncResult = syncResult(newItems(feed1, 1), newItems(feed3, 1))
         val notifContent = SyncResultAnalyser(context, mapOf(Pair(account1, syncResult)), database).getSyncNotifContent()
 
-        assertEquals(context.getString(R.string.new_items, 2), notifContent.content)
+        assertEquals(context.getString(R.string.new_items, "2"), notifContent.content)
         assertEquals(account1.accountName, notifContent.title)
         assertTrue(notifContent.largeIcon != null)
-        assertTrue(notifContent.accountId!! > 0)
+        assertEquals(account1.id, notifContent.accountId)
     }
 
     @Test
     fun testMultipleAccounts() {
-        val item = Item().apply { feedId = 1 }
-        val item2 = Item().apply { feedId = 3 }
-
-        val syncResult = SyncResult().apply { items = listOf(item, item2) }
-        val syncResult2 = SyncResult().apply { items = listOf(item, item2) }
+        val syncResult = syncResult(newItems(feed1, 1), newItems(feed3, 1))
+        val syncResult2 = syncResult(newItems(feed5, 2))
 
         val syncResults = mutableMapOf<Account, SyncResult>().apply {
             put(account1, syncResult)
@@ -149,22 +154,12 @@ class SyncResultAnalyserTest {
 
         val notifContent = SyncResultAnalyser(context, syncResults, database).getSyncNotifContent()
 
-        assertEquals(context.getString(R.string.new_items, 4), notifContent.title)
+        assertEquals(context.getString(R.string.new_items, "4"), notifContent.title)
     }
 
     @Test
     fun testAccountNotificationsDisabled() {
-        val item1 = Item().apply {
-            title = "testAccountNotificationsDisabled"
-            feedId = 1
-        }
-
-        val item2 = Item().apply {
-            title = "testAccountNotificationsDisabled2"
-            feedId = 1
-        }
-
-        val syncResult = SyncResult().apply { items = listOf(item1, item2) }
+        val syncResult = syncResult(newItems(feed4, 2, "testAccountNotificationsDisabled"))
         val notifContent = SyncResultAnalyser(context, mapOf(Pair(account2, syncResult)), database).getSyncNotifContent()
 
         assert(notifContent.title == null)
@@ -174,17 +169,7 @@ class SyncResultAnalyserTest {
 
     @Test
     fun testFeedNotificationsDisabled() {
-        val item1 = Item().apply {
-            title = "testAccountNotificationsDisabled"
-            feedId = 2
-        }
-
-        val item2 = Item().apply {
-            title = "testAccountNotificationsDisabled2"
-            feedId = 2
-        }
-
-        val syncResult = SyncResult().apply { items = listOf(item1, item2) }
+        val syncResult = syncResult(newItems(feed2, 2, "testFeedNotificationsDisabled"))
         val notifContent = SyncResultAnalyser(context, mapOf(Pair(account1, syncResult)), database).getSyncNotifContent()
 
         assert(notifContent.title == null)
@@ -194,27 +179,8 @@ class SyncResultAnalyserTest {
 
     @Test
     fun testTwoAccountsWithOneAccountNotificationsEnabled() {
-        val item1 = Item().apply {
-            title = "testTwoAccountsWithOneAccountNotificationsEnabled"
-            feedId = 1
-            remoteId = "remoteId 1"
-            pubDate = LocalDateTime.now()
-        }
-
-        val item2 = Item().apply {
-            title = "testTwoAccountsWithOneAccountNotificationsEnabled2"
-            feedId = 3
-        }
-
-        val item3 = Item().apply {
-            title = "testTwoAccountsWithOneAccountNotificationsEnabled3"
-            feedId = 3
-        }
-
-        database.itemDao().insert(item1).subscribe()
-
-        val syncResult1 = SyncResult().apply { items = listOf(item1) }
-        val syncResult2 = SyncResult().apply { items = listOf(item2, item3) }
+        val syncResult1 = syncResult(newItems(feed1, 1, "testTwoAccountsWithOneAccountNotificationsEnabled"))
+        val syncResult2 = syncResult(newItems(feed4, 2, "testTwoAccountsWithOneAccountNotificationsEnabled"))
 
         val syncResults = mutableMapOf<Account, SyncResult>().apply {
             put(account1, syncResult1)
@@ -227,80 +193,84 @@ class SyncResultAnalyserTest {
         assertEquals("feed 1", notifContent.title)
         assertTrue(notifContent.largeIcon != null)
         assertTrue(notifContent.item != null)
-
-        database.itemDao().delete(item1).subscribe()
     }
 
     @Test
     fun testTwoAccountsWithOneFeedNotificationEnabled() {
-        val item1 = Item().apply {
-            title = "testTwoAccountsWithOneAccountNotificationsEnabled"
-            feedId = 1
-            remoteId = "remoteId 1"
-            pubDate = LocalDateTime.now()
-        }
-
-        val item2 = Item().apply {
-            title = "testTwoAccountsWithOneAccountNotificationsEnabled2"
-            feedId = 2
-        }
-
-        val item3 = Item().apply {
-            title = "testTwoAccountsWithOneAccountNotificationsEnabled3"
-            feedId = 2
-        }
-
-        database.itemDao().insert(item1).subscribe()
-
-        val syncResult1 = SyncResult().apply { items = listOf(item1) }
-        val syncResult2 = SyncResult().apply { items = listOf(item2, item3) }
+        val syncResult1 = syncResult(newItems(feed1, 1, "testTwoAccountsWithOneFeedNotificationEnabled"))
+        val syncResult2 = syncResult(newItems(feed6, 2, "testTwoAccountsWithOneFeedNotificationEnabled"))
 
         val syncResults = mutableMapOf<Account, SyncResult>().apply {
             put(account1, syncResult1)
-            put(account2, syncResult2)
+            put(account3, syncResult2)
         }
 
         val notifContent = SyncResultAnalyser(context, syncResults, database).getSyncNotifContent()
 
-        assertEquals("testTwoAccountsWithOneAccountNotificationsEnabled", notifContent.content)
+        // both accounts have notifications enabled, only the items of the feeds with notifications enabled are counted
+        assertEquals(context.getString(R.string.new_items, "1"), notifContent.title)
+        assert(notifContent.content == null)
+    }
+
+    @Test
+    fun testOneAccountTwoFeedsWithOneFeedNotificationEnabled() {
+        val syncResult = syncResult(newItems(feed1, 1, "testOneAccountTwoFeedsWithOneFeedNotificationEnabled"),
+                newItems(feed2, 2, "testOneAccountTwoFeedsWithOneFeedNotificationEnabled"))
+        val notifContent = SyncResultAnalyser(context, mapOf(Pair(account1, syncResult)), database).getSyncNotifContent()
+
+        assertEquals("testOneAccountTwoFeedsWithOneFeedNotificationEnabled", notifContent.content)
         assertEquals("feed 1", notifContent.title)
         assertTrue(notifContent.largeIcon != null)
         assertTrue(notifContent.item != null)
-
-        database.itemDao().delete(item1).subscribe()
+        assertEquals(account1.id, notifContent.accountId)
     }
 
-
     @Test
-    fun testOneAccountTwoFeedsWithOneFeedNotificationEnabled() {
-        val item1 = Item().apply {
-            title = "testTwoAccountsWithOneAccountNotificationsEnabled"
-            feedId = 1
-            remoteId = "remoteId 1"
-            pubDate = LocalDateTime.now()
+    fun testNewItemsCountsByFeed() {
+        val syncResult = syncResult(newItems(feed1, 3), newItems(feed2, 1), newItems(feed5, 2))
+
+        val counts = database.itemDao().selectNewItemsCountsByFeed(syncResult.newItems.itemIds)
+                .associateBy { it.feedId }
+
+        assertEquals(3, counts.size)
+        assertEquals(3, counts.getValue(feed1).itemCount)
+        assertEquals(1, counts.getValue(feed2).itemCount)
+        assertEquals(2, counts.getValue(feed5).itemCount)
+
+        with(counts.getValue(feed2)) {
+            assertEquals("feed 2", feedName)
+            assertEquals(account1.id, accountId)
+            assertFalse(isFeedNotificationEnabled)
+            assertTrue(isAccountNotificationsEnabled)
         }
 
-        val item2 = Item().apply {
-            title = "testTwoAccountsWithOneAccountNotificationsEnabled2"
-            feedId = 2
-        }
+        assertEquals(account3.id, counts.getValue(feed5).accountId)
+    }
 
-        val item3 = Item().apply {
-            title = "testTwoAccountsWithOneAccountNotificationsEnabled3"
-            feedId = 2
-        }
+    @Test
+    fun testNewItemsOverQueryIdsLimit() {
+        // the feed 1 items are split between two queries
+        val syncResult = syncResult(newItems(feed1, 1000), newItems(feed3, 500))
 
-        database.itemDao().insert(item1).subscribe()
+        val counts = database.itemDao().selectNewItemsCountsByFeed(syncResult.newItems.itemIds)
+                .associateBy { it.feedId }
+
+        assertEquals(2, counts.size)
+        assertEquals(1000, counts.getValue(feed1).itemCount)
+        assertEquals(500, counts.getValue(feed3).itemCount)
 
-        val syncResult = SyncResult().apply { items = listOf(item1, item2, item3) }
         val notifContent = SyncResultAnalyser(context, mapOf(Pair(account1, syncResult)), database).getSyncNotifContent()
 
-        assertEquals("testTwoAccountsWithOneAccountNotificationsEnabled", notifContent.content)
-        assertEquals("feed 1", notifContent.title)
-        assertTrue(notifContent.largeIcon != null)
-        assertTrue(notifContent.item != null)
-        assertTrue(notifContent.accountId!! > 0)
+        assertEquals(context.getString(R.string.new_items, "1500"), notifContent.content)
+        assertEquals(account1.accountName, notifContent.title)
+    }
 
-        database.itemDao().delete(item1).subscribe()
+    @Test
+    fun testNoNewItems() {
+        val notifContent = SyncResultAnalyser(context, mapOf(Pair(account1, SyncResult())), database).getSyncNotifContent()
+
+        assert(notifContent.title == null)
+        assert(notifContent.content == null)
+        assert(notifContent.accountId == null)
     }
-}
\ No newline at end of file
+}
@@ -10,9 +10,11 @@ import com.readrops.app.feedsfolders.ManageFeedsFoldersViewModel
 import com.readrops.app.item.ItemViewModel
 import com.readrops.app.itemslist.MainViewModel
 import com.readrops.app.notifications.NotificationPermissionViewModel
+import com.readrops.app.notifications.sync.SyncScheduler
 import com.readrops.app.repositories.FreshRSSRepository
 import com.readrops.app.repositories.LocalFeedRepository
 import com.readrops.app.repositories.NextNewsRepository
+import com.readrops.app.syncruns.SyncRunsViewModel
 import com.readrops.app.utils.GlideApp
 import com.readrops.db.entities.account.Account
 import com.readrops.db.entities.account.AccountType
@@ -59,10 +61,16 @@ val appModule = module {
         AccountViewModel(get())
     }
 
+    viewModel {
+        SyncRunsViewModel(get())
+    }
+
     single { GlideApp.with(androidApplication()) }
 
     single { PreferenceManager.getDefaultSharedPreferences(androidContext()) }
 
+    single { SyncScheduler(androidContext(), get(), get()) }
+
     single<Niddler> {
         val niddler = AndroidNiddler.Builder()
                 .setNiddlerInformation(AndroidNiddler.fromApplication(get()))
@@ -4,22 +4,36 @@ import android.app.Application
 import android.app.NotificationChannel
 import android.app.NotificationManager
 import android.os.Build
+import android.util.Log
 import androidx.appcompat.app.AppCompatDelegate
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.LifecycleEventObserver
+import androidx.lifecycle.ProcessLifecycleOwner
 import androidx.preference.PreferenceManager
+import androidx.work.Constraints
+import androidx.work.ExistingPeriodicWorkPolicy
+import androidx.work.PeriodicWorkRequestBuilder
+import androidx.work.WorkManager
 import com.readrops.api.apiModule
+import com.readrops.app.notifications.sync.SyncScheduler
+import com.readrops.app.retention.RetentionWorker
 import com.readrops.app.utils.SharedPreferencesManager
 import com.readrops.db.dbModule
+import io.reactivex.exceptions.UndeliverableException
 import io.reactivex.plugins.RxJavaPlugins
+import org.koin.android.ext.android.get
 import org.koin.android.ext.koin.androidContext
 import org.koin.android.ext.koin.androidLogger
 import org.koin.core.context.startKoin
 import org.koin.core.logger.Level
+import java.io.IOException
+import java.util.concurrent.TimeUnit
 
 open class ReadropsApp : Application() {
 
     override fun onCreate() {
         super.onCreate()
-        RxJavaPlugins.setErrorHandler { e: Throwable? -> }
+        RxJavaPlugins.setErrorHandler { handleUndeliverableError(it) }
 
         createNotificationChannels()
         PreferenceManager.setDefaultValues(this, R.xml.preferences, false)
@@ -38,6 +52,52 @@ open class ReadropsApp : Application() {
         }
 
         AppCompatDelegate.setDefaultNightMode(theme)
+        scheduleRetentionWorker()
+        scheduleSyncs()
+    }
+
+    /**
+     * Syncs adapt to when the app is opened, the periodic work is only replaced if its period changed
+     */
+    private fun scheduleSyncs() {
+        val syncScheduler = get<SyncScheduler>()
+
+        ProcessLifecycleOwner.get().lifecycle.addObserver(LifecycleEventObserver { _, event ->
+            if (event == Lifecycle.Event.ON_START) syncScheduler.onAppOpened()
+        })
+
+        syncScheduler.schedule()
+    }
+
+    private fun scheduleRetentionWorker() {
+        val constraints = Constraints.Builder()
+                .setRequiresBatteryNotLow(true)
+                .build()
+
+        val request = PeriodicWorkRequestBuilder<RetentionWorker>(1, TimeUnit.DAYS)
+                .addTag(RetentionWorker.TAG)
+                .setConstraints(constraints)
+                .build()
+
+        WorkManager.getInstance(this)
+                .enqueueUniquePeriodicWork(RetentionWorker.TAG, ExistingPeriodicWorkPolicy.KEEP, request)
+    }
+
+    /**
+     * Errors raised after their subscription was disposed, a stopped sync interrupting its requests for example.
+     * Network and interruption errors are expected there, bugs still reach the uncaught exception handler.
+     */
+    private fun handleUndeliverableError(throwable: Throwable) {
+        val error = if (throwable is UndeliverableException && throwable.cause != null) throwable.cause!! else throwable
+
+        when (error) {
+            is IOException, is InterruptedException -> Log.d(TAG, "undeliverable error: ${error.message}")
+            is NullPointerException, is IllegalArgumentException, is IllegalStateException -> {
+                val thread = Thread.currentThread()
+                thread.uncaughtExceptionHandler?.uncaughtException(thread, error)
+            }
+            else -> Log.w(TAG, "undeliverable error", error)
+        }
     }
 
     private fun createNotificationChannels() {
@@ -63,6 +123,8 @@ open class ReadropsApp : Application() {
     }
 
     companion object {
+        private val TAG = ReadropsApp::class.java.simpleName
+
         const val FEEDS_COLORS_CHANNEL_ID = "feedsColorsChannel"
         const val OPML_EXPORT_CHANNEL_ID = "opmlExportChannel"
         const val SYNC_CHANNEL_ID = "syncChannel"
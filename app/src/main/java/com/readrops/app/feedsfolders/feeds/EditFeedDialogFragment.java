@@ -36,6 +36,8 @@ public class EditFeedDialogFragment extends DialogFragment implements AdapterVie
     private TextInputEditText feedName;
     private TextInputEditText feedUrl;
     private Spinner folder;
+    private TextInputEditText retentionMaxAge;
+    private TextInputEditText retentionMaxCount;
 
     private Map<String, Integer> values;
 
@@ -75,6 +77,8 @@ public class EditFeedDialogFragment extends DialogFragment implements AdapterVie
                     Feed feed = feedWithFolder.getFeed();
                     feed.setName(feedName.getText().toString().trim());
                     feed.setUrl(feedUrl.getText().toString().trim());
+                    feed.setRetentionMaxAge(parseRetentionValue(retentionMaxAge));
+                    feed.setRetentionMaxCount(parseRetentionValue(retentionMaxCount));
 
                     viewModel.updateFeedWithFolder(feed)
                             .subscribeOn(Schedulers.io())
@@ -115,12 +119,37 @@ public class EditFeedDialogFragment extends DialogFragment implements AdapterVie
         feedName = v.findViewById(R.id.edit_feed_name_edit_text);
         feedUrl = v.findViewById(R.id.edit_feed_url_edit_text);
         folder = v.findViewById(R.id.edit_feed_folder_spinner);
+        retentionMaxAge = v.findViewById(R.id.edit_feed_retention_max_age_edit_text);
+        retentionMaxCount = v.findViewById(R.id.edit_feed_retention_max_count_edit_text);
 
         if (!account.getAccountType().getAccountConfig().isFeedUrlEditable())
             feedUrl.setEnabled(false);
 
         feedName.setText(feedWithFolder.getFeed().getName());
         feedUrl.setText(feedWithFolder.getFeed().getUrl());
+
+        Integer maxAge = feedWithFolder.getFeed().getRetentionMaxAge();
+        Integer maxCount = feedWithFolder.getFeed().getRetentionMaxCount();
+
+        if (maxAge != null)
+            retentionMaxAge.setText(String.valueOf(maxAge));
+
+        if (maxCount != null)
+            retentionMaxCount.setText(String.valueOf(maxCount));
+    }
+
+    /**
+     * @return the typed value, or null if the field is empty, meaning the global setting is used
+     */
+    @Nullable
+    private Integer parseRetentionValue(TextInputEditText editText) {
+        String value = editText.getText().toString().trim();
+
+        try {
+            return value.isEmpty() ? null : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     @Override
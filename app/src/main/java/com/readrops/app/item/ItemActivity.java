@@ -127,6 +127,8 @@ public class ItemActivity extends AppCompatActivity {
                 uiBinded = true;
             }
         });
+        viewModel.getContentError().observe(this, throwable ->
+                Utils.showSnackbar(binding.itemRoot, throwable.getMessage()));
 
         binding.activityItemFab.setOnClickListener(v -> openInNavigator());
 
@@ -3,15 +3,19 @@ package com.readrops.app.item;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.net.Uri;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.FileProvider;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
 import com.readrops.app.repositories.ARepository;
 import com.readrops.db.Database;
 import com.readrops.db.entities.Item;
+import com.readrops.db.entities.ItemContent;
 import com.readrops.db.entities.account.Account;
 import com.readrops.db.pojo.ItemWithFeed;
 import com.readrops.db.queries.ItemSelectionQueryBuilder;
@@ -25,11 +29,19 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import io.reactivex.Completable;
+import io.reactivex.Single;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.schedulers.Schedulers;
 
 public class ItemViewModel extends ViewModel {
 
+    private static final String TAG = ItemViewModel.class.getSimpleName();
+
     private final Database database;
     private Account account;
+    private final CompositeDisposable disposables = new CompositeDisposable();
+    private final MutableLiveData<Throwable> contentError = new MutableLiveData<>();
 
     public ItemViewModel(@NonNull Database database) {
         this.database = database;
@@ -39,9 +51,48 @@ public class ItemViewModel extends ViewModel {
         this.account = account;
     }
 
+    /**
+     * Item description and content are stored apart and compressed,
+     * they are loaded in background before the item is emitted.
+     * They are never updated once stored, so they are decompressed once and reused
+     * when the item or its state changes.
+     * A content loading error is emitted by {@link #getContentError()}, the item is then emitted without content.
+     */
     public LiveData<ItemWithFeed> getItemById(int id) {
-        return database.itemDao().getItemById(ItemSelectionQueryBuilder.buildQuery(id,
+        MediatorLiveData<ItemWithFeed> result = new MediatorLiveData<>();
+        LiveData<ItemWithFeed> source = database.itemDao().getItemById(ItemSelectionQueryBuilder.buildQuery(id,
                 account.getConfig().getUseSeparateState()));
+
+        disposables.add(Single.fromCallable(() -> {
+            Item content = new Item();
+            ItemContent itemContent = database.itemDao().selectContent(id);
+
+            if (itemContent != null)
+                itemContent.applyTo(content);
+
+            return content;
+        }).subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .onErrorReturn(throwable -> {
+                    Log.e(TAG, "item " + id + " content: " + throwable.getMessage(), throwable);
+                    contentError.setValue(throwable);
+
+                    return new Item();
+                })
+                .subscribe(content -> result.addSource(source, itemWithFeed -> {
+                    if (itemWithFeed == null)
+                        return;
+
+                    itemWithFeed.getItem().setDescription(content.getDescription());
+                    itemWithFeed.getItem().setContent(content.getContent());
+                    result.setValue(itemWithFeed);
+                })));
+
+        return result;
+    }
+
+    public LiveData<Throwable> getContentError() {
+        return contentError;
     }
 
     public Completable setStarState(Item item) {
@@ -66,4 +117,10 @@ public class ItemViewModel extends ViewModel {
 
         return FileProvider.getUriForFile(context, context.getPackageName(), image);
     }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        disposables.clear();
+    }
 }
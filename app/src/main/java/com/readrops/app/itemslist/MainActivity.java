@@ -71,10 +71,12 @@ import org.koin.android.compat.ViewModelCompat;
 import org.koin.java.KoinJavaComponent;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import io.reactivex.Completable;
 import io.reactivex.CompletableObserver;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
@@ -105,7 +107,6 @@ public class MainActivity extends AppCompatActivity implements SwipeRefreshLayou
     private int feedCount;
     private int feedNb;
     private boolean scrollToTop;
-    private boolean allItemsSelected;
     private boolean updating;
 
     private ActionMode actionMode;
@@ -366,12 +367,7 @@ public class MainActivity extends AppCompatActivity implements SwipeRefreshLayou
                     updateDrawerFeeds();
                 } else {
                     adapter.toggleSelection(position);
-                    int selectionSize = adapter.getSelection().size();
-
-                    if (selectionSize > 0)
-                        actionMode.setTitle(String.valueOf(selectionSize));
-                    else
-                        actionMode.finish();
+                    updateActionModeTitle();
                 }
             }
 
@@ -384,7 +380,7 @@ public class MainActivity extends AppCompatActivity implements SwipeRefreshLayou
                 adapter.toggleSelection(position);
 
                 actionMode = startActionMode(MainActivity.this);
-                actionMode.setTitle(String.valueOf(adapter.getSelection().size()));
+                updateActionModeTitle();
             }
         });
 
@@ -453,12 +449,7 @@ public class MainActivity extends AppCompatActivity implements SwipeRefreshLayou
                     if (!item.isRead() && SharedPreferencesManager.readBoolean(SharedPreferencesManager
                             .SharedPrefKey.MARK_ITEMS_READ_ON_SCROLL)) {
                         item.setRead(!item.isRead());
-
-                        viewModel.setItemReadState(item)
-                                .subscribeOn(Schedulers.io())
-                                .observeOn(AndroidSchedulers.mainThread())
-                                .doOnError(throwable -> Utils.showSnackbar(binding.mainRoot, throwable.getMessage()))
-                                .subscribe();
+                        viewModel.bufferItemReadState(item);
                     }
                 }
             }
@@ -518,14 +509,15 @@ public class MainActivity extends AppCompatActivity implements SwipeRefreshLayou
             setReadState(true);
         } else if (itemId == R.id.item_mark_unread) {
             setReadState(false);
+        } else if (itemId == R.id.item_read_later) {
+            setReadItLater(viewModel.getFilterType() != FilterType.READ_IT_LATER_FILTER);
         } else if (itemId == R.id.item_select_all) {
-            if (allItemsSelected) {
+            if (adapter.isAllSelected()) {
                 adapter.unselectAll();
-                allItemsSelected = false;
                 actionMode.finish();
             } else {
                 adapter.selectAll();
-                allItemsSelected = true;
+                updateActionModeTitle();
             }
         }
 
@@ -543,28 +535,52 @@ public class MainActivity extends AppCompatActivity implements SwipeRefreshLayou
         adapter.clearSelection();
     }
 
-    private void setReadState(boolean read) {
-        if (allItemsSelected) {
-            viewModel.setAllItemsReadState(read)
+    /**
+     * When all the items are selected, the count is computed by the database as they may not be loaded
+     */
+    private void updateActionModeTitle() {
+        if (adapter.isAllSelected()) {
+            viewModel.countAllItems(new ArrayList<>(adapter.getSelection()))
                     .subscribeOn(Schedulers.io())
                     .observeOn(AndroidSchedulers.mainThread())
-                    .doOnError(throwable -> Utils.showSnackbar(binding.mainRoot, throwable.getMessage()))
-                    .subscribe();
-
-            allItemsSelected = false;
+                    .subscribe(count -> {
+                        if (actionMode != null)
+                            actionMode.setTitle(String.valueOf(count));
+                    }, throwable -> Utils.showSnackbar(binding.mainRoot, throwable.getMessage()));
+        } else if (!adapter.getSelection().isEmpty()) {
+            actionMode.setTitle(String.valueOf(adapter.getSelection().size()));
         } else {
-            viewModel.setItemsReadState(adapter.getSelectedItems(), read)
-                    .subscribeOn(Schedulers.io())
-                    .observeOn(AndroidSchedulers.mainThread())
-                    .doOnError(throwable -> Utils.showSnackbar(binding.mainRoot, throwable.getMessage()))
-                    .subscribe();
+            actionMode.finish();
         }
+    }
+
+    private void setReadState(boolean read) {
+        Completable completable;
+        if (adapter.isAllSelected())
+            completable = viewModel.setAllItemsReadState(new ArrayList<>(adapter.getSelection()), read);
+        else
+            completable = viewModel.setItemsReadState(new ArrayList<>(adapter.getSelection()), read);
+
+        completable.subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .doOnError(throwable -> Utils.showSnackbar(binding.mainRoot, throwable.getMessage()))
+                .subscribe();
 
         adapter.updateSelection(read);
         updateDrawerFeeds();
         actionMode.finish();
     }
 
+    private void setReadItLater(boolean readLater) {
+        viewModel.setItemsReadItLater(new ArrayList<>(adapter.getSelection()), adapter.isAllSelected(), readLater)
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .doOnError(throwable -> Utils.showSnackbar(binding.mainRoot, throwable.getMessage()))
+                .subscribe();
+
+        actionMode.finish();
+    }
+
     @Override
     public void onRefresh() {
         Log.d(TAG, "syncing started");
@@ -850,6 +866,12 @@ public class MainActivity extends AppCompatActivity implements SwipeRefreshLayou
                 .start(this);
     }
 
+    @Override
+    protected void onPause() {
+        viewModel.flushItemsReadState();
+        super.onPause();
+    }
+
     @Override
     protected void onDestroy() {
         if (syncDisposable != null && !syncDisposable.isDisposed())
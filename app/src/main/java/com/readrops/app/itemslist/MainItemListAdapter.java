@@ -33,7 +33,6 @@ import com.readrops.app.utils.Utils;
 import com.readrops.db.entities.Item;
 import com.readrops.db.pojo.ItemWithFeed;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -45,7 +44,9 @@ public class MainItemListAdapter extends PagedListAdapter<ItemWithFeed, MainItem
     private OnItemClickListener listener;
     private ViewPreloadSizeProvider preloadSizeProvider;
 
+    // ids of the selected items, or of the unselected ones when all the items matching the filters are selected
     private LinkedHashSet<Integer> selection;
+    private boolean allSelected;
 
     public MainItemListAdapter(GlideRequests glideRequests, ViewPreloadSizeProvider preloadSizeProvider) {
         super(DIFF_CALLBACK);
@@ -85,6 +86,9 @@ public class MainItemListAdapter extends PagedListAdapter<ItemWithFeed, MainItem
         }
     };
 
+    // payload used to only rebind the selection and read states
+    private static final Object SELECTION_PAYLOAD = new Object();
+
     private static final DrawableCrossFadeFactory FADE_FACTORY = new DrawableCrossFadeFactory.Builder().setCrossFadeEnabled(true).build();
 
     private static final RequestOptions REQUEST_OPTIONS = new RequestOptions().transform(new CenterCrop(), new RoundedCorners(16));
@@ -102,7 +106,14 @@ public class MainItemListAdapter extends PagedListAdapter<ItemWithFeed, MainItem
 
     @Override
     public void onBindViewHolder(@NonNull ItemViewHolder holder, int position, @NonNull List<Object> payloads) {
-        if (!payloads.isEmpty()) {
+        if (!payloads.isEmpty() && payloads.get(0) == SELECTION_PAYLOAD) {
+            ItemWithFeed itemWithFeed = getItem(position);
+            if (itemWithFeed == null)
+                return;
+
+            holder.setReadState(itemWithFeed.getItem().isRead());
+            holder.setSelected(isSelected(itemWithFeed));
+        } else if (!payloads.isEmpty()) {
             ItemWithFeed itemWithFeed = (ItemWithFeed) payloads.get(0);
 
             holder.bind(itemWithFeed);
@@ -114,7 +125,7 @@ public class MainItemListAdapter extends PagedListAdapter<ItemWithFeed, MainItem
                 holder.binding.itemFolderName.setText(R.string.no_folder);
 
             holder.setReadState(itemWithFeed.getItem().isRead());
-            holder.setSelected(selection.contains(position));
+            holder.setSelected(isSelected(itemWithFeed));
         } else
             onBindViewHolder(holder, position);
     }
@@ -144,7 +155,7 @@ public class MainItemListAdapter extends PagedListAdapter<ItemWithFeed, MainItem
             viewHolder.binding.itemFolderName.setText(R.string.no_folder);
 
         viewHolder.setReadState(itemWithFeed.getItem().isRead());
-        viewHolder.setSelected(selection.contains(viewHolder.getAdapterPosition()));
+        viewHolder.setSelected(isSelected(itemWithFeed));
     }
 
 
@@ -153,58 +164,67 @@ public class MainItemListAdapter extends PagedListAdapter<ItemWithFeed, MainItem
         return getItem(position).getItem().getId();
     }
 
+    private boolean isSelected(ItemWithFeed itemWithFeed) {
+        return selection.contains(itemWithFeed.getItem().getId()) != allSelected;
+    }
+
     public void toggleSelection(int position) {
-        if (selection.contains(position))
-            selection.remove(position);
+        ItemWithFeed itemWithFeed = getItem(position);
+        int id = itemWithFeed.getItem().getId();
+
+        if (selection.contains(id))
+            selection.remove(id);
         else
-            selection.add(position);
+            selection.add(id);
 
-        notifyItemChanged(position, getItem(position));
+        notifyItemChanged(position, SELECTION_PAYLOAD);
     }
 
     public void clearSelection() {
-        LinkedHashSet<Integer> localSelection = new LinkedHashSet<>(selection);
         selection.clear();
+        allSelected = false;
 
-        for (int position : localSelection) {
-            notifyItemChanged(position, getItem(position));
-        }
+        notifyItemRangeChanged(0, getItemCount(), SELECTION_PAYLOAD);
     }
 
+    /**
+     * @return ids of the selected items, or of the unselected ones if {@link #isAllSelected()}
+     */
     public Set<Integer> getSelection() {
         return selection;
     }
 
+    /**
+     * @return true if all the items matching the list filters are selected, loaded or not
+     */
+    public boolean isAllSelected() {
+        return allSelected;
+    }
+
+    /**
+     * Only loaded items are updated, the others will be loaded with the new state
+     */
     public void updateSelection(boolean read) {
-        for (int position : selection) {
-            ItemWithFeed itemWithFeed = getItem(position);
-            itemWithFeed.getItem().setRead(read);
-            notifyItemChanged(position, itemWithFeed);
+        if (getCurrentList() == null)
+            return;
+
+        for (ItemWithFeed itemWithFeed : getCurrentList().snapshot()) {
+            if (itemWithFeed != null && isSelected(itemWithFeed))
+                itemWithFeed.getItem().setRead(read);
         }
+
+        notifyItemRangeChanged(0, getItemCount(), SELECTION_PAYLOAD);
     }
 
     public void selectAll() {
         selection.clear();
-        for (int i = 0; i < getItemCount(); i++) {
-            selection.add(i);
-        }
+        allSelected = true;
 
-        notifyDataSetChanged();
+        notifyItemRangeChanged(0, getItemCount(), SELECTION_PAYLOAD);
     }
 
     public void unselectAll() {
-        selection.clear();
-        notifyDataSetChanged();
-    }
-
-    public List<ItemWithFeed> getSelectedItems() {
-        List<ItemWithFeed> items = new ArrayList<>();
-
-        for (int i : selection) {
-            items.add(getItem(i));
-        }
-
-        return items;
+        clearSelection();
     }
 
     public void clearData() {
@@ -291,9 +311,9 @@ public class MainItemListAdapter extends PagedListAdapter<ItemWithFeed, MainItem
             binding.itemDate.setText(DateUtils.formattedDateByLocal(item.getPubDate()));
             binding.itemFeedName.setText(itemWithFeed.getFeedName());
 
-            if (item.getCleanDescription() != null) {
+            if (item.getPreview() != null) {
                 binding.itemDescription.setVisibility(View.VISIBLE);
-                binding.itemDescription.setText(item.getCleanDescription());
+                binding.itemDescription.setText(item.getPreview());
             } else {
                 binding.itemDescription.setVisibility(View.GONE);
                 if (itemWithFeed.getItem().getHasImage())
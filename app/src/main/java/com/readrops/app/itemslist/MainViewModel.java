@@ -12,6 +12,7 @@ import com.readrops.app.repositories.ARepository;
 import com.readrops.app.repositories.FeedUpdate;
 import com.readrops.app.utils.SharedPreferencesManager;
 import com.readrops.db.Database;
+import com.readrops.db.InvalidationGate;
 import com.readrops.db.RoomFactoryWrapper;
 import com.readrops.db.entities.Feed;
 import com.readrops.db.entities.Folder;
@@ -28,6 +29,7 @@ import org.koin.java.KoinJavaComponent;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -43,6 +45,7 @@ public class MainViewModel extends ViewModel {
     private LiveData<PagedList<ItemWithFeed>> lastFetch;
     private ARepository repository;
     private final Database database;
+    private final ReadStateBuffer readStateBuffer = new ReadStateBuffer();
 
     private final QueryFilters queryFilters;
 
@@ -63,6 +66,7 @@ public class MainViewModel extends ViewModel {
     private void setRepository() {
         repository = KoinJavaComponent.get(ARepository.class, null,
                 () -> ParametersHolderKt.parametersOf(currentAccount));
+        readStateBuffer.setRepository(repository);
     }
 
     private void buildPagedList() {
@@ -73,7 +77,8 @@ public class MainViewModel extends ViewModel {
         DataSource.Factory<Integer, ItemWithFeed> items;
         items = database.itemDao().selectAll(ItemsQueryBuilder.buildItemsQuery(queryFilters, currentAccount.getConfig().getUseSeparateState()));
 
-        lastFetch = new LivePagedListBuilder<>(new RoomFactoryWrapper<>(items),
+        lastFetch = new LivePagedListBuilder<>(new RoomFactoryWrapper<>(items,
+                KoinJavaComponent.get(InvalidationGate.class)),
                 new PagedList.Config.Builder()
                         .setPageSize(100)
                         .setPrefetchDistance(150)
@@ -125,16 +130,17 @@ public class MainViewModel extends ViewModel {
     }
 
     public Completable sync(List<Feed> feeds, FeedUpdate update) {
-        itemsWithFeed.removeSource(lastFetch);
+        // buffered read state changes must be journaled before being pushed
+        Completable flush = readStateBuffer.flush().onErrorComplete();
 
         // get current viewed feed
         if (feeds == null && queryFilters.getFilterType() == FilterType.FEED_FILTER) {
-            return Single.<Feed>create(emitter -> emitter.onSuccess(database.feedDao()
+            return flush.andThen(Single.<Feed>create(emitter -> emitter.onSuccess(database.feedDao()
                     .getFeedById(queryFilters.getFilterFeedId())))
-                    .flatMapCompletable(feed -> repository.sync(Collections.singletonList(feed), update));
+                    .flatMapCompletable(feed -> repository.sync(Collections.singletonList(feed), update)));
         }
 
-        return repository.sync(feeds, update);
+        return flush.andThen(repository.sync(feeds, update));
     }
 
     public Single<Integer> getFeedCount() {
@@ -233,34 +239,82 @@ public class MainViewModel extends ViewModel {
     //region Item read state
 
     public Completable setItemReadState(ItemWithFeed itemWithFeed) {
-        return repository.setItemReadState(itemWithFeed.getItem());
+        return setItemReadState(itemWithFeed.getItem());
     }
 
     public Completable setItemReadState(Item item) {
+        readStateBuffer.remove(item.getId());
         return repository.setItemReadState(item);
     }
 
-    public Completable setItemsReadState(List<ItemWithFeed> items, boolean read) {
-        List<Completable> completableList = new ArrayList<>();
+    /**
+     * Buffer the read state change of an item marked read while scrolling,
+     * the item is expected to be already updated
+     */
+    public void bufferItemReadState(Item item) {
+        readStateBuffer.add(item);
+    }
+
+    public void flushItemsReadState() {
+        readStateBuffer.flush();
+    }
 
-        for (ItemWithFeed itemWithFeed : items) {
-            itemWithFeed.getItem().setRead(read);
-            completableList.add(setItemReadState(itemWithFeed));
+    public Completable setItemsReadState(Collection<Integer> ids, boolean read) {
+        for (int id : ids) {
+            readStateBuffer.remove(id);
         }
 
-        return Completable.concat(completableList);
+        return repository.setItemsReadState(new ArrayList<>(ids), read);
+    }
+
+    /**
+     * Set the read state of all the items matching the current filters, minus the excluded ones.
+     * Without exclusion, marking read uses the mark-all-read operation so remote accounts can push
+     * a single server-side request.
+     */
+    public Completable setAllItemsReadState(Collection<Integer> excludedIds, boolean read) {
+        if (read && excludedIds.isEmpty() && !currentAccount.isLocal() && queryFilters.getFilterType() != FilterType.READ_IT_LATER_FILTER
+                && queryFilters.getFilterType() != FilterType.STARS_FILTER)
+            return setAllItemsReadState(read);
+
+        return repository.setFilteredItemsReadState(copyQueryFilters(), excludedIds, read);
     }
 
     public Completable setAllItemsReadState(boolean read) {
         if (queryFilters.getFilterType() == FilterType.FEED_FILTER)
             return repository.setAllFeedItemsReadState(queryFilters.getFilterFeedId(), read);
+        else if (queryFilters.getFilterType() == FilterType.FOLDER_FILER)
+            return repository.setAllFolderItemsReadState(queryFilters.getFilterFolderId(), read);
         else
             return repository.setAllItemsReadState(read);
     }
 
+    public Completable setItemsReadItLater(Collection<Integer> ids, boolean allSelected, boolean readLater) {
+        if (allSelected)
+            return repository.setFilteredItemsReadItLater(copyQueryFilters(), ids, readLater);
+        else
+            return database.itemDao().setItemsReadItLater(new ArrayList<>(ids), readLater);
+    }
+
+    public Single<Integer> countAllItems(Collection<Integer> excludedIds) {
+        return repository.countFilteredItems(copyQueryFilters(), excludedIds);
+    }
+
+    // filters can change while the query runs in background
+    private QueryFilters copyQueryFilters() {
+        return new QueryFilters(queryFilters.getShowReadItems(), queryFilters.getFilterFeedId(), queryFilters.getFilterFolderId(),
+                queryFilters.getAccountId(), queryFilters.getFilterType(), queryFilters.getSortType());
+    }
+
     public Completable setItemReadItLater(boolean readLater, int itemId) {
         return database.itemDao().setReadItLater(readLater, itemId);
     }
 
     //endregion
+
+    @Override
+    protected void onCleared() {
+        readStateBuffer.flush();
+        super.onCleared();
+    }
 }
@@ -0,0 +1,112 @@
+package com.readrops.app.itemslist;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.readrops.app.repositories.ARepository;
+import com.readrops.db.entities.Item;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.reactivex.Completable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Write-behind buffer for read state changes made while scrolling.
+ * Changes are kept in memory and written in one batch with {@link ARepository#setItemsReadState(List, boolean)}
+ * when {@link #MAX_PENDING_CHANGES} changes are pending, {@link #MAX_DELAY} ms after the first pending change,
+ * or when {@link #flush()} is called.
+ * The displayed items are updated by the caller, only the database write is deferred.
+ * Must be used from the main thread.
+ */
+public class ReadStateBuffer {
+
+    private static final String TAG = ReadStateBuffer.class.getSimpleName();
+
+    public static final int MAX_PENDING_CHANGES = 50;
+    public static final long MAX_DELAY = 2000;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable flushRunnable = this::flush;
+
+    private Map<Integer, Boolean> pendingChanges = new LinkedHashMap<>();
+    private ARepository repository;
+
+    /**
+     * Pending changes are written with the previous repository before switching
+     */
+    public void setRepository(ARepository repository) {
+        if (this.repository != null) {
+            flush();
+        }
+
+        this.repository = repository;
+    }
+
+    public void add(Item item) {
+        pendingChanges.put(item.getId(), item.isRead());
+
+        if (pendingChanges.size() >= MAX_PENDING_CHANGES) {
+            flush();
+        } else if (pendingChanges.size() == 1) {
+            handler.postDelayed(flushRunnable, MAX_DELAY);
+        }
+    }
+
+    /**
+     * Drop the pending change of an item, when its state is written directly
+     */
+    public void remove(int itemId) {
+        pendingChanges.remove(itemId);
+
+        // the next change schedules its own flush
+        if (pendingChanges.isEmpty()) {
+            handler.removeCallbacks(flushRunnable);
+        }
+    }
+
+    /**
+     * Write pending changes.
+     * Writes are run one after the other on the same thread, so changes are applied in order.
+     * The write is started by this call and its errors are logged, callers can ignore the returned Completable
+     * or subscribe to it to wait for the write without writing again.
+     *
+     * @return a Completable completing when the changes are written
+     */
+    public Completable flush() {
+        handler.removeCallbacks(flushRunnable);
+
+        if (pendingChanges.isEmpty() || repository == null) {
+            return Completable.complete();
+        }
+
+        List<Integer> readIds = new ArrayList<>();
+        List<Integer> unreadIds = new ArrayList<>();
+        for (Map.Entry<Integer, Boolean> change : pendingChanges.entrySet()) {
+            if (change.getValue()) {
+                readIds.add(change.getKey());
+            } else {
+                unreadIds.add(change.getKey());
+            }
+        }
+
+        pendingChanges = new LinkedHashMap<>();
+
+        List<Completable> writes = new ArrayList<>();
+        if (!readIds.isEmpty()) writes.add(repository.setItemsReadState(readIds, true));
+        if (!unreadIds.isEmpty()) writes.add(repository.setItemsReadState(unreadIds, false));
+
+        Completable write = Completable.concat(writes)
+                .subscribeOn(Schedulers.single())
+                .cache();
+
+        write.subscribe(() -> {
+        }, throwable -> Log.e(TAG, "flush: " + throwable.getMessage(), throwable));
+
+        return write;
+    }
+}
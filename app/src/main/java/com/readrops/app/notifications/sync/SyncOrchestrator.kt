@@ -0,0 +1,86 @@
+package com.readrops.app.notifications.sync
+
+import android.util.Log
+import com.readrops.api.services.SyncResult
+import com.readrops.app.repositories.ARepository
+import com.readrops.app.repositories.FeedFetchCache
+import com.readrops.app.repositories.LocalFeedRepository
+import com.readrops.db.Database
+import com.readrops.db.entities.account.Account
+import io.reactivex.Completable
+import io.reactivex.Flowable
+import io.reactivex.Single
+import io.reactivex.schedulers.Schedulers
+import org.koin.core.component.KoinComponent
+import org.koin.core.component.get
+import org.koin.core.parameter.parametersOf
+
+/**
+ * Syncs several accounts concurrently.
+ * Each account gets its own repository, and so its own HTTP client and credentials,
+ * and a failing account doesn't stop the others.
+ * Local accounts share the fetch results of feeds they have in common.
+ */
+class SyncOrchestrator(private val maxConcurrentAccounts: Int = MAX_CONCURRENT_ACCOUNTS) : KoinComponent {
+
+    /**
+     * @param stopSignal completes when the syncs must be stopped, the accounts in progress are then disposed
+     * @param onAccountSynced called on a background thread each time an account sync ends, successfully or not
+     * @return the outcome of each account, in completion order
+     */
+    fun sync(accounts: List<Account>, stopSignal: Completable = Completable.never(),
+             onAccountSynced: (AccountSyncOutcome) -> Unit = {}): Single<List<AccountSyncOutcome>> {
+        return Single.fromCallable { localFetchCache(accounts) }
+                .subscribeOn(Schedulers.io())
+                .flatMap { fetchCache ->
+                    Flowable.fromIterable(accounts)
+                            .flatMapSingle({ syncAccount(it, fetchCache).doOnSuccess(onAccountSynced) }, false, maxConcurrentAccounts)
+                            .takeUntil(stopSignal.toFlowable<Unit>())
+                            .toList()
+                }
+    }
+
+    /**
+     * Cache of the cycle, knowing which feed urls the local accounts have in common
+     */
+    private fun localFetchCache(accounts: List<Account>): FeedFetchCache {
+        val feedDao = get<Database>().feedDao()
+
+        return FeedFetchCache().apply {
+            addSubscribers(accounts.filter { it.isLocal }
+                    .flatMap { account -> feedDao.getFeeds(account.id).mapNotNull { it.url } })
+        }
+    }
+
+    private fun syncAccount(account: Account, fetchCache: FeedFetchCache): Single<AccountSyncOutcome> = Single.defer {
+        val repository = get<ARepository>(parameters = { parametersOf(account) })
+        (repository as? LocalFeedRepository)?.setFetchCache(fetchCache)
+
+        repository.sync(null, null)
+                .toSingle { AccountSyncOutcome(account, repository.syncResult, syncRunId = repository.syncRunId) }
+    }.onErrorReturn { throwable ->
+        Log.e(TAG, "${account.accountName}: ${throwable.message}", throwable)
+        AccountSyncOutcome(account, null, throwable)
+    }.subscribeOn(Schedulers.io())
+
+    companion object {
+        private val TAG = SyncOrchestrator::class.java.simpleName
+
+        const val MAX_CONCURRENT_ACCOUNTS = 3
+    }
+}
+
+/**
+ * @param syncResult result of a successful sync, null if it failed
+ * @param error      null if the sync succeeded
+ * @param syncRunId  id of the journaled sync run, 0 if the sync failed
+ */
+data class AccountSyncOutcome(
+        val account: Account,
+        val syncResult: SyncResult?,
+        val error: Throwable? = null,
+        val syncRunId: Long = 0,
+) {
+
+    val isSuccessful get() = error == null
+}
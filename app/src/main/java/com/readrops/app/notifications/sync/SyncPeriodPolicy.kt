@@ -0,0 +1,74 @@
+package com.readrops.app.notifications.sync
+
+import android.content.SharedPreferences
+import java.util.concurrent.TimeUnit
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Adapts the base sync period of an account to how often the user opens the app
+ * and to how many new items the account recent syncs brought,
+ * from half the base period to four times the base period.
+ */
+class SyncPeriodPolicy(private val preferences: SharedPreferences) {
+
+    /**
+     * @param basePeriod auto synchro period in milliseconds
+     * @param newItems   new items counts of the account recent successful syncs
+     * @param now        current time in milliseconds
+     */
+    fun accountPeriod(basePeriod: Long, newItems: List<Int>, now: Long): Long {
+        var factor = 1.0
+
+        if (newItems.isNotEmpty()) {
+            val averageNewItems = newItems.average()
+
+            if (averageNewItems == 0.0) factor *= 2
+            else if (averageNewItems >= MANY_NEW_ITEMS) factor /= 2
+        }
+
+        val lastAppOpen = preferences.getLong(LAST_APP_OPEN_KEY, 0)
+        val appOpenInterval = preferences.getLong(APP_OPEN_INTERVAL_KEY, 0)
+
+        if (lastAppOpen != 0L) {
+            val sinceAppOpen = now - lastAppOpen
+
+            if (sinceAppOpen > TimeUnit.DAYS.toMillis(3)) factor *= 4
+            else if (sinceAppOpen > TimeUnit.DAYS.toMillis(1)) factor *= 2
+            else if (appOpenInterval in 1 until basePeriod) factor /= 2
+        }
+
+        val period = (basePeriod * factor).toLong()
+        return min(max(period, basePeriod / 2), basePeriod * 4)
+    }
+
+    /**
+     * Keep track of when the user opens the app, as a moving average of the interval between two openings
+     */
+    fun onAppOpened(now: Long = System.currentTimeMillis()) {
+        val lastAppOpen = preferences.getLong(LAST_APP_OPEN_KEY, 0)
+        val editor = preferences.edit().putLong(LAST_APP_OPEN_KEY, now)
+
+        if (lastAppOpen != 0L && now - lastAppOpen >= MIN_APP_OPEN_INTERVAL) {
+            val interval = now - lastAppOpen
+            val averageInterval = preferences.getLong(APP_OPEN_INTERVAL_KEY, 0)
+
+            editor.putLong(APP_OPEN_INTERVAL_KEY,
+                    if (averageInterval == 0L) interval else (averageInterval * 0.7 + interval * 0.3).toLong())
+        } else if (lastAppOpen != 0L) {
+            // same usage session
+            editor.putLong(LAST_APP_OPEN_KEY, lastAppOpen)
+        }
+
+        editor.apply()
+    }
+
+    companion object {
+        internal const val LAST_APP_OPEN_KEY = "last_app_open"
+        internal const val APP_OPEN_INTERVAL_KEY = "app_open_interval"
+
+        private const val MANY_NEW_ITEMS = 20
+
+        private val MIN_APP_OPEN_INTERVAL = TimeUnit.MINUTES.toMillis(5)
+    }
+}
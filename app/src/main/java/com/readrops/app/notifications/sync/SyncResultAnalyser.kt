@@ -1,122 +1,112 @@
 package com.readrops.app.notifications.sync
 
 import android.content.Context
+import android.graphics.Bitmap
+import android.util.Log
 import androidx.core.content.ContextCompat
 import com.bumptech.glide.load.engine.DiskCacheStrategy
-import com.readrops.app.R
-import com.readrops.db.Database
-import com.readrops.db.entities.Feed
-import com.readrops.db.entities.Item
-import com.readrops.db.entities.account.Account
+import com.bumptech.glide.request.FutureTarget
 import com.readrops.api.services.SyncResult
+import com.readrops.app.R
 import com.readrops.app.utils.GlideRequests
 import com.readrops.app.utils.Utils
+import com.readrops.db.Database
+import com.readrops.db.entities.account.Account
+import com.readrops.db.pojo.FeedNewItemsCount
 import org.koin.core.component.KoinComponent
 import org.koin.core.component.get
+import java.util.concurrent.TimeUnit
 
 /**
- * Simple class to get synchro notification content (title, content and largeIcon) according to some rules
+ * Simple class to get synchro notification content (title, content and largeIcon) according to some rules.
+ * New items are counted by feed with a single query over their ids, the analysis only depends on the number of feeds.
  */
 class SyncResultAnalyser(val context: Context, private val syncResults: Map<Account, SyncResult>, val database: Database) : KoinComponent {
 
     private val notifContent = SyncResultNotifContent()
 
+    // feed icon, loaded while the notification content is built
+    private var iconTarget: FutureTarget<Bitmap>? = null
+
     fun getSyncNotifContent(): SyncResultNotifContent {
-        if (newItemsInMultipleAccounts()) { // new items from several accounts
-            var itemCount = 0
-            val feeds = database.feedDao().selectFromIdList(getFeedsIdsForNewItems(syncResults))
+        val itemIds = syncResults.values.flatMap { it.newItems.itemIds }
+        if (itemIds.isEmpty()) return notifContent
 
-            syncResults.values.forEach { syncResult ->
-                itemCount += syncResult.items.filter { isFeedNotificationEnabledForItem(feeds, it) }.size
-            }
+        val feedCounts = database.itemDao().selectNewItemsCountsByFeed(itemIds)
+        val countsByAccount = feedCounts.groupBy { it.accountId }
+
+        val notifiedAccounts = countsByAccount.filterValues { it.first().isAccountNotificationsEnabled }
+
+        if (notifiedAccounts.size > 1) { // new items from several accounts
+            val itemCount = notifiedAccounts.values.sumOf { counts -> notifiedItemCount(counts) }
 
             notifContent.title = context.getString(R.string.new_items, itemCount.toString())
         } else { // new items from only one account
-            val syncResultMap = syncResults.filterValues { it.items.isNotEmpty() }
-
-            if (syncResultMap.values.isNotEmpty()) {
-                val syncResult = syncResultMap.values.first()
-                val account = syncResultMap.keys.first()
-                val feedsIdsForNewItems = getFeedsIdsForNewItems(syncResult)
-
-                notifContent.accountId = account.id
-
-                if (account.isNotificationsEnabled) {
-                    val feeds = database.feedDao().selectFromIdList(feedsIdsForNewItems)
-
-                    val items = syncResult.items.filter { isFeedNotificationEnabledForItem(feeds, it) }
-                    val itemCount = items.size
-
-                    // new items from several feeds from one account
-                    if (feedsIdsForNewItems.size > 1 && itemCount > 1) {
-                        notifContent.title = account.accountName
-                        notifContent.content = context.getString(R.string.new_items, itemCount.toString())
-                        notifContent.largeIcon = Utils.getBitmapFromDrawable(ContextCompat.getDrawable(context, account.accountType!!.iconRes))
-                    } else if (feedsIdsForNewItems.size == 1) // new items from only one feed from one account
-                        oneFeedCase(feedsIdsForNewItems.first(), syncResult.items)
-                    else if (itemCount == 1)
-                        oneFeedCase(items.first().feedId.toLong(), items)
-                }
+            val account = syncResults.keys.firstOrNull { it.id in notifiedAccounts }
+                    ?: syncResults.keys.firstOrNull { it.id in countsByAccount }
+                    ?: return notifContent
+            val counts = countsByAccount.getValue(account.id)
+
+            notifContent.accountId = account.id
+
+            if (account.isNotificationsEnabled) {
+                val itemCount = notifiedItemCount(counts)
+
+                // new items from several feeds from one account
+                if (counts.size > 1 && itemCount > 1) {
+                    notifContent.title = account.accountName
+                    notifContent.content = context.getString(R.string.new_items, itemCount.toString())
+                    notifContent.largeIcon = Utils.getBitmapFromDrawable(ContextCompat.getDrawable(context, account.accountType!!.iconRes))
+                } else if (counts.size == 1) // new items from only one feed from one account
+                    oneFeedCase(counts.first(), syncResults.getValue(account))
+                else if (itemCount == 1)
+                    oneFeedCase(counts.first { it.isFeedNotificationEnabled }, syncResults.getValue(account))
             }
         }
 
+        iconTarget?.let { notifContent.largeIcon = awaitIcon(it) }
         return notifContent
     }
 
-    private fun oneFeedCase(feedId: Long, items: List<Item>) {
-        val feed = database.feedDao().getFeedById(feedId.toInt())
-
-        if (feed.isNotificationEnabled) {
-            notifContent.title = feed?.name
+    private fun oneFeedCase(feedCount: FeedNewItemsCount, syncResult: SyncResult) {
+        if (feedCount.isFeedNotificationEnabled) {
+            notifContent.title = feedCount.feedName
+            notifContent.color = if (feedCount.backgroundColor != 0) feedCount.backgroundColor else feedCount.textColor
 
-            feed?.iconUrl?.let {
-                val target = get<GlideRequests>()
+            feedCount.iconUrl?.let {
+                iconTarget = get<GlideRequests>()
                         .asBitmap()
                         .load(it)
                         .diskCacheStrategy(DiskCacheStrategy.ALL)
                         .submit()
-
-                notifContent.largeIcon = target.get()
             }
 
-            if (items.size == 1) {
-                val item = database.itemDao().selectByRemoteId(items.first().remoteId!!,
-                        items.first().feedId)
+            val item = if (feedCount.itemCount == 1) syncResult.newItems.singleItem(feedCount.feedId) else null
+
+            if (item != null) {
                 notifContent.content = item.title
                 notifContent.item = item
-            } else notifContent.content = context.getString(R.string.new_items, items.size.toString())
+            } else notifContent.content = context.getString(R.string.new_items, feedCount.itemCount.toString())
         }
     }
 
-    private fun newItemsInMultipleAccounts(): Boolean {
-        val itemsNotEmptyByAccount = mutableListOf<Boolean>()
-
-        for ((account, syncResult) in syncResults) {
-            if (account.isNotificationsEnabled) itemsNotEmptyByAccount += syncResult.items.isNotEmpty()
-        }
-
-        // return true it there is at least two true booleans in the list
-        return itemsNotEmptyByAccount.groupingBy { it }.eachCount()[true] ?: 0 > 1
+    /**
+     * The notification is displayed without the icon if it takes too long to load
+     */
+    private fun awaitIcon(target: FutureTarget<Bitmap>): Bitmap? = try {
+        target.get(ICON_TIMEOUT, TimeUnit.MILLISECONDS)
+    } catch (e: Exception) {
+        Log.d(TAG, "awaitIcon: ${e.message}")
+        target.cancel(true)
+        null
     }
 
-    private fun getFeedsIdsForNewItems(syncResult: SyncResult): List<Long> {
-        val feedsIds = mutableListOf<Long>()
+    private fun notifiedItemCount(counts: List<FeedNewItemsCount>): Int =
+            counts.filter { it.isFeedNotificationEnabled }.sumOf { it.itemCount }
 
-        syncResult.items.forEach {
-            if (it.feedId.toLong() !in feedsIds)
-                feedsIds += it.feedId.toLong()
-        }
+    companion object {
+        private val TAG = SyncResultAnalyser::class.java.simpleName
 
-        return feedsIds
+        private const val ICON_TIMEOUT = 3000L
     }
-
-    private fun getFeedsIdsForNewItems(syncResults: Map<Account, SyncResult>): List<Long> {
-        val feedsIds = mutableListOf<Long>()
-
-        syncResults.values.forEach { feedsIds += getFeedsIdsForNewItems(it) }
-        return feedsIds
-    }
-
-    private fun isFeedNotificationEnabledForItem(feeds: List<Feed>, item: Item): Boolean =
-            feeds.find { it.id == item.feedId }?.isNotificationEnabled!!
-}
\ No newline at end of file
+}
@@ -23,7 +23,7 @@ class SyncResultDebugData {
             // database.feedDao().updateNotificationState(item.feedId, false).subscribe()
 
             return mutableMapOf<Account, SyncResult>().apply {
-                put(account1, SyncResult().apply { items = mutableListOf(item) })
+                put(account1, SyncResult().apply { newItems.addAll(listOf(item)) })
             }
         }
 
@@ -42,7 +42,7 @@ class SyncResultDebugData {
             val item2 = database.itemDao().select(5056)
 
             return mutableMapOf<Account, SyncResult>().apply {
-                put(account1, SyncResult().apply { items = listOf(item, item2) })
+                put(account1, SyncResult().apply { newItems.addAll(listOf(item, item2)) })
             }
         }
 
@@ -68,7 +68,7 @@ class SyncResultDebugData {
             }
 
             return mutableMapOf<Account, SyncResult>().apply {
-                put(account1, SyncResult().apply { items = mutableListOf(item1, item2) })
+                put(account1, SyncResult().apply { newItems.addAll(listOf(item1, item2)) })
             }
         }
 
@@ -92,8 +92,8 @@ class SyncResultDebugData {
             }
 
             return mutableMapOf<Account, SyncResult>().apply {
-                put(account1, SyncResult().apply { items = mutableListOf(item) })
-                put(account2, SyncResult().apply { items = mutableListOf(item) })
+                put(account1, SyncResult().apply { newItems.addAll(listOf(item)) })
+                put(account2, SyncResult().apply { newItems.addAll(listOf(item)) })
             }
         }
     }
@@ -1,12 +1,13 @@
 package com.readrops.app.notifications.sync
 
 import android.graphics.Bitmap
-import com.readrops.db.entities.Item
+import com.readrops.api.services.NewItemPreview
 
 class SyncResultNotifContent {
     var title: String? = null
     var content: String? = null
     var largeIcon: Bitmap? = null
-    var item: Item? = null
+    var item: NewItemPreview? = null
     var accountId: Int? = null
+    var color: Int? = null
 }
\ No newline at end of file
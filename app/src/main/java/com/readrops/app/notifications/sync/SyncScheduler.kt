@@ -0,0 +1,140 @@
+package com.readrops.app.notifications.sync
+
+import android.content.Context
+import android.content.SharedPreferences
+import android.os.Build
+import androidx.work.Constraints
+import androidx.work.ExistingPeriodicWorkPolicy
+import androidx.work.ExistingWorkPolicy
+import androidx.work.NetworkType
+import androidx.work.OneTimeWorkRequestBuilder
+import androidx.work.PeriodicWorkRequest
+import androidx.work.PeriodicWorkRequestBuilder
+import androidx.work.WorkManager
+import androidx.work.workDataOf
+import com.readrops.app.utils.SharedPreferencesManager
+import com.readrops.db.Database
+import com.readrops.db.entities.account.Account
+import java.util.concurrent.TimeUnit
+import kotlin.math.max
+
+/**
+ * Schedules background syncs from the auto synchro preference.
+ *
+ * The preference gives the base period of each account, adapted by [SyncPeriodPolicy] to how often the user opens the app
+ * and to how many new items the account recent syncs brought: from half the base period for a busy account
+ * read several times per period, to four times the base period for a quiet one or an unused app.
+ * The periodic work runs every half base period and only syncs the accounts which are due.
+ *
+ * Initial syncs download whole accounts, they are deferred to a separate work
+ * running on an unmetered network while the device charges and is idle.
+ */
+class SyncScheduler(private val context: Context, private val database: Database,
+                    private val preferences: SharedPreferences) {
+
+    private val periodPolicy = SyncPeriodPolicy(preferences)
+
+    /**
+     * Schedule the periodic work, or cancel it if the auto synchro is disabled
+     *
+     * @param autoSynchroValue auto synchro preference value
+     * @param replace          replace the scheduled work even if its period didn't change,
+     *                         must not be used from the sync work itself as it would stop it
+     */
+    fun schedule(autoSynchroValue: String = SharedPreferencesManager.readString(SharedPreferencesManager.SharedPrefKey.AUTO_SYNCHRO),
+                 replace: Boolean = false) {
+        val workManager = WorkManager.getInstance(context)
+        val basePeriod = basePeriod(autoSynchroValue)
+
+        if (basePeriod == null) {
+            workManager.cancelAllWorkByTag(SyncWorker.TAG)
+            preferences.edit().remove(WORK_PERIOD_KEY).apply()
+            return
+        }
+
+        val workPeriod = max(basePeriod / 2, PeriodicWorkRequest.MIN_PERIODIC_INTERVAL_MILLIS)
+        val policy = if (replace || preferences.getLong(WORK_PERIOD_KEY, 0) != workPeriod)
+            ExistingPeriodicWorkPolicy.REPLACE else ExistingPeriodicWorkPolicy.KEEP
+
+        val constraints = Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .build()
+
+        val request = PeriodicWorkRequestBuilder<SyncWorker>(workPeriod, TimeUnit.MILLISECONDS)
+                .addTag(SyncWorker.TAG)
+                .setConstraints(constraints)
+                .setInitialDelay(workPeriod, TimeUnit.MILLISECONDS)
+                .build()
+
+        workManager.enqueueUniquePeriodicWork(SyncWorker.TAG, policy, request)
+        preferences.edit().putLong(WORK_PERIOD_KEY, workPeriod).apply()
+    }
+
+    /**
+     * Sync the accounts needing an initial sync once the device is on an unmetered network, charging and idle
+     */
+    fun scheduleInitialSyncs() {
+        val constraints = Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .setRequiresCharging(true)
+                .apply { if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) setRequiresDeviceIdle(true) }
+                .build()
+
+        val request = OneTimeWorkRequestBuilder<SyncWorker>()
+                .addTag(SyncWorker.TAG)
+                .setConstraints(constraints)
+                .setInputData(workDataOf(SyncWorker.INITIAL_SYNCS to true))
+                .build()
+
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(INITIAL_SYNCS_WORK, ExistingWorkPolicy.KEEP, request)
+    }
+
+    /**
+     * Initial syncs are the heaviest ones, local accounts don't have any
+     */
+    fun needsInitialSync(account: Account): Boolean = !account.isLocal && account.lastModified == 0L
+
+    /**
+     * @return the accounts whose adapted period elapsed since their last successful sync
+     */
+    fun selectDueAccounts(accounts: List<Account>): List<Account> {
+        val basePeriod = basePeriod(SharedPreferencesManager.readString(SharedPreferencesManager.SharedPrefKey.AUTO_SYNCHRO))
+                ?: return accounts
+        val now = System.currentTimeMillis()
+        // the work can run a bit early
+        val tolerance = max(basePeriod / 2, PeriodicWorkRequest.MIN_PERIODIC_INTERVAL_MILLIS) / 2
+
+        return accounts.filter { account ->
+            val runs = database.syncRunDao().selectAccountRuns(account.id, RECENT_RUNS)
+            val lastSync = runs.firstOrNull { it.isSuccessful }?.startTime ?: return@filter true
+
+            now - lastSync >= periodPolicy.accountPeriod(basePeriod, runs.filter { it.isSuccessful }.map { it.itemsInserted }, now) - tolerance
+        }
+    }
+
+    /**
+     * Keep track of when the user opens the app, to adapt the accounts sync periods
+     */
+    fun onAppOpened() = periodPolicy.onAppOpened()
+
+    companion object {
+        const val INITIAL_SYNCS_WORK = "InitialSyncs"
+
+        private const val WORK_PERIOD_KEY = "sync_work_period"
+
+        private const val RECENT_RUNS = 5
+
+        /**
+         * @param autoSynchroValue auto synchro preference value
+         * @return the base sync period in milliseconds, null if the auto synchro is disabled
+         */
+        @JvmStatic
+        fun basePeriod(autoSynchroValue: String?): Long? = when (autoSynchroValue) {
+            "0.30" -> TimeUnit.MINUTES.toMillis(30)
+            "1", "2", "3", "6", "12", "24" -> TimeUnit.HOURS.toMillis(autoSynchroValue.toLong())
+            else -> null
+        }
+    }
+}
@@ -4,30 +4,29 @@ import android.app.PendingIntent
 import android.content.BroadcastReceiver
 import android.content.Context
 import android.content.Intent
+import android.os.SystemClock
 import android.util.Log
 import androidx.core.app.NotificationCompat
 import androidx.core.app.NotificationManagerCompat
 import androidx.work.Worker
 import androidx.work.WorkerParameters
+import com.readrops.api.services.NewItemPreview
 import com.readrops.api.services.SyncResult
 import com.readrops.app.R
 import com.readrops.app.ReadropsApp
 import com.readrops.app.itemslist.MainActivity
-import com.readrops.app.repositories.ARepository
 import com.readrops.app.utils.ReadropsKeys
 import com.readrops.app.utils.SharedPreferencesManager
 import com.readrops.db.Database
-import com.readrops.db.entities.Item
 import com.readrops.db.entities.account.Account
-import io.reactivex.disposables.Disposable
 import io.reactivex.schedulers.Schedulers
+import io.reactivex.subjects.CompletableSubject
 import org.koin.core.component.KoinComponent
 import org.koin.core.component.get
-import org.koin.core.parameter.parametersOf
 
 class SyncWorker(context: Context, parameters: WorkerParameters) : Worker(context, parameters), KoinComponent {
 
-    private var disposable: Disposable? = null
+    private val stopSignal = CompletableSubject.create()
 
     private val notificationManager = NotificationManagerCompat.from(applicationContext)
     private val database = get<Database>()
@@ -35,52 +34,89 @@ class SyncWorker(context: Context, parameters: WorkerParameters) : Worker(contex
     override fun doWork(): Result {
         var result = Result.success()
         val syncResults = mutableMapOf<Account, SyncResult>()
+        val syncRunIds = mutableListOf<Long>()
 
         try {
-            val accounts = database.accountDao().selectAll()
+            val accounts = selectAccounts()
+            if (accounts.isEmpty()) return result
 
             val notificationBuilder = NotificationCompat.Builder(applicationContext, ReadropsApp.SYNC_CHANNEL_ID)
                     .setContentTitle(applicationContext.getString(R.string.auto_synchro))
+                    .setContentText(accounts.joinToString { it.accountName.orEmpty() })
                     .setProgress(0, 0, true)
                     .setSmallIcon(R.drawable.ic_notif)
                     .setOnlyAlertOnce(true)
 
-            accounts.forEach {
-                notificationBuilder.setContentText(it.accountName)
-                notificationManager.notify(SYNC_NOTIFICATION_ID, notificationBuilder.build())
+            notificationManager.notify(SYNC_NOTIFICATION_ID, notificationBuilder.build())
 
+            accounts.forEach {
                 it.login = SharedPreferencesManager.readString(it.loginKey)
                 it.password = SharedPreferencesManager.readString(it.passwordKey)
+            }
 
-                val repository = get<ARepository>(parameters = { parametersOf(it) })
-
-                disposable = repository.sync(null, null)
-                        .doOnError { throwable ->
-                            result = Result.failure()
-                            Log.e(TAG, throwable.message!!, throwable)
-                        }
-                        .subscribe()
+            val outcomes = SyncOrchestrator().sync(accounts, stopSignal)
+                    .blockingGet()
 
-                if (repository.syncResult != null) syncResults[it] = repository.syncResult
+            outcomes.forEach { outcome ->
+                if (outcome.isSuccessful) {
+                    outcome.syncResult?.let { syncResults[outcome.account] = it }
+                    if (outcome.syncRunId != 0L) syncRunIds += outcome.syncRunId
+                } else {
+                    result = Result.failure()
+                }
             }
         } catch (e: Exception) {
-            Log.e(TAG, e.message!!)
+            Log.e(TAG, e.message, e)
             result = Result.failure()
         } finally {
             notificationManager.cancel(SYNC_NOTIFICATION_ID)
-            displaySyncResultNotif(syncResults)
+            if (!isStopped) {
+                val start = SystemClock.elapsedRealtime()
+                displaySyncResultNotif(syncResults)
+                journalNotifyDuration(syncRunIds, SystemClock.elapsedRealtime() - start)
+            }
 
             return result
         }
     }
 
+    /**
+     * The initial syncs work only syncs the accounts needing one,
+     * the periodic work defers them and only syncs the due accounts
+     */
+    private fun selectAccounts(): List<Account> {
+        val scheduler = get<SyncScheduler>()
+        val (initialSyncAccounts, accounts) = database.accountDao().selectAll()
+                .partition { scheduler.needsInitialSync(it) }
+
+        return if (inputData.getBoolean(INITIAL_SYNCS, false)) {
+            initialSyncAccounts
+        } else {
+            if (initialSyncAccounts.isNotEmpty()) scheduler.scheduleInitialSyncs()
+            scheduler.selectDueAccounts(accounts)
+        }
+    }
+
     override fun onStopped() {
         super.onStopped()
 
-        disposable?.dispose()
+        stopSignal.onComplete()
         notificationManager.cancel(SYNC_NOTIFICATION_ID)
     }
 
+    /**
+     * The notification is built once for all accounts, its duration is set on each sync run
+     */
+    private fun journalNotifyDuration(syncRunIds: List<Long>, duration: Long) {
+        if (syncRunIds.isEmpty()) return
+
+        try {
+            database.syncRunDao().updateNotifyDuration(syncRunIds, duration)
+        } catch (e: Exception) {
+            Log.e(TAG, "journalNotifyDuration: ${e.message}")
+        }
+    }
+
     private fun displaySyncResultNotif(syncResults: Map<Account, SyncResult>) {
         val notifContent = SyncResultAnalyser(applicationContext, syncResults, database)
                 .getSyncNotifContent()
@@ -105,11 +141,12 @@ class SyncWorker(context: Context, parameters: WorkerParameters) : Worker(contex
                     .setAutoCancel(true)
 
             notifContent.item?.let {
-                val feed = database.feedDao().getFeedById(it.feedId)
-
                 notificationBuilder.addAction(buildReadlaterAction(it))
                         .addAction(buildMarkAsRead(it))
-                        .setColor(if (feed.backgroundColor != 0) feed.backgroundColor else feed.textColor)
+            }
+
+            notifContent.color?.let {
+                notificationBuilder.setColor(it)
             }
 
             notifContent.largeIcon?.let {
@@ -121,7 +158,7 @@ class SyncWorker(context: Context, parameters: WorkerParameters) : Worker(contex
 
     }
 
-    private fun buildReadlaterAction(item: Item): NotificationCompat.Action {
+    private fun buildReadlaterAction(item: NewItemPreview): NotificationCompat.Action {
         val broadcastIntent = Intent(applicationContext, ReadLaterReceiver::class.java).apply {
             putExtra(ReadropsKeys.ITEM_ID, item.id)
         }
@@ -132,7 +169,7 @@ class SyncWorker(context: Context, parameters: WorkerParameters) : Worker(contex
                 .build()
     }
 
-    private fun buildMarkAsRead(item: Item): NotificationCompat.Action {
+    private fun buildMarkAsRead(item: NewItemPreview): NotificationCompat.Action {
         val broadcastIntent = Intent(applicationContext, MarkReadReceiver::class.java).apply {
             putExtra(ReadropsKeys.ITEM_ID, item.id)
         }
@@ -185,5 +222,8 @@ class SyncWorker(context: Context, parameters: WorkerParameters) : Worker(contex
         val TAG = SyncWorker::class.java.simpleName
         private const val SYNC_NOTIFICATION_ID = 2
         const val SYNC_RESULT_NOTIFICATION_ID = 3
+
+        // input data key of the initial syncs work
+        const val INITIAL_SYNCS = "initialSyncs"
     }
 }
\ No newline at end of file
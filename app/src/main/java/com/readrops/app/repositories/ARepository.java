@@ -4,27 +4,37 @@ import static com.readrops.app.utils.ReadropsKeys.FEEDS;
 
 import android.content.Context;
 import android.content.Intent;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.readrops.api.services.Credentials;
 import com.readrops.api.services.SyncResult;
-import com.readrops.api.utils.AuthInterceptor;
+import com.readrops.api.utils.ByteCounter;
+import com.readrops.api.utils.NetworkMetrics;
 import com.readrops.app.addfeed.FeedInsertionResult;
 import com.readrops.app.addfeed.ParsingResult;
 import com.readrops.app.utils.feedscolors.FeedColorsKt;
 import com.readrops.app.utils.feedscolors.FeedsColorsIntentService;
 import com.readrops.db.Database;
+import com.readrops.db.IngestionStats;
+import com.readrops.db.IngestionWriter;
+import com.readrops.db.SelectedItemsUpdater;
 import com.readrops.db.entities.Feed;
 import com.readrops.db.entities.Folder;
 import com.readrops.db.entities.Item;
 import com.readrops.db.entities.ItemState;
+import com.readrops.db.entities.MarkAllReadOperation;
+import com.readrops.db.entities.SyncRun;
 import com.readrops.db.entities.account.Account;
+import com.readrops.db.queries.ItemsQueryBuilder;
+import com.readrops.db.queries.QueryFilters;
 
 import org.koin.java.KoinJavaComponent;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -32,26 +42,105 @@ import java.util.TreeMap;
 
 import io.reactivex.Completable;
 import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
 
 public abstract class ARepository {
 
+    // items chunks parsed ahead of the database writer during a sync, bounds the memory used by a sync
+    protected static final int MAX_QUEUED_CHUNKS = 2;
+
     protected Context context;
     protected Database database;
     protected Account account;
 
+    // latest sync runs journaled per account
+    private static final int MAX_SYNC_RUNS = 100;
+
     protected SyncResult syncResult;
+    protected IngestionStats ingestionStats;
+
+    // measures of the sync in progress
+    protected SyncTelemetry telemetry;
+    private long syncRunId;
 
     protected ARepository(Database database, @NonNull Context context, @Nullable Account account) {
         this.context = context;
         this.database = database;
         this.account = account;
+    }
 
-        setCredentials(account);
+    /**
+     * Sync writes go through a shared writer which groups them in a few transactions
+     */
+    protected IngestionWriter.Session openIngestionSession() {
+        return KoinJavaComponent.<IngestionWriter>get(IngestionWriter.class).openSession();
     }
 
-    protected void setCredentials(@Nullable Account account) {
-        KoinJavaComponent.<AuthInterceptor>get(AuthInterceptor.class)
-                .setCredentials(account != null && !account.isLocal() ? Credentials.toCredentials(account) : null);
+    protected void closeIngestionSession(IngestionWriter.Session session) {
+        ingestionStats = session.close();
+        Log.d(getClass().getSimpleName(), "sync writes: " + ingestionStats);
+
+        if (telemetry != null) {
+            telemetry.addPhaseDuration(SyncPhase.INSERT, ingestionStats.getTotalWriteTime());
+        }
+    }
+
+    /**
+     * Journal the sync in the SyncRun table once it completes, fails or is stopped.
+     * Repositories fill {@link #telemetry} while the sync runs.
+     * Bytes received by the account client are counted here from its network metrics counter,
+     * local syncs count their feeds bytes.
+     */
+    protected Completable journalSync(Completable sync) {
+        return Completable.defer(() -> {
+            SyncTelemetry syncTelemetry = new SyncTelemetry(account.getId());
+            telemetry = syncTelemetry;
+
+            NetworkMetrics networkMetrics = KoinJavaComponent.get(NetworkMetrics.class);
+            // an account syncs once at a time, other accounts on the same host have their own counter
+            ByteCounter byteCounter = account.isLocal() ? null : networkMetrics.accountCounter(Credentials.toCredentials(account));
+            long startBytes = byteCounter != null ? byteCounter.getBytesReceived() : 0;
+
+            Runnable countBytes = () -> {
+                if (byteCounter != null) {
+                    syncTelemetry.getBytesReceived().addAndGet(byteCounter.getBytesReceived() - startBytes);
+                }
+
+                networkMetrics.persistIfDue();
+            };
+
+            return sync.doOnEvent(throwable -> {
+                countBytes.run();
+                journalSyncRun(syncTelemetry, throwable != null ? String.valueOf(throwable.getMessage()) : null);
+            }).doOnDispose(() -> Schedulers.io().scheduleDirect(() -> {
+                // disposal runs on the disposing thread, the main one when a sync is stopped from the UI
+                countBytes.run();
+                journalSyncRun(syncTelemetry, "stopped");
+            }));
+        });
+    }
+
+    /**
+     * @return the stage duration reported by the data source, 0 if the stage didn't complete
+     */
+    protected static long stageDuration(SyncResult result, String stage) {
+        Long duration = result.getStageDurations().get(stage);
+        return duration != null ? duration : 0;
+    }
+
+    private void journalSyncRun(SyncTelemetry syncTelemetry, @Nullable String error) {
+        try {
+            SyncRun syncRun = syncTelemetry.toSyncRun(System.currentTimeMillis(), error);
+
+            syncRunId = database.runInTransaction(() -> {
+                long id = database.syncRunDao().compatInsert(syncRun);
+                database.syncRunDao().deleteOldRuns(account.getId(), MAX_SYNC_RUNS);
+
+                return id;
+            });
+        } catch (Exception e) {
+            Log.e(getClass().getSimpleName(), "journalSyncRun: " + e.getMessage());
+        }
     }
 
     public abstract Completable login(Account account, boolean insert);
@@ -93,6 +182,7 @@ public abstract class ARepository {
     public Completable updateFeed(Feed feed) {
         return Completable.create(emitter -> {
             database.feedDao().updateFeedFields(feed.getId(), feed.getName(), feed.getUrl(), feed.getFolderId());
+            database.feedDao().updateRetention(feed.getId(), feed.getRetentionMaxAge(), feed.getRetentionMaxCount());
             emitter.onComplete();
         });
     }
@@ -127,14 +217,114 @@ public abstract class ARepository {
 
     }
 
+    /**
+     * Set the read state of several items with set-based queries, in one transaction.
+     * For remote accounts, the state change is journaled only for items whose state actually changes.
+     *
+     * @param itemIds local ids of the items
+     * @param read    new read state
+     */
+    public Completable setItemsReadState(List<Integer> itemIds, boolean read) {
+        return Completable.create(emitter -> {
+            database.runInTransaction(() -> {
+                if (account.getConfig().getUseSeparateState()) {
+                    database.itemStateChangesDao().upsertSeparateReadStateChanges(itemIds, read, account.getId());
+                    database.itemStateDao().upsertItemsReadState(itemIds, read, account.getId());
+                } else if (account.isLocal()) {
+                    database.itemDao().setItemsReadState(itemIds, read);
+                } else { // nextcloud case
+                    database.itemStateChangesDao().upsertReadStateChanges(itemIds, read, account.getId());
+                    database.itemDao().setItemsReadState(itemIds, read);
+                }
+
+                if (!account.isLocal()) {
+                    database.itemStateChangesDao().deleteEmptyStateChanges(account.getId());
+                }
+            });
+
+            emitter.onComplete();
+        });
+    }
+
+    /**
+     * Set the read state of all the items matching the filters, with the same set-based queries
+     * as {@link #setItemsReadState(List, boolean)} but without loading the items.
+     *
+     * @param queryFilters filters of the items list
+     * @param excludedIds  local ids of the items unselected by the user
+     * @param read         new read state
+     */
+    public Completable setFilteredItemsReadState(QueryFilters queryFilters, Collection<Integer> excludedIds, boolean read) {
+        return Completable.create(emitter -> {
+            SelectedItemsUpdater updater = KoinJavaComponent.get(SelectedItemsUpdater.class);
+            boolean separateState = account.getConfig().getUseSeparateState();
+
+            database.runInTransaction(() -> {
+                updater.selectItems(queryFilters, separateState, excludedIds);
+
+                if (separateState) {
+                    updater.toggleSeparateReadStateChanges(read, account.getId());
+                    updater.insertSeparateReadStateChanges(read, account.getId());
+
+                    updater.updateItemStatesReadState(read, account.getId());
+                    updater.insertItemStatesReadState(read, account.getId());
+                } else if (account.isLocal()) {
+                    updater.setReadState(read);
+                } else { // nextcloud case
+                    updater.toggleReadStateChanges(read, account.getId());
+                    updater.insertReadStateChanges(read, account.getId());
+
+                    updater.setReadState(read);
+                }
+
+                if (!account.isLocal()) {
+                    database.itemStateChangesDao().deleteEmptyStateChanges(account.getId());
+                }
+            });
+
+            emitter.onComplete();
+        });
+    }
+
+    public Completable setFilteredItemsReadItLater(QueryFilters queryFilters, Collection<Integer> excludedIds, boolean readLater) {
+        return Completable.create(emitter -> {
+            SelectedItemsUpdater updater = KoinJavaComponent.get(SelectedItemsUpdater.class);
+
+            database.runInTransaction(() -> {
+                updater.selectItems(queryFilters, account.getConfig().getUseSeparateState(), excludedIds);
+                updater.setReadItLater(readLater);
+            });
+
+            emitter.onComplete();
+        });
+    }
+
+    public Single<Integer> countFilteredItems(QueryFilters queryFilters, Collection<Integer> excludedIds) {
+        return Single.fromCallable(() -> database.itemDao().countItems(ItemsQueryBuilder
+                .buildItemsCountQuery(queryFilters, account.getConfig().getUseSeparateState(), excludedIds)));
+    }
+
+    /**
+     * Set the read state of all the account items with a single statement.
+     * Remote repositories supporting it override the mark-all methods to also record
+     * a {@link MarkAllReadOperation} pushed on next sync.
+     */
     public Completable setAllItemsReadState(boolean read) {
-        if (account.isLocal()) { // TODO see if it's possible to implement for others accounts
+        if (account.isLocal()) {
             return database.itemDao().setAllItemsReadState(read ? 1 : 0, account.getId());
         } else {
             return Completable.complete();
         }
     }
 
+    public Completable setAllFolderItemsReadState(int folderId, boolean read) {
+        if (account.isLocal()) {
+            return database.itemDao().setAllFolderItemsReadState(folderId, read ? 1 : 0);
+        } else {
+            return Completable.complete();
+        }
+    }
+
     public Completable setAllFeedItemsReadState(int feedId, boolean read) {
         if (account.isLocal()) {
             return database.itemDao().setAllFeedItemsReadState(feedId, read ? 1 : 0);
@@ -143,6 +333,24 @@ public abstract class ARepository {
         }
     }
 
+    protected List<MarkAllReadOperation> getMarkAllReadOperations() {
+        return database.markAllReadOperationDao().selectOperations(account.getId());
+    }
+
+    /**
+     * Delete pushed operations, to be called once the sync has succeeded
+     */
+    protected void deleteMarkAllReadOperations(List<MarkAllReadOperation> operations) {
+        if (!operations.isEmpty()) {
+            List<Integer> ids = new ArrayList<>();
+            for (MarkAllReadOperation operation : operations) {
+                ids.add(operation.getId());
+            }
+
+            database.markAllReadOperationDao().deleteOperations(ids);
+        }
+    }
+
     public Completable setItemStarState(Item item) {
         if (account.getConfig().getUseSeparateState()) {
             return database.itemStateChangesDao().upsertItemStarStateChange(item, account.getId(), true)
@@ -204,4 +412,16 @@ public abstract class ARepository {
     public SyncResult getSyncResult() {
         return syncResult;
     }
+
+    @Nullable
+    public IngestionStats getIngestionStats() {
+        return ingestionStats;
+    }
+
+    /**
+     * @return id of the last journaled sync run, 0 if none
+     */
+    public long getSyncRunId() {
+        return syncRunId;
+    }
 }
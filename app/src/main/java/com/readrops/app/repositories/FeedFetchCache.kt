@@ -0,0 +1,133 @@
+package com.readrops.app.repositories
+
+import com.readrops.db.entities.Feed
+import com.readrops.db.entities.Item
+import okhttp3.Headers
+import okhttp3.HttpUrl.Companion.toHttpUrlOrNull
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Local feeds fetch results of a single sync cycle, shared by all the local accounts synced in it.
+ * Each url subscribed to by several feeds is fetched once and its result given to each of them,
+ * whatever the account or the folder.
+ * A result is only kept until its last subscriber is served, and a cache must not outlive its sync cycle.
+ */
+class FeedFetchCache {
+
+    private val entries = ConcurrentHashMap<String, Entry>()
+
+    val hits = AtomicInteger()
+
+    /**
+     * Count the subscribers of each url, before the cycle starts.
+     * Only the urls with several subscribers get their result cached.
+     *
+     * @param urls url of each feed synced in the cycle
+     */
+    fun addSubscribers(urls: Collection<String>) {
+        urls.groupingBy { normalizeUrl(it) }
+                .eachCount()
+                .filterValues { it > 1 }
+                .forEach { (url, count) -> entries[url] = Entry(count) }
+    }
+
+    /**
+     * Give the fetch result of [url], fetching it if no other subscriber did it yet in this cycle.
+     * Subscribers of the same url wait for the first fetch to end instead of fetching it too.
+     *
+     * A not modified result is only reused by subscribers sending the same conditional headers,
+     * the others fetch the url again.
+     * A fetch error is thrown to every subscriber of the url.
+     *
+     * @param headers conditional request headers of the subscriber feed
+     * @param fetch queries the url with [headers]
+     * @return the fetch result, with a copy of the parsed feed and items for the subscriber
+     */
+    @Throws(Exception::class)
+    fun fetch(url: String, headers: Headers, fetch: Callable<FetchResult>): FetchResult {
+        val normalizedUrl = normalizeUrl(url)
+        // single subscriber, or all the subscribers were already served
+        val entry = entries[normalizedUrl] ?: return fetch.call()
+
+        synchronized(entry) {
+            try {
+                entry.result?.let {
+                    hits.incrementAndGet()
+                    return it.copy()
+                }
+
+                entry.error?.let {
+                    hits.incrementAndGet()
+                    throw it
+                }
+
+                if (entry.notModifiedHeaders == headers) {
+                    hits.incrementAndGet()
+                    return entry.notModifiedResult!!
+                }
+
+                try {
+                    val result = fetch.call()
+
+                    if (result.pair != null) {
+                        entry.result = result
+                        return result.copy()
+                    } else {
+                        entry.notModifiedHeaders = headers
+                        entry.notModifiedResult = result
+                        return result
+                    }
+                } catch (e: Exception) {
+                    entry.error = e
+                    throw e
+                }
+            } finally {
+                if (--entry.subscribers == 0) {
+                    entries.remove(normalizedUrl)
+                }
+            }
+        }
+    }
+
+    /**
+     * @param pair                 parsed feed and items, null if the resource wasn't modified
+     * @param permanentRedirectUrl url the feed permanently moved to, null if it wasn't permanently redirected
+     */
+    class FetchResult @JvmOverloads constructor(
+            val pair: Pair<Feed, List<Item>>?,
+            val permanentRedirectUrl: String? = null,
+    ) {
+
+        /**
+         * Subscribers insert items with their own feed id and get their own database ids,
+         * they can't share the item instances
+         */
+        fun copy(): FetchResult = FetchResult(pair?.let { Pair(it.first.copy(), it.second.map { item -> item.copy() }) },
+                permanentRedirectUrl)
+    }
+
+    private class Entry(var subscribers: Int) {
+        var result: FetchResult? = null
+        var notModifiedHeaders: Headers? = null
+        var notModifiedResult: FetchResult? = null
+        var error: Exception? = null
+    }
+
+    companion object {
+
+        /**
+         * Scheme and host case, default port and fragment don't change the fetched resource
+         */
+        @JvmStatic
+        fun normalizeUrl(url: String): String {
+            val httpUrl = url.trim().toHttpUrlOrNull() ?: return url.trim()
+
+            return httpUrl.newBuilder()
+                    .fragment(null)
+                    .build()
+                    .toString()
+        }
+    }
+}
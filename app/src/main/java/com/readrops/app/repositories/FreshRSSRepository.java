@@ -1,43 +1,60 @@
 package com.readrops.app.repositories;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.util.Log;
 import android.util.TimingLogger;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.readrops.api.services.Credentials;
+import com.readrops.api.services.NewItemsSummary;
 import com.readrops.api.services.SyncType;
 import com.readrops.api.services.freshrss.FreshRSSDataSource;
 import com.readrops.api.services.freshrss.FreshRSSSyncData;
+import com.readrops.api.services.freshrss.FreshRSSSyncSink;
 import com.readrops.app.addfeed.FeedInsertionResult;
 import com.readrops.app.addfeed.ParsingResult;
 import com.readrops.app.utils.Utils;
 import com.readrops.db.Database;
+import com.readrops.db.IngestionWriter;
 import com.readrops.db.entities.Feed;
 import com.readrops.db.entities.Folder;
 import com.readrops.db.entities.Item;
-import com.readrops.db.entities.ItemState;
+import com.readrops.db.entities.MarkAllReadOperation;
+import com.readrops.db.entities.MarkAllReadScope;
+import com.readrops.db.entities.SyncCheckpoint;
 import com.readrops.db.entities.account.Account;
 import com.readrops.db.pojo.ItemReadStarState;
 
 import org.joda.time.DateTime;
+import org.koin.core.parameter.ParametersHolderKt;
+import org.koin.java.KoinJavaComponent;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 import io.reactivex.Completable;
 import io.reactivex.Single;
+import io.reactivex.functions.Consumer;
 
 public class FreshRSSRepository extends ARepository {
 
     private static final String TAG = FreshRSSRepository.class.getSimpleName();
 
-    private final FreshRSSDataSource dataSource;
+    // stays under SQLite host parameters limit
+    private static final int IDS_CHUNK_SIZE = 500;
+
+    // full items states pull interval, in seconds
+    private static final long STATES_RECONCILIATION_INTERVAL = 24 * 3600;
+
+    private FreshRSSDataSource dataSource;
 
     public FreshRSSRepository(FreshRSSDataSource dataSource, Database database, @NonNull Context context, @Nullable Account account) {
         super(database, context, account);
@@ -47,12 +64,12 @@ public class FreshRSSRepository extends ARepository {
 
     @Override
     public Completable login(Account account, boolean insert) {
-        setCredentials(account);
-
         return dataSource.login(account.getLogin(), account.getPassword())
                 .flatMap(token -> {
                     account.setToken(token);
-                    setCredentials(account);
+                    // next calls need the new token, services are bound to their credentials
+                    dataSource = KoinJavaComponent.get(FreshRSSDataSource.class, null,
+                            () -> ParametersHolderKt.parametersOf(Credentials.toCredentials(account)));
 
                     return dataSource.getWriteToken();
                 })
@@ -85,13 +102,16 @@ public class FreshRSSRepository extends ARepository {
         if (account.getLastModified() != 0) {
             syncType = SyncType.CLASSIC_SYNC;
             syncData.setLastModified(account.getLastModified());
-        } else
+        } else {
             syncType = SyncType.INITIAL_SYNC;
+        }
 
         long newLastModified = DateTime.now().getMillis() / 1000L;
+        syncData.setFullStatesSync(syncType == SyncType.INITIAL_SYNC ||
+                newLastModified - account.getLastStatesReconciliation() >= STATES_RECONCILIATION_INTERVAL);
         TimingLogger logger = new TimingLogger(TAG, "FreshRSS sync timer");
 
-        return Single.<FreshRSSSyncData>create(emitter -> {
+        return journalSync(Single.<FreshRSSSyncData>create(emitter -> {
             List<ItemReadStarState> itemStateChanges = database
                     .itemStateChangesDao()
                     .getItemStateChanges(account.getId());
@@ -116,36 +136,161 @@ public class FreshRSSRepository extends ARepository {
                     .map(ItemReadStarState::getRemoteId)
                     .collect(Collectors.toList()));
 
+            syncData.setMarkAllReadOperations(getMarkAllReadOperations());
+
+            if (syncType == SyncType.INITIAL_SYNC) {
+                // resume an interrupted initial sync
+                SyncCheckpoint checkpoint = database.syncCheckpointDao().selectCheckpoint(account.getId());
+
+                if (checkpoint != null) {
+                    syncData.setCheckpointStep(checkpoint.getStep());
+                    syncData.setCheckpointContinuation(checkpoint.getPosition());
+                }
+            }
+
             emitter.onSuccess(syncData);
-        }).flatMap(syncData1 -> dataSource.sync(syncType, syncData1, account.getWriteToken()))
-                .flatMapCompletable(syncResult -> {
-                    logger.addSplit("server queries");
+        }).flatMapCompletable(syncData1 -> Completable.using(this::openIngestionSession, session -> {
+            // items pages are written as they arrive, an interrupted initial sync may have left some
+            boolean checkExistingItems = syncType == SyncType.INITIAL_SYNC
+                    && database.itemDao().accountHasItems(account.getId());
+            SyncSink sink = new SyncSink(session, checkExistingItems);
+
+            return dataSource.sync(syncType, syncData1, account.getWriteToken(), sink)
+                    .doOnSuccess(syncResult -> {
+                        telemetry.addPhaseDuration(SyncPhase.PUSH, stageDuration(syncResult, FreshRSSDataSource.STAGE_PUSH));
+                        telemetry.addPhaseDuration(SyncPhase.FETCH, stageDuration(syncResult, FreshRSSDataSource.STAGE_FOLDERS_FEEDS)
+                                + stageDuration(syncResult, FreshRSSDataSource.STAGE_PULL_ITEMS));
+                        telemetry.addPhaseDuration(SyncPhase.RECONCILE, stageDuration(syncResult, FreshRSSDataSource.STAGE_PULL_ITEMS_IDS));
+                    })
+                    .flatMap(syncResult -> checkItemsStates(syncData1, session, sink)
+                            .toSingleDefault(syncResult))
+                    .flatMapCompletable(syncResult -> {
+                        logger.addSplit("server queries and insertions");
+                        Log.d(TAG, "sync stages: " + syncResult.getStageDurations());
+
+                        session.submit(() -> {
+                            database.accountDao().updateLastModified(account.getId(), newLastModified);
+                            database.itemStateChangesDao().resetStateChanges(account.getId());
+                            deleteMarkAllReadOperations(syncData1.getMarkAllReadOperations());
+                            database.syncCheckpointDao().deleteCheckpoint(account.getId());
+
+                            if (syncData1.getFullStatesSync()) {
+                                database.accountDao().updateLastStatesReconciliation(account.getId(), newLastModified);
+                            }
+                        });
+                        session.flush();
+
+                        account.setLastModified(newLastModified);
+                        if (syncData1.getFullStatesSync()) {
+                            account.setLastStatesReconciliation(newLastModified);
+                        }
+                        logger.dumpToLog();
+
+                        syncResult.setNewItems(sink.getNewItems());
+                        this.syncResult = syncResult;
 
-                    insertFolders(syncResult.getFolders());
-                    logger.addSplit("folders insertion");
-                    insertFeeds(syncResult.getFeeds());
-                    logger.addSplit("feeds insertion");
+                        return Completable.complete();
+                    });
+        }, session -> {
+            try {
+                closeIngestionSession(session);
+            } catch (Exception e) {
+                Log.e(TAG, "sync: " + e.getMessage());
+            }
+        })));
+    }
 
-                    insertItems(syncResult.getItems(), false);
-                    logger.addSplit("items insertion");
+    /**
+     * After an incremental states pull, compare the local unread count with the server one
+     * and pull the full states lists if they differ.
+     * The incremental pull misses read state changes made elsewhere on items older than its window,
+     * a different count is the sign of such changes.
+     */
+    private Completable checkItemsStates(FreshRSSSyncData syncData, IngestionWriter.Session session, SyncSink sink) {
+        if (syncData.getFullStatesSync()) {
+            return Completable.complete();
+        }
 
-                    insertItems(syncResult.getStarredItems(), true);
-                    logger.addSplit("starred items insertion");
+        long start = SystemClock.elapsedRealtime();
 
-                    insertItemsIds(syncResult.getUnreadIds(), syncResult.getReadIds(), syncResult.getStarredIds());
-                    logger.addSplit("insert and update items ids");
+        return dataSource.getUnreadCount()
+                .flatMapCompletable(unreadCount -> {
+                    session.flush();
+                    int localUnreadCount = database.itemStateDao().countUnreadItemStates(account.getId());
 
-                    account.setLastModified(newLastModified);
-                    database.accountDao().updateLastModified(account.getId(), newLastModified);
+                    if (unreadCount == localUnreadCount) {
+                        return Completable.complete();
+                    }
 
-                    database.itemStateChangesDao().resetStateChanges(account.getId());
+                    Log.d(TAG, "items states drift: " + unreadCount + " unread items on the server, " + localUnreadCount + " locally");
+                    syncData.setFullStatesSync(true);
+                    return dataSource.reconcileItemsStates(sink);
+                })
+                .doOnComplete(() -> telemetry.addPhaseDuration(SyncPhase.RECONCILE, SystemClock.elapsedRealtime() - start));
+    }
 
-                    logger.dumpToLog();
+    @Override
+    public Completable setAllItemsReadState(boolean read) {
+        return markAllAsRead(MarkAllReadScope.ACCOUNT, null, read,
+                () -> database.itemDao().getGreatestRemoteId(account.getId()),
+                maxRemoteId -> database.itemStateDao().setAllItemsReadState(read, maxRemoteId, account.getId()));
+    }
 
-                    this.syncResult = syncResult;
+    @Override
+    public Completable setAllFolderItemsReadState(int folderId, boolean read) {
+        return Single.fromCallable(() -> database.folderDao().select(folderId))
+                .flatMapCompletable(folder -> markAllAsRead(MarkAllReadScope.FOLDER, folder.getRemoteId(), read,
+                        () -> database.itemDao().getGreatestFolderRemoteId(folderId),
+                        maxRemoteId -> database.itemStateDao().setAllFolderItemsReadState(folderId, read, account.getId())));
+    }
 
-                    return Completable.complete();
-                });
+    @Override
+    public Completable setAllFeedItemsReadState(int feedId, boolean read) {
+        return Single.fromCallable(() -> database.feedDao().getFeedById(feedId))
+                .flatMapCompletable(feed -> markAllAsRead(MarkAllReadScope.FEED, feed.getRemoteId(), read,
+                        () -> database.itemDao().getGreatestFeedRemoteId(feedId),
+                        maxRemoteId -> database.itemStateDao().setAllFeedItemsReadState(feedId, read, account.getId())));
+    }
+
+    /**
+     * Update the local state with one statement and record a single operation
+     * pushed with the mark-all-as-read endpoint on next sync, in the same transaction.
+     * The operation watermark is the newest local item of the scope, so the server marks the same items
+     * as the local update, and none the user hasn't seen yet.
+     * The API has no bulk unread endpoint, so marking all items unread is not supported.
+     *
+     * @param greatestRemoteId greatest remote id of the scope items, null if the scope has no item
+     * @param localUpdate      marks the states read up to the given remote id
+     */
+    private Completable markAllAsRead(MarkAllReadScope scope, @Nullable String streamId, boolean read,
+                                      Callable<String> greatestRemoteId, Consumer<String> localUpdate) {
+        if (!read) {
+            return Completable.complete();
+        }
+
+        return Completable.create(emitter -> {
+            database.runInTransaction(() -> {
+                String maxRemoteId = greatestRemoteId.call();
+
+                if (maxRemoteId != null) {
+                    database.markAllReadOperationDao().compatInsert(new MarkAllReadOperation(0, scope,
+                            streamId, remoteIdToTimestamp(maxRemoteId), account.getId()));
+                }
+
+                localUpdate.accept(maxRemoteId);
+                return null;
+            });
+
+            emitter.onComplete();
+        });
+    }
+
+    /**
+     * FreshRSS item ids are their insertion timestamp in microseconds,
+     * the one the mark-all-as-read endpoint compares with
+     */
+    private static long remoteIdToTimestamp(String remoteId) {
+        return Long.parseLong(remoteId.substring(remoteId.lastIndexOf('/') + 1), 16);
     }
 
     @Override
@@ -232,7 +377,7 @@ public class FreshRSSRepository extends ARepository {
         database.folderDao().foldersUpsert(freshRSSFolders, account);
     }
 
-    private void insertItems(List<Item> items, boolean starredItems) {
+    private List<Item> insertItems(List<Item> items, boolean starredItems, boolean checkExistingItems, IngestionWriter.Session session) {
         List<Item> itemsToInsert = new ArrayList<>();
         Map<String, Integer> itemsFeedsIds = new HashMap<>();
 
@@ -245,6 +390,10 @@ public class FreshRSSRepository extends ARepository {
                 itemsFeedsIds.put(item.getFeedRemoteId(), feedId);
             }
 
+            if (checkExistingItems && feedId != null && database.itemDao().remoteItemExists(item.getRemoteId(), feedId)) {
+                continue;
+            }
+
             item.setFeedId(feedId);
             if (item.getText() != null) {
                 item.setReadTime(Utils.readTimeFromString(item.getText()));
@@ -264,38 +413,87 @@ public class FreshRSSRepository extends ARepository {
 
         if (!itemsToInsert.isEmpty()) {
             Collections.sort(itemsToInsert, Item::compareTo);
-            database.itemDao().insert(itemsToInsert);
+            session.submit(() -> database.itemDao().insertWithContent(itemsToInsert), MAX_QUEUED_CHUNKS);
+            telemetry.getItemsInserted().addAndGet(itemsToInsert.size());
         }
+
+        return itemsToInsert;
     }
 
-    private void insertItemsIds(List<String> unreadIds, List<String> readIds, List<String> starredIds) {
-        database.itemStateDao().deleteItemsStates(account.getId());
+    /**
+     * Submits each pulled chunk to the session, waiting only when the writer is behind.
+     * Items states are rebuilt from the ids pages.
+     * Items and items ids are received on two different threads, each one only touches its own fields.
+     */
+    private class SyncSink implements FreshRSSSyncSink {
 
-        database.itemStateDao().insertItemStates(unreadIds.stream().map(id -> {
-                    boolean starred = starredIds.stream().filter(starredId -> starredId.equals(id)).count() == 1;
-                    if (starred) {
-                        starredIds.remove(id);
-                    }
+        private final IngestionWriter.Session session;
+        private final boolean checkExistingItems;
 
-                    return new ItemState(0, false, starred, id, account.getId());
-                }
-        ).collect(Collectors.toList()));
+        // only what notifications need, not the items content
+        private final NewItemsSummary newItems = new NewItemsSummary();
 
-        database.itemStateDao().insertItemStates(readIds.stream().map(id -> {
-                    boolean starred = starredIds.stream().filter(starredId -> starredId.equals(id)).count() == 1;
-                    if (starred) {
-                        starredIds.remove(id);
-                    }
+        SyncSink(IngestionWriter.Session session, boolean checkExistingItems) {
+            this.session = session;
+            this.checkExistingItems = checkExistingItems;
+        }
+
+        @Override
+        public void onFoldersAndFeeds(@NonNull List<Folder> folders, @NonNull List<Feed> feeds) {
+            // items insertion needs the feeds local ids
+            session.execute(() -> {
+                insertFolders(folders);
+                insertFeeds(feeds);
+                return null;
+            });
+        }
+
+        @Override
+        public void onItems(@NonNull List<Item> items, boolean starred) {
+            List<Item> insertedItems = insertItems(items, starred, checkExistingItems, session);
 
-                    return new ItemState(0, true, starred, id, account.getId());
+            if (!starred && !insertedItems.isEmpty()) {
+                // once inserted, the items have their ids
+                session.submit(() -> newItems.addAll(insertedItems));
+            }
+        }
+
+        @Override
+        public void onCheckpoint(@NonNull String step, @Nullable String continuation) {
+            // committed with or after the page items
+            session.submit(() -> database.syncCheckpointDao().upsertCheckpoint(
+                    new SyncCheckpoint(account.getId(), step, continuation)));
+        }
+
+        @Override
+        public void onItemsStatesReset() {
+            session.submit(() -> database.itemStateDao().deleteItemsStates(account.getId()));
+        }
+
+        @Override
+        public void onStarredStatesReset() {
+            session.submit(() -> database.itemStateDao().unstarItemStates(account.getId()));
+        }
+
+        @Override
+        public void onItemsIds(@NonNull List<String> ids, @NonNull ItemsIdsState state) {
+            telemetry.getItemsUpdated().addAndGet(ids.size());
+
+            session.submit(() -> {
+                for (int start = 0; start < ids.size(); start += IDS_CHUNK_SIZE) {
+                    List<String> chunk = ids.subList(start, Math.min(start + IDS_CHUNK_SIZE, ids.size()));
+
+                    if (state == ItemsIdsState.STARRED) {
+                        database.itemStateDao().upsertStarredItemStates(chunk, account.getId());
+                    } else {
+                        database.itemStateDao().upsertReadItemStates(chunk, state == ItemsIdsState.READ, account.getId());
+                    }
                 }
-        ).collect(Collectors.toList()));
+            }, MAX_QUEUED_CHUNKS);
+        }
 
-        // insert starred items ids which are read
-        if (!starredIds.isEmpty()) {
-            database.itemStateDao().insertItemStates(starredIds.stream().map(id ->
-                    new ItemState(0, true, true, id, account.getId()))
-                    .collect(Collectors.toList()));
+        NewItemsSummary getNewItems() {
+            return newItems;
         }
     }
 }
@@ -4,6 +4,7 @@ import android.accounts.NetworkErrorException;
 import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -12,24 +13,31 @@ import androidx.annotation.Nullable;
 import com.readrops.api.localfeed.LocalRSSDataSource;
 import com.readrops.api.services.SyncResult;
 import com.readrops.api.utils.ApiUtils;
+import com.readrops.api.utils.ByteCounter;
 import com.readrops.api.utils.exceptions.ParseException;
 import com.readrops.api.utils.exceptions.UnknownFormatException;
 import com.readrops.app.addfeed.FeedInsertionResult;
 import com.readrops.app.addfeed.ParsingResult;
+import com.readrops.app.retention.RetentionPolicy;
 import com.readrops.app.utils.SharedPreferencesManager;
 import com.readrops.app.utils.Utils;
 import com.readrops.db.Database;
+import com.readrops.db.IngestionWriter;
 import com.readrops.db.entities.Feed;
 import com.readrops.db.entities.Item;
+import com.readrops.db.entities.SyncCheckpoint;
 import com.readrops.db.entities.account.Account;
 
+import org.joda.time.LocalDateTime;
 import org.jsoup.Jsoup;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import io.reactivex.Completable;
 import io.reactivex.Single;
@@ -40,7 +48,13 @@ public class LocalFeedRepository extends ARepository {
 
     private static final String TAG = LocalFeedRepository.class.getSimpleName();
 
+    private static final String STEP_FEEDS = "feeds";
+
+    // syncs observing the same permanent redirect before the feed url is replaced
+    private static final int REDIRECT_OBSERVATIONS = 3;
+
     private LocalRSSDataSource dataSource;
+    private FeedFetchCache fetchCache;
 
     public LocalFeedRepository(LocalRSSDataSource dataSource, Database database, @NonNull Context context, @Nullable Account account) {
         super(database, context, account);
@@ -54,42 +68,178 @@ public class LocalFeedRepository extends ARepository {
         return null;
     }
 
+    /**
+     * Share the fetch results of the sync cycle with the other local accounts synced in it.
+     * Without a cache, each feed is fetched on its own.
+     */
+    public void setFetchCache(@Nullable FeedFetchCache fetchCache) {
+        this.fetchCache = fetchCache;
+    }
+
+    /**
+     * Fetch each feed and insert its new items.
+     * Feeds sharing their url with an already fetched one in the sync cycle reuse its result.
+     * Feeds consistently permanently redirected move to their new url.
+     * The loop stops between two feeds once the subscription is disposed.
+     * A full sync records the last fetched feed, an interrupted one resumes with the next feeds
+     * and fetches the already fetched ones last.
+     */
     @Override
     public Completable sync(@Nullable List<Feed> feeds, FeedUpdate update) {
-        return Completable.create(emitter -> {
+        return journalSync(Completable.create(emitter -> {
             List<Feed> feedList;
+            boolean fullSync = feeds == null || feeds.isEmpty();
 
-            if (feeds == null || feeds.isEmpty()) {
-                feedList = database.feedDao().getFeeds(account.getId());
+            if (fullSync) {
+                feedList = resumeFromCheckpoint(database.feedDao().getFeeds(account.getId()));
             } else {
                 feedList = feeds;
             }
 
-            for (Feed feed : feedList) {
-                Handler mainHandler = new Handler(Looper.getMainLooper());
-                mainHandler.post(() -> update.onNext(feed));
+            // guids of the items submitted by this sync, which may not be committed yet
+            Set<String> submittedGuids = new HashSet<>();
+            IngestionWriter.Session session = openIngestionSession();
 
-                try {
-                    Headers.Builder headers = new Headers.Builder();
-                    if (feed.getEtag() != null) {
-                        headers.add(ApiUtils.IF_NONE_MATCH_HEADER, feed.getEtag());
-                    }
-                    if (feed.getLastModified() != null) {
-                        headers.add(ApiUtils.IF_MODIFIED_HEADER, feed.getLastModified());
+            try {
+                for (Feed feed : feedList) {
+                    if (emitter.isDisposed()) {
+                        Log.d(TAG, "sync: stopped before " + feed.getUrl());
+                        return;
                     }
 
-                    Pair<Feed, List<Item>> pair = dataSource.queryRSSResource(feed.getUrl(), headers.build());
+                    Handler mainHandler = new Handler(Looper.getMainLooper());
+                    mainHandler.post(() -> update.onNext(feed));
+
+                    try {
+                        Headers.Builder headers = new Headers.Builder();
+                        if (feed.getEtag() != null) {
+                            headers.add(ApiUtils.IF_NONE_MATCH_HEADER, feed.getEtag());
+                        }
+                        if (feed.getLastModified() != null) {
+                            headers.add(ApiUtils.IF_MODIFIED_HEADER, feed.getLastModified());
+                        }
+
+                        Headers conditionalHeaders = headers.build();
+                        FeedFetchCache.FetchResult result = fetchCache != null
+                                ? fetchCache.fetch(feed.getUrl(), conditionalHeaders, () -> queryFeed(feed, conditionalHeaders))
+                                : queryFeed(feed, conditionalHeaders);
+                        learnRedirect(feed, result.getPermanentRedirectUrl(), session);
+
+                        Pair<Feed, List<Item>> pair = result.getPair();
+                        if (pair != null) {
+                            insertNewItems(feed, pair.getSecond(), submittedGuids, session);
+                        } else {
+                            telemetry.getFeedsSkipped().incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        Log.d(TAG, "sync: " + e.getMessage());
+                        telemetry.getFeedsFailed().incrementAndGet();
+                    }
 
-                    if (pair != null) {
-                        insertNewItems(feed, pair.getSecond());
+                    if (fullSync) {
+                        // committed with or after the feed items
+                        session.submit(() -> database.syncCheckpointDao().upsertCheckpoint(
+                                new SyncCheckpoint(account.getId(), STEP_FEEDS, String.valueOf(feed.getId()))));
                     }
-                } catch (Exception e) {
-                    Log.d(TAG, "sync: " + e.getMessage());
                 }
+
+                if (fullSync) {
+                    session.submit(() -> database.syncCheckpointDao().deleteCheckpoint(account.getId()));
+                }
+            } finally {
+                closeIngestionSession(session);
             }
 
             emitter.onComplete();
-        });
+        }));
+    }
+
+    /**
+     * Query the feed, measuring the request until its response is received apart from the response parsing
+     */
+    private FeedFetchCache.FetchResult queryFeed(Feed feed, Headers headers) throws Exception {
+        ByteCounter byteCounter = new ByteCounter();
+
+        long start = SystemClock.elapsedRealtime();
+        long[] responseTime = {0};
+        String[] redirectUrl = {null};
+
+        try {
+            Pair<Feed, List<Item>> pair = dataSource.queryRSSResource(feed.getUrl(), headers, response -> {
+                responseTime[0] = SystemClock.elapsedRealtime();
+                redirectUrl[0] = ApiUtils.permanentRedirectUrl(response);
+            }, byteCounter);
+
+            return new FeedFetchCache.FetchResult(pair, redirectUrl[0]);
+        } finally {
+            long end = SystemClock.elapsedRealtime();
+
+            if (responseTime[0] == 0) {
+                telemetry.addPhaseDuration(SyncPhase.FETCH, end - start);
+            } else {
+                telemetry.addPhaseDuration(SyncPhase.FETCH, responseTime[0] - start);
+                telemetry.addPhaseDuration(SyncPhase.PARSE, end - responseTime[0]);
+            }
+
+            telemetry.getBytesReceived().addAndGet(byteCounter.getBytesReceived());
+        }
+    }
+
+    /**
+     * Replace the feed url by the one it permanently redirects to once the same redirect has been observed
+     * by several syncs in a row, so next syncs don't pay the redirect hops.
+     * The url the feed was added with is kept for OPML export.
+     */
+    private void learnRedirect(Feed feed, @Nullable String redirectUrl, IngestionWriter.Session session) {
+        if (redirectUrl == null) {
+            if (feed.getRedirectUrl() != null) {
+                session.submit(() -> database.feedDao().updateRedirect(feed.getId(), null, 0));
+            }
+
+            return;
+        }
+
+        int count = redirectUrl.equals(feed.getRedirectUrl()) ? feed.getRedirectCount() + 1 : 1;
+
+        if (count < REDIRECT_OBSERVATIONS) {
+            session.submit(() -> database.feedDao().updateRedirect(feed.getId(), redirectUrl, count));
+        } else {
+            String originalUrl = feed.getOriginalUrl() != null ? feed.getOriginalUrl() : feed.getUrl();
+
+            session.submit(() -> {
+                if (database.feedDao().feedExists(redirectUrl, account.getId())) {
+                    // the account already has the feed the url moved to
+                    database.feedDao().updateRedirect(feed.getId(), null, 0);
+                } else {
+                    Log.d(TAG, "learnRedirect: " + feed.getUrl() + " moved to " + redirectUrl);
+                    database.feedDao().updateUrl(feed.getId(), redirectUrl, originalUrl);
+                }
+            });
+        }
+    }
+
+    /**
+     * Put the feeds following the last fetched one first, so every feed gets its turn
+     * even if syncs keep being stopped
+     */
+    private List<Feed> resumeFromCheckpoint(List<Feed> feeds) {
+        SyncCheckpoint checkpoint = database.syncCheckpointDao().selectCheckpoint(account.getId());
+
+        if (checkpoint == null || !STEP_FEEDS.equals(checkpoint.getStep()) || checkpoint.getPosition() == null) {
+            return feeds;
+        }
+
+        int lastFeedId = Integer.parseInt(checkpoint.getPosition());
+        for (int i = 0; i < feeds.size(); i++) {
+            if (feeds.get(i).getId() == lastFeedId) {
+                List<Feed> orderedFeeds = new ArrayList<>(feeds.subList(i + 1, feeds.size()));
+                orderedFeeds.addAll(feeds.subList(0, i + 1));
+
+                return orderedFeeds;
+            }
+        }
+
+        return feeds;
     }
 
     @Override
@@ -131,9 +281,7 @@ public class LocalFeedRepository extends ARepository {
     }
 
     @SuppressWarnings("SimplifyStreamApiCallChains")
-    private void insertNewItems(Feed feed, List<Item> items) {
-        database.feedDao().updateHeaders(feed.getEtag(), feed.getLastModified(), feed.getId());
-
+    private void insertNewItems(Feed feed, List<Item> items, Set<String> submittedGuids, IngestionWriter.Session session) {
         Collections.sort(items, Item::compareTo);
 
         int maxItems = Integer.parseInt(SharedPreferencesManager.readString(
@@ -143,7 +291,13 @@ public class LocalFeedRepository extends ARepository {
         }
 
         items.stream().forEach(item -> item.setFeedId(feed.getId()));
-        insertItems(items, feed);
+        List<Item> itemsToInsert = getNewItems(items, feed, submittedGuids);
+
+        session.submit(() -> {
+            database.feedDao().updateHeaders(feed.getEtag(), feed.getLastModified(), feed.getId());
+            database.itemDao().insertWithContent(itemsToInsert);
+            syncResult.getNewItems().addAll(itemsToInsert);
+        });
     }
 
     private Feed insertFeed(Feed feed, ParsingResult parsingResult) {
@@ -164,26 +318,48 @@ public class LocalFeedRepository extends ARepository {
         return feed;
     }
 
-    private void insertItems(Collection<Item> items, Feed feed) {
+    /**
+     * Items published before the retention cutoff are skipped, they would be inserted again
+     * as new and unread after each purge while they are still in the feed.
+     * Items submitted earlier in the sync are checked apart as they may not be committed yet.
+     */
+    private List<Item> getNewItems(Collection<Item> items, Feed feed, Set<String> submittedGuids) {
         List<Item> itemsToInsert = new ArrayList<>();
+        LocalDateTime maxDate = new RetentionPolicy(database).getMaxDate(feed);
 
         for (Item dbItem : items) {
+            if (maxDate != null && dbItem.getPubDate() != null && dbItem.getPubDate().isBefore(maxDate)) {
+                continue;
+            }
+
+            if (dbItem.getGuid() != null && submittedGuids.contains(dbItem.getGuid())) {
+                continue;
+            }
+
             if (!database.itemDao().itemExists(dbItem.getGuid(), feed.getAccountId())) {
+                String cleanDescription = null;
                 if (dbItem.getDescription() != null) {
-                    dbItem.setCleanDescription(Jsoup.parse(dbItem.getDescription()).text());
+                    cleanDescription = Jsoup.parse(dbItem.getDescription()).text();
+                    dbItem.setPreview(Item.buildPreview(cleanDescription));
                 }
 
                 if (dbItem.getContent() != null) {
                     dbItem.setReadTime(Utils.readTimeFromString(dbItem.getContent()));
-                } else if (dbItem.getDescription() != null) {
-                    dbItem.setReadTime(Utils.readTimeFromString(dbItem.getCleanDescription()));
+                } else if (cleanDescription != null) {
+                    dbItem.setReadTime(Utils.readTimeFromString(cleanDescription));
                 }
 
                 itemsToInsert.add(dbItem);
+                if (dbItem.getGuid() != null) {
+                    submittedGuids.add(dbItem.getGuid());
+                }
             }
         }
 
-        syncResult.getItems().addAll(itemsToInsert);
-        database.itemDao().insert(itemsToInsert);
+        if (telemetry != null) {
+            telemetry.getItemsInserted().addAndGet(itemsToInsert.size());
+        }
+
+        return itemsToInsert;
     }
 }
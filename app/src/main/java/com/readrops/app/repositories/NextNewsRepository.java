@@ -8,31 +8,42 @@ import android.util.TimingLogger;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.readrops.api.services.Credentials;
+import com.readrops.api.services.NewItemsSummary;
 import com.readrops.api.services.SyncResult;
 import com.readrops.api.services.SyncType;
 import com.readrops.api.services.nextcloudnews.NextNewsDataSource;
 import com.readrops.api.services.nextcloudnews.NextNewsSyncData;
+import com.readrops.api.services.nextcloudnews.NextNewsSyncSink;
 import com.readrops.api.utils.exceptions.UnknownFormatException;
 import com.readrops.app.addfeed.FeedInsertionResult;
 import com.readrops.app.addfeed.ParsingResult;
 import com.readrops.app.utils.Utils;
 import com.readrops.db.Database;
+import com.readrops.db.IngestionWriter;
 import com.readrops.db.entities.Feed;
 import com.readrops.db.entities.Folder;
 import com.readrops.db.entities.Item;
+import com.readrops.db.entities.MarkAllReadOperation;
+import com.readrops.db.entities.MarkAllReadScope;
+import com.readrops.db.entities.SyncCheckpoint;
 import com.readrops.db.entities.account.Account;
 import com.readrops.db.pojo.ItemReadStarState;
 
 import org.joda.time.LocalDateTime;
+import org.koin.core.parameter.ParametersHolderKt;
+import org.koin.core.qualifier.QualifierKt;
 import org.koin.java.KoinJavaComponent;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
 import io.reactivex.Single;
 import okhttp3.OkHttpClient;
 
@@ -50,9 +61,9 @@ public class NextNewsRepository extends ARepository {
 
     @Override
     public Completable login(Account account, boolean insert) {
-        setCredentials(account);
         return Single.<String>create(emitter -> {
-            OkHttpClient httpClient = KoinJavaComponent.get(OkHttpClient.class);
+            OkHttpClient httpClient = KoinJavaComponent.get(OkHttpClient.class, QualifierKt.named("accountClient"),
+                    () -> ParametersHolderKt.parametersOf(Credentials.toCredentials(account)));
 
             String displayName = dataSource.login(httpClient, account);
             emitter.onSuccess(displayName);
@@ -74,8 +85,7 @@ public class NextNewsRepository extends ARepository {
 
     @Override
     public Completable sync(@Nullable List<Feed> feeds, @Nullable FeedUpdate update) {
-        setCredentials(account);
-        return Completable.create(emitter -> {
+        return journalSync(Completable.create(emitter -> {
             try {
                 long lastModified = LocalDateTime.now().toDateTime().getMillis();
                 SyncType syncType;
@@ -123,48 +133,122 @@ public class NextNewsRepository extends ARepository {
                         syncData.setUnstarredItems(database.itemDao().getStarChanges(unstarredItemsIds, account.getId()));
                     }
 
-                }
-
-                TimingLogger timings = new TimingLogger(TAG, "nextcloud news " + syncType.name().toLowerCase());
-                SyncResult result = dataSource.sync(syncType, syncData);
-                timings.addSplit("server queries");
-
-                if (!result.isError()) {
-                    syncResult = new SyncResult();
-
-                    insertFolders(result.getFolders());
-                    timings.addSplit("insert folders");
+                    syncData.setMarkAllReadOperations(getMarkAllReadOperations());
 
-                    insertFeeds(result.getFeeds(), false);
-                    timings.addSplit("insert feeds");
+                } else {
+                    // resume an interrupted initial sync
+                    SyncCheckpoint checkpoint = database.syncCheckpointDao().selectCheckpoint(account.getId());
 
-                    boolean initialSync = syncType == SyncType.INITIAL_SYNC;
-                    insertItems(result.getItems(), initialSync);
-                    timings.addSplit("insert items");
+                    if (checkpoint != null && checkpoint.getPosition() != null) {
+                        syncData.setCheckpointStep(checkpoint.getStep());
+                        syncData.setCheckpointOffset(Long.parseLong(checkpoint.getPosition()));
+                    }
+                }
 
-                    insertItems(result.getStarredItems(), initialSync);
-                    timings.dumpToLog();
+                TimingLogger timings = new TimingLogger(TAG, "nextcloud news " + syncType.name().toLowerCase());
+                IngestionWriter.Session session = openIngestionSession();
+                // items chunks are written as they arrive, an interrupted initial sync may have left some
+                boolean checkExistingItems = syncType == SyncType.CLASSIC_SYNC
+                        || database.itemDao().accountHasItems(account.getId());
+                SyncSink sink = new SyncSink(session, !checkExistingItems, emitter);
+                SyncResult result;
 
-                    account.setLastModified(lastModified);
-                    database.accountDao().updateLastModified(account.getId(), lastModified);
+                try {
+                    result = dataSource.sync(syncType, syncData, sink);
+                    timings.addSplit("server queries and insertions");
+
+                    telemetry.addPhaseDuration(SyncPhase.PUSH, stageDuration(result, NextNewsDataSource.STAGE_PUSH));
+                    telemetry.addPhaseDuration(SyncPhase.FETCH, stageDuration(result, NextNewsDataSource.STAGE_PULL));
+
+                    if (emitter.isDisposed()) {
+                        // state changes and the checkpoint are kept for the next sync
+                        Log.d(TAG, "sync: stopped");
+                        return;
+                    } else if (!result.isError()) {
+                        session.submit(() -> {
+                            database.accountDao().updateLastModified(account.getId(), lastModified);
+                            database.itemStateChangesDao().resetStateChanges(account.getId());
+                            deleteMarkAllReadOperations(syncData.getMarkAllReadOperations());
+                            database.syncCheckpointDao().deleteCheckpoint(account.getId());
+                        });
+                        session.flush();
 
-                    database.itemStateChangesDao().resetStateChanges(account.getId());
+                        result.setNewItems(sink.getNewItems());
+                        syncResult = result;
+                        account.setLastModified(lastModified);
+                        timings.dumpToLog();
+                    }
+                } finally {
+                    // writes are measured once the session is closed
+                    closeIngestionSession(session);
+                }
 
+                if (!result.isError()) {
                     emitter.onComplete();
                 } else {
-                    emitter.onError(new Throwable());
+                    emitter.onError(new Throwable("Nextcloud News sync failed: " + result.getErrors()));
                 }
-
             } catch (Exception e) {
                 Log.d(TAG, "sync: " + e.getMessage());
                 emitter.onError(e);
             }
+        }));
+    }
+
+    @Override
+    public Completable setAllItemsReadState(boolean read) {
+        return markAllAsRead(MarkAllReadScope.ACCOUNT, null, read,
+                () -> database.itemDao().getNewestRemoteId(account.getId()),
+                database.itemDao().setAllItemsReadState(read ? 1 : 0, account.getId()));
+    }
+
+    @Override
+    public Completable setAllFolderItemsReadState(int folderId, boolean read) {
+        return Single.fromCallable(() -> database.folderDao().select(folderId))
+                .flatMapCompletable(folder -> markAllAsRead(MarkAllReadScope.FOLDER, folder.getRemoteId(), read,
+                        () -> database.itemDao().getNewestFolderRemoteId(folderId),
+                        database.itemDao().setAllFolderItemsReadState(folderId, read ? 1 : 0)));
+    }
+
+    @Override
+    public Completable setAllFeedItemsReadState(int feedId, boolean read) {
+        return Single.fromCallable(() -> database.feedDao().getFeedById(feedId))
+                .flatMapCompletable(feed -> markAllAsRead(MarkAllReadScope.FEED, feed.getRemoteId(), read,
+                        () -> database.itemDao().getNewestFeedRemoteId(feedId),
+                        database.itemDao().setAllFeedItemsReadState(feedId, read ? 1 : 0)));
+    }
+
+    /**
+     * Record a single operation pushed with the newest item id on next sync, and update
+     * the local state with one statement, in the same transaction.
+     * The API has no bulk unread endpoint, so marking all items unread is not supported.
+     */
+    private Completable markAllAsRead(MarkAllReadScope scope, @Nullable String remoteTargetId, boolean read,
+                                      Callable<Long> newestRemoteId, Completable localUpdate) {
+        if (!read) {
+            return Completable.complete();
+        }
+
+        return Completable.create(emitter -> {
+            database.runInTransaction(() -> {
+                Long newestId = newestRemoteId.call(); // null if the scope has no item
+
+                if (newestId != null) {
+                    database.markAllReadOperationDao().compatInsert(new MarkAllReadOperation(0, scope,
+                            remoteTargetId, newestId, account.getId()));
+                }
+
+                // runs on the calling thread, inside the transaction
+                localUpdate.blockingAwait();
+                return null;
+            });
+
+            emitter.onComplete();
         });
     }
 
     @Override
     public Single<List<FeedInsertionResult>> addFeeds(List<ParsingResult> results) {
-        setCredentials(account);
         return Single.create(emitter -> {
             List<FeedInsertionResult> feedInsertionResults = new ArrayList<>();
 
@@ -202,7 +286,6 @@ public class NextNewsRepository extends ARepository {
 
     @Override
     public Completable updateFeed(Feed feed) {
-        setCredentials(account);
         return Completable.create(emitter -> {
             Folder folder = feed.getFolderId() == null ? null : database.folderDao().select(feed.getFolderId());
 
@@ -224,7 +307,6 @@ public class NextNewsRepository extends ARepository {
 
     @Override
     public Completable deleteFeed(Feed feed) {
-        setCredentials(account);
         return Completable.create(emitter -> {
             try {
                 if (dataSource.deleteFeed(Integer.parseInt(feed.getRemoteId()))) {
@@ -241,7 +323,6 @@ public class NextNewsRepository extends ARepository {
 
     @Override
     public Single<Long> addFolder(Folder folder) {
-        setCredentials(account);
         return Single.<Folder>create(emitter -> {
             try {
                 List<Folder> folders = dataSource.createFolder(folder);
@@ -261,7 +342,6 @@ public class NextNewsRepository extends ARepository {
 
     @Override
     public Completable updateFolder(Folder folder) {
-        setCredentials(account);
         return Completable.create(emitter -> {
             try {
                 if (dataSource.renameFolder(folder)) {
@@ -279,7 +359,6 @@ public class NextNewsRepository extends ARepository {
 
     @Override
     public Completable deleteFolder(Folder folder) {
-        setCredentials(account);
         return Completable.create(emitter -> {
             try {
                 if (dataSource.deleteFolder(folder)) {
@@ -324,7 +403,7 @@ public class NextNewsRepository extends ARepository {
         database.folderDao().foldersUpsert(nextNewsFolders, account);
     }
 
-    private void insertItems(List<Item> items, boolean initialSync) {
+    private List<Item> insertItems(List<Item> items, boolean initialSync, IngestionWriter.Session session) {
         List<Item> itemsToInsert = new ArrayList<>();
 
         for (Item item : items) {
@@ -332,7 +411,8 @@ public class NextNewsRepository extends ARepository {
 
             //if the item already exists, update only its read state
             if (!initialSync && feedId > 0 && database.itemDao().remoteItemExists(String.valueOf(item.getRemoteId()), feedId)) {
-                database.itemDao().setReadAndStarState(item.getRemoteId(), item.isRead(), item.isStarred());
+                session.submit(() -> database.itemDao().setReadAndStarState(item.getRemoteId(), item.isRead(), item.isStarred()));
+                telemetry.getItemsUpdated().incrementAndGet();
                 continue;
             }
 
@@ -345,10 +425,65 @@ public class NextNewsRepository extends ARepository {
         }
 
         if (!itemsToInsert.isEmpty()) {
-            syncResult.setItems(itemsToInsert);
-
             Collections.sort(itemsToInsert, Item::compareTo);
-            database.itemDao().insert(itemsToInsert);
+            session.submit(() -> database.itemDao().insertWithContent(itemsToInsert), MAX_QUEUED_CHUNKS);
+            telemetry.getItemsInserted().addAndGet(itemsToInsert.size());
+        }
+
+        return itemsToInsert;
+    }
+
+    /**
+     * Submits each parsed items chunk to the session, waiting only when the writer is behind
+     */
+    private class SyncSink implements NextNewsSyncSink {
+
+        private final IngestionWriter.Session session;
+        private final boolean initialSync;
+        private final CompletableEmitter emitter;
+
+        // only what notifications need, not the items content
+        private final NewItemsSummary newItems = new NewItemsSummary();
+
+        SyncSink(IngestionWriter.Session session, boolean initialSync, CompletableEmitter emitter) {
+            this.session = session;
+            this.initialSync = initialSync;
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void onFoldersAndFeeds(@NonNull List<Folder> folders, @NonNull List<Feed> feeds) {
+            // items insertion needs the feeds local ids
+            session.execute(() -> {
+                insertFolders(folders);
+                return insertFeeds(feeds, false);
+            });
+        }
+
+        @Override
+        public void onItems(@NonNull List<Item> items, boolean starred) {
+            List<Item> insertedItems = insertItems(items, initialSync, session);
+
+            if (!insertedItems.isEmpty()) {
+                // once inserted, the items have their ids
+                session.submit(() -> newItems.addAll(insertedItems));
+            }
+        }
+
+        @Override
+        public void onCheckpoint(@NonNull String step, long offset) {
+            // committed with or after the batch items
+            session.submit(() -> database.syncCheckpointDao().upsertCheckpoint(
+                    new SyncCheckpoint(account.getId(), step, String.valueOf(offset))));
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return emitter.isDisposed();
+        }
+
+        NewItemsSummary getNewItems() {
+            return newItems;
         }
     }
 }
@@ -0,0 +1,64 @@
+package com.readrops.app.repositories
+
+import com.readrops.db.entities.SyncRun
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Measures of one account sync, journaled as a [SyncRun] when the sync ends.
+ * Sync sinks can update it from several threads.
+ */
+class SyncTelemetry(private val accountId: Int) {
+
+    val startTime = System.currentTimeMillis()
+
+    private val phaseDurations = ConcurrentHashMap<SyncPhase, AtomicLong>()
+
+    val bytesReceived = AtomicLong()
+    val itemsInserted = AtomicInteger()
+    val itemsUpdated = AtomicInteger()
+    val feedsSkipped = AtomicInteger()
+    val feedsFailed = AtomicInteger()
+
+    /**
+     * Durations of a phase measured several times are added
+     */
+    fun addPhaseDuration(phase: SyncPhase, duration: Long) {
+        phaseDurations.getOrPut(phase) { AtomicLong() }.addAndGet(duration)
+    }
+
+    fun getPhaseDuration(phase: SyncPhase): Long = phaseDurations[phase]?.get() ?: 0
+
+    fun toSyncRun(endTime: Long, error: String?) = SyncRun(
+            accountId = accountId,
+            startTime = startTime,
+            endTime = endTime,
+            error = error,
+            pushDuration = getPhaseDuration(SyncPhase.PUSH),
+            fetchDuration = getPhaseDuration(SyncPhase.FETCH),
+            parseDuration = getPhaseDuration(SyncPhase.PARSE),
+            reconcileDuration = getPhaseDuration(SyncPhase.RECONCILE),
+            insertDuration = getPhaseDuration(SyncPhase.INSERT),
+            bytesReceived = bytesReceived.get(),
+            itemsInserted = itemsInserted.get(),
+            itemsUpdated = itemsUpdated.get(),
+            feedsSkipped = feedsSkipped.get(),
+            feedsFailed = feedsFailed.get(),
+    )
+}
+
+enum class SyncPhase {
+    // local changes sent to the server
+    PUSH,
+    // requests until their response is received, parsing included when a response is streamed to the parser
+    FETCH,
+    // response bodies read and parsed, measured apart from FETCH by local syncs only
+    PARSE,
+    // items states pulled to rebuild the local states
+    RECONCILE,
+    // time spent in database transactions
+    INSERT,
+    // notification built at the end of a background sync, set afterwards
+    NOTIFY
+}
@@ -0,0 +1,36 @@
+package com.readrops.app.retention
+
+import com.readrops.app.utils.SharedPreferencesManager
+import com.readrops.db.Database
+import com.readrops.db.entities.Feed
+import org.joda.time.LocalDateTime
+
+/**
+ * Global and per-feed retention policies, shared by the purge and the local syncs
+ * so items the purge deleted are not inserted again while still in the feed.
+ * Feed values override the global ones, 0 meaning no limit.
+ */
+class RetentionPolicy @JvmOverloads constructor(
+        private val database: Database,
+        private val globalMaxAge: Int = SharedPreferencesManager.readString(SharedPreferencesManager.SharedPrefKey.RETENTION_MAX_AGE).toInt(),
+        private val globalMaxCount: Int = SharedPreferencesManager.readString(SharedPreferencesManager.SharedPrefKey.RETENTION_MAX_COUNT).toInt(),
+) {
+
+    /**
+     * Compute the date before which items can be deleted, the most restrictive of the age and count policies.
+     *
+     * @return the cutoff date, or null if nothing has to be deleted for this feed
+     */
+    fun getMaxDate(feed: Feed): LocalDateTime? {
+        val maxAge = feed.retentionMaxAge ?: globalMaxAge
+        val maxCount = feed.retentionMaxCount ?: globalMaxCount
+
+        val ageDate = if (maxAge > 0) LocalDateTime.now().minusDays(maxAge) else null
+        val countDate = if (maxCount > 0) database.itemDao().selectPubDateAtPosition(feed.id, maxCount - 1) else null
+
+        return when {
+            ageDate != null && countDate != null -> if (ageDate.isAfter(countDate)) ageDate else countDate
+            else -> ageDate ?: countDate
+        }
+    }
+}
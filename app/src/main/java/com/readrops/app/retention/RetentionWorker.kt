@@ -0,0 +1,87 @@
+package com.readrops.app.retention
+
+import android.content.Context
+import android.util.Log
+import androidx.work.Worker
+import androidx.work.WorkerParameters
+import androidx.work.workDataOf
+import com.readrops.db.Database
+import com.readrops.db.entities.Feed
+import org.joda.time.LocalDateTime
+import org.koin.core.component.KoinComponent
+import org.koin.core.component.get
+
+/**
+ * Delete old items according to the global and per-feed retention policies.
+ * Items are deleted by small batches, each batch being its own transaction,
+ * so the database write lock is never held for a long time.
+ */
+class RetentionWorker(context: Context, parameters: WorkerParameters) : Worker(context, parameters), KoinComponent {
+
+    private val database = get<Database>()
+
+    override fun doWork(): Result {
+        return try {
+            val retentionPolicy = RetentionPolicy(database)
+
+            val usedBytesBefore = getUsedBytes()
+            var deletedItems = 0
+
+            for (account in database.accountDao().selectAll()) {
+                for (feed in database.feedDao().getFeeds(account.id)) {
+                    if (isStopped) return Result.retry()
+
+                    val maxDate = retentionPolicy.getMaxDate(feed) ?: continue
+                    deletedItems += purgeFeed(feed, maxDate)
+                }
+
+                // ItemState rows mirror the server states and are replaced on each reconciliation,
+                // the states of purged items the server still reports must be kept
+                database.itemStateChangesDao().deleteOrphanStateChanges(account.id)
+            }
+
+            val reclaimedBytes = (usedBytesBefore - getUsedBytes()).coerceAtLeast(0)
+            Log.d(TAG, "$deletedItems items deleted, $reclaimedBytes bytes reclaimed")
+
+            Result.success(workDataOf(DELETED_ITEMS to deletedItems, RECLAIMED_BYTES to reclaimedBytes))
+        } catch (e: Exception) {
+            Log.e(TAG, e.message, e)
+            Result.failure()
+        }
+    }
+
+    private fun purgeFeed(feed: Feed, maxDate: LocalDateTime): Int {
+        var deletedItems = 0
+
+        while (!isStopped) {
+            val ids = database.itemDao().selectPurgeableItems(feed.id, feed.accountId, maxDate, BATCH_SIZE)
+            if (ids.isEmpty()) break
+
+            deletedItems += database.itemDao().deleteByIds(ids)
+        }
+
+        return deletedItems
+    }
+
+    /**
+     * Database size without free pages, which works whether auto vacuum is enabled or not
+     */
+    private fun getUsedBytes(): Long {
+        val sqliteDatabase = database.openHelper.writableDatabase
+
+        fun pragma(name: String): Long = sqliteDatabase.query("PRAGMA $name").use {
+            if (it.moveToFirst()) it.getLong(0) else 0
+        }
+
+        return (pragma("page_count") - pragma("freelist_count")) * pragma("page_size")
+    }
+
+    companion object {
+        val TAG: String = RetentionWorker::class.java.simpleName
+
+        const val DELETED_ITEMS = "deletedItems"
+        const val RECLAIMED_BYTES = "reclaimedBytes"
+
+        private const val BATCH_SIZE = 200
+    }
+}
@@ -0,0 +1,77 @@
+package com.readrops.app.syncruns
+
+import android.content.Intent
+import android.os.Bundle
+import android.view.Menu
+import android.view.MenuItem
+import androidx.appcompat.app.AppCompatActivity
+import androidx.lifecycle.Observer
+import androidx.recyclerview.widget.DividerItemDecoration
+import androidx.recyclerview.widget.LinearLayoutManager
+import com.readrops.api.utils.NetworkMetrics
+import com.readrops.app.R
+import com.readrops.app.databinding.ActivitySyncRunsBinding
+import com.readrops.app.utils.Utils
+import io.reactivex.Single
+import io.reactivex.android.schedulers.AndroidSchedulers
+import io.reactivex.schedulers.Schedulers
+import org.koin.android.ext.android.get
+import org.koin.androidx.viewmodel.ext.android.getViewModel
+
+/**
+ * Debug screen listing the latest journaled syncs of all accounts, with their phases durations and counters.
+ * The per host network metrics can be shared from its menu.
+ */
+class SyncRunsActivity : AppCompatActivity() {
+
+    private lateinit var binding: ActivitySyncRunsBinding
+
+    override fun onCreate(savedInstanceState: Bundle?) {
+        super.onCreate(savedInstanceState)
+        binding = ActivitySyncRunsBinding.inflate(layoutInflater)
+        setContentView(binding.root)
+
+        setTitle(R.string.sync_runs)
+        supportActionBar?.setDisplayHomeAsUpEnabled(true)
+
+        val adapter = SyncRunsListAdapter()
+        binding.syncRunsList.layoutManager = LinearLayoutManager(this)
+        binding.syncRunsList.addItemDecoration(DividerItemDecoration(this, DividerItemDecoration.VERTICAL))
+        binding.syncRunsList.adapter = adapter
+
+        getViewModel<SyncRunsViewModel>().getSyncRuns().observe(this, Observer { syncRuns ->
+            adapter.submitList(syncRuns)
+        })
+    }
+
+    /**
+     * Network metrics per host, to be attached to bug reports
+     */
+    private fun shareNetworkMetrics() {
+        Single.fromCallable { get<NetworkMetrics>().dump() }
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe({ dump ->
+                    val intent = Intent(Intent.ACTION_SEND).apply {
+                        type = "text/plain"
+                        putExtra(Intent.EXTRA_TEXT, dump)
+                    }
+
+                    startActivity(Intent.createChooser(intent, getString(R.string.share_network_metrics)))
+                }, { Utils.showSnackbar(binding.root, it.message) })
+    }
+
+    override fun onCreateOptionsMenu(menu: Menu?): Boolean {
+        menuInflater.inflate(R.menu.sync_runs_menu, menu)
+        return true
+    }
+
+    override fun onOptionsItemSelected(item: MenuItem): Boolean {
+        when (item.itemId) {
+            android.R.id.home -> finish()
+            R.id.share_network_metrics -> shareNetworkMetrics()
+        }
+
+        return super.onOptionsItemSelected(item)
+    }
+}
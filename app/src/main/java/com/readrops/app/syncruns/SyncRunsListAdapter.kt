@@ -0,0 +1,59 @@
+package com.readrops.app.syncruns
+
+import android.text.format.DateUtils
+import android.text.format.Formatter
+import android.view.LayoutInflater
+import android.view.ViewGroup
+import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.ListAdapter
+import androidx.recyclerview.widget.RecyclerView
+import com.readrops.app.R
+import com.readrops.app.databinding.SyncRunLayoutBinding
+import com.readrops.db.pojo.SyncRunWithAccount
+
+class SyncRunsListAdapter : ListAdapter<SyncRunWithAccount, SyncRunsListAdapter.SyncRunViewHolder>(DIFF_CALLBACK) {
+
+    override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): SyncRunViewHolder {
+        val binding = SyncRunLayoutBinding.inflate(LayoutInflater.from(parent.context), parent, false)
+
+        return SyncRunViewHolder(binding)
+    }
+
+    override fun onBindViewHolder(holder: SyncRunViewHolder, position: Int) {
+        val syncRunWithAccount = getItem(position)
+        val syncRun = syncRunWithAccount.syncRun
+        val context = holder.itemView.context
+
+        with(holder.binding) {
+            syncRunTitle.text = context.getString(R.string.sync_run_title, syncRunWithAccount.accountName.orEmpty(),
+                    DateUtils.formatDateTime(context, syncRun.startTime, DateUtils.FORMAT_SHOW_DATE or DateUtils.FORMAT_SHOW_TIME))
+
+            syncRunSummary.text = if (syncRun.isSuccessful) {
+                context.getString(R.string.sync_run_summary, syncRun.duration,
+                        Formatter.formatShortFileSize(context, syncRun.bytesReceived))
+            } else {
+                context.getString(R.string.sync_run_failed, syncRun.duration, syncRun.error)
+            }
+
+            syncRunPhases.text = context.getString(R.string.sync_run_phases, syncRun.pushDuration, syncRun.fetchDuration,
+                    syncRun.parseDuration, syncRun.reconcileDuration, syncRun.insertDuration, syncRun.notifyDuration)
+
+            syncRunCounts.text = context.getString(R.string.sync_run_counts, syncRun.itemsInserted, syncRun.itemsUpdated,
+                    syncRun.feedsSkipped, syncRun.feedsFailed)
+        }
+    }
+
+    inner class SyncRunViewHolder(val binding: SyncRunLayoutBinding) : RecyclerView.ViewHolder(binding.root)
+
+    companion object {
+        val DIFF_CALLBACK = object : DiffUtil.ItemCallback<SyncRunWithAccount>() {
+            override fun areItemsTheSame(oldItem: SyncRunWithAccount, newItem: SyncRunWithAccount): Boolean {
+                return oldItem.syncRun.id == newItem.syncRun.id
+            }
+
+            override fun areContentsTheSame(oldItem: SyncRunWithAccount, newItem: SyncRunWithAccount): Boolean {
+                return oldItem == newItem
+            }
+        }
+    }
+}
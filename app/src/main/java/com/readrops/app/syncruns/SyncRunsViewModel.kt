@@ -0,0 +1,15 @@
+package com.readrops.app.syncruns
+
+import androidx.lifecycle.LiveData
+import androidx.lifecycle.ViewModel
+import com.readrops.db.Database
+import com.readrops.db.pojo.SyncRunWithAccount
+
+class SyncRunsViewModel(val database: Database) : ViewModel() {
+
+    fun getSyncRuns(): LiveData<List<SyncRunWithAccount>> = database.syncRunDao().selectLatestRuns(MAX_DISPLAYED_RUNS)
+
+    companion object {
+        private const val MAX_DISPLAYED_RUNS = 200
+    }
+}
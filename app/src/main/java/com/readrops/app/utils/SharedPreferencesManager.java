@@ -59,7 +59,9 @@ public final class SharedPreferencesManager {
         DARK_THEME("dark_theme", "false"),
         AUTO_SYNCHRO("auto_synchro", "0"),
         HIDE_FEEDS("hide_feeds", false),
-        MARK_ITEMS_READ_ON_SCROLL("mark_items_read", false);
+        MARK_ITEMS_READ_ON_SCROLL("mark_items_read", false),
+        RETENTION_MAX_AGE("retention_max_age", "0"),
+        RETENTION_MAX_COUNT("retention_max_count", "0");
 
         @NonNull
         private String key;
@@ -8,6 +8,7 @@ import com.readrops.app.R
 import com.readrops.app.ReadropsApp
 import com.readrops.app.utils.ReadropsKeys.FEEDS
 import com.readrops.db.Database
+import com.readrops.db.IngestionWriter
 import com.readrops.db.entities.Feed
 import org.koin.core.component.KoinComponent
 import org.koin.core.component.get
@@ -33,11 +34,18 @@ class FeedsColorsIntentService : IntentService("FeedsColorsIntentService"), Koin
             notificationManager.notify(NOTIFICATION_ID, notificationBuilder.build())
             setFeedColors(it)
 
-            database.feedDao().updateColors(it.id, it.textColor, it.backgroundColor)
             notificationBuilder.setProgress(feeds.size, ++feedsNb, false)
             notificationManager.notify(NOTIFICATION_ID, notificationBuilder.build())
         }
 
+        // the session, which defers the lists invalidations, is only open while writing
+        val session = get<IngestionWriter>().openSession()
+        try {
+            feeds.forEach { session.submit { database.feedDao().updateColors(it.id, it.textColor, it.backgroundColor) } }
+        } finally {
+            session.close()
+        }
+
         stopForeground(true)
     }
 
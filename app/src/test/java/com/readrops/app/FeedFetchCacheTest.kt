@@ -0,0 +1,123 @@
+package com.readrops.app
+
+import com.readrops.app.repositories.FeedFetchCache
+import com.readrops.db.entities.Feed
+import com.readrops.db.entities.Item
+import junit.framework.TestCase.*
+import okhttp3.Headers
+import org.junit.Test
+import java.io.IOException
+import java.util.concurrent.Callable
+
+class FeedFetchCacheTest {
+
+    private val noHeaders = Headers.Builder().build()
+
+    @Test
+    fun sameUrlFetchedOnceTest() {
+        val cache = FeedFetchCache()
+        cache.addSubscribers(listOf("https://example.com/feed.xml", "https://example.com/feed.xml"))
+        var fetches = 0
+        val fetch = Callable {
+            fetches++
+            FeedFetchCache.FetchResult(Pair(Feed(name = "feed"), listOf(Item(guid = "guid"))))
+        }
+
+        val first = cache.fetch("https://example.com/feed.xml", noHeaders, fetch)
+        val second = cache.fetch("HTTPS://Example.com:443/feed.xml#items", noHeaders, fetch)
+
+        assertEquals(1, fetches)
+        assertEquals(1, cache.hits.get())
+        assertEquals("guid", second.pair!!.second.first().guid)
+
+        // each subscriber gets its own items
+        first.pair!!.second.first().feedId = 1
+        assertEquals(0, second.pair!!.second.first().feedId)
+    }
+
+    @Test
+    fun notModifiedReusedWithSameHeadersTest() {
+        val cache = FeedFetchCache()
+        cache.addSubscribers(List(3) { "https://example.com/feed.xml" })
+        val etagHeaders = Headers.Builder().add("If-None-Match", "etag").build()
+        var fetches = 0
+
+        val notModified = Callable {
+            fetches++
+            FeedFetchCache.FetchResult(null, "https://example.com/moved.xml")
+        }
+
+        assertNull(cache.fetch("https://example.com/feed.xml", etagHeaders, notModified).pair)
+        val result = cache.fetch("https://example.com/feed.xml", etagHeaders, notModified)
+
+        assertEquals(1, fetches)
+        assertNull(result.pair)
+        assertEquals("https://example.com/moved.xml", result.permanentRedirectUrl)
+
+        // a subscriber without the etag must get the full feed
+        val fullResult = cache.fetch("https://example.com/feed.xml", noHeaders) {
+            fetches++
+            FeedFetchCache.FetchResult(Pair(Feed(), listOf(Item())))
+        }
+
+        assertEquals(2, fetches)
+        assertEquals(1, fullResult.pair!!.second.size)
+    }
+
+    @Test
+    fun errorReusedTest() {
+        val cache = FeedFetchCache()
+        cache.addSubscribers(List(2) { "https://example.com/feed.xml" })
+        var fetches = 0
+        val fetch = Callable<FeedFetchCache.FetchResult> {
+            fetches++
+            throw IOException("timeout")
+        }
+
+        repeat(2) {
+            try {
+                cache.fetch("https://example.com/feed.xml", noHeaders, fetch)
+                fail()
+            } catch (e: IOException) {
+                assertEquals("timeout", e.message)
+            }
+        }
+
+        assertEquals(1, fetches)
+    }
+
+    @Test
+    fun resultReleasedAfterLastSubscriberTest() {
+        val cache = FeedFetchCache()
+        cache.addSubscribers(listOf("https://example.com/feed.xml", "https://example.com/feed.xml#items",
+                "https://example.com/other.xml"))
+        var fetches = 0
+        val fetch = Callable {
+            fetches++
+            FeedFetchCache.FetchResult(Pair(Feed(), listOf(Item())))
+        }
+
+        // single subscriber, nothing kept
+        cache.fetch("https://example.com/other.xml", noHeaders, fetch)
+        cache.fetch("https://example.com/other.xml", noHeaders, fetch)
+        assertEquals(2, fetches)
+        assertEquals(0, cache.hits.get())
+
+        cache.fetch("https://example.com/feed.xml", noHeaders, fetch)
+        cache.fetch("https://example.com/feed.xml", noHeaders, fetch)
+        assertEquals(3, fetches)
+        assertEquals(1, cache.hits.get())
+
+        // both subscribers were served, the result was dropped
+        cache.fetch("https://example.com/feed.xml", noHeaders, fetch)
+        assertEquals(4, fetches)
+        assertEquals(1, cache.hits.get())
+    }
+
+    @Test
+    fun normalizeUrlTest() {
+        assertEquals("https://example.com/feed.xml?a=1",
+                FeedFetchCache.normalizeUrl(" HTTPS://EXAMPLE.com:443/feed.xml?a=1#top "))
+        assertEquals("not an url", FeedFetchCache.normalizeUrl("not an url"))
+    }
+}
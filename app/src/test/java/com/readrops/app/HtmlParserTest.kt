@@ -1,6 +1,5 @@
 package com.readrops.app
 
-import com.readrops.api.utils.AuthInterceptor
 import com.readrops.app.utils.HtmlParser
 import junit.framework.TestCase
 import okhttp3.OkHttpClient
@@ -15,8 +14,7 @@ class HtmlParserTest : KoinTest {
     @get:Rule
     val koinTestRule = KoinTestRule.create {
         modules(module {
-            single { OkHttpClient.Builder().addInterceptor(get<AuthInterceptor>()).build() }
-            single { AuthInterceptor() }
+            single { OkHttpClient.Builder().build() }
         })
     }
 
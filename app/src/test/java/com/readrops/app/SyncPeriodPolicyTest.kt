@@ -0,0 +1,167 @@
+package com.readrops.app
+
+import android.content.SharedPreferences
+import com.readrops.app.notifications.sync.SyncPeriodPolicy
+import junit.framework.TestCase.assertEquals
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+
+class SyncPeriodPolicyTest {
+
+    private val preferences = InMemorySharedPreferences()
+    private val policy = SyncPeriodPolicy(preferences)
+
+    private val basePeriod = TimeUnit.HOURS.toMillis(6)
+    private val now = TimeUnit.DAYS.toMillis(100)
+
+    private fun hours(hours: Long) = TimeUnit.HOURS.toMillis(hours)
+
+    private fun days(days: Long) = TimeUnit.DAYS.toMillis(days)
+
+    @Test
+    fun basePeriodTest() {
+        assertEquals(basePeriod, policy.accountPeriod(basePeriod, listOf(), now))
+        assertEquals(basePeriod, policy.accountPeriod(basePeriod, listOf(5, 10), now))
+    }
+
+    @Test
+    fun newItemsTest() {
+        // quiet account
+        assertEquals(basePeriod * 2, policy.accountPeriod(basePeriod, listOf(0, 0, 0), now))
+        // busy account
+        assertEquals(basePeriod / 2, policy.accountPeriod(basePeriod, listOf(15, 30), now))
+    }
+
+    @Test
+    fun appNotOpenedTest() {
+        policy.onAppOpened(now - days(2))
+        assertEquals(basePeriod * 2, policy.accountPeriod(basePeriod, listOf(), now))
+
+        preferences.edit().clear().apply()
+        policy.onAppOpened(now - days(4))
+        assertEquals(basePeriod * 4, policy.accountPeriod(basePeriod, listOf(), now))
+
+        // a quiet account in an unused app stays bounded
+        assertEquals(basePeriod * 4, policy.accountPeriod(basePeriod, listOf(0), now))
+    }
+
+    @Test
+    fun appOftenOpenedTest() {
+        policy.onAppOpened(now - hours(3))
+        policy.onAppOpened(now - hours(1))
+
+        // opened every two hours, more often than the base period
+        assertEquals(basePeriod / 2, policy.accountPeriod(basePeriod, listOf(), now))
+        // a busy account doesn't go under half the base period
+        assertEquals(basePeriod / 2, policy.accountPeriod(basePeriod, listOf(50), now))
+        // opened less often than a one hour base period
+        assertEquals(hours(1), policy.accountPeriod(hours(1), listOf(), now))
+    }
+
+    @Test
+    fun onAppOpenedTest() {
+        policy.onAppOpened(now)
+        assertEquals(now, preferences.getLong(SyncPeriodPolicy.LAST_APP_OPEN_KEY, 0))
+        assertEquals(0L, preferences.getLong(SyncPeriodPolicy.APP_OPEN_INTERVAL_KEY, 0))
+
+        // same usage session
+        policy.onAppOpened(now + TimeUnit.MINUTES.toMillis(2))
+        assertEquals(now, preferences.getLong(SyncPeriodPolicy.LAST_APP_OPEN_KEY, 0))
+        assertEquals(0L, preferences.getLong(SyncPeriodPolicy.APP_OPEN_INTERVAL_KEY, 0))
+
+        policy.onAppOpened(now + hours(1))
+        assertEquals(now + hours(1), preferences.getLong(SyncPeriodPolicy.LAST_APP_OPEN_KEY, 0))
+        assertEquals(hours(1), preferences.getLong(SyncPeriodPolicy.APP_OPEN_INTERVAL_KEY, 0))
+
+        // moving average
+        policy.onAppOpened(now + hours(4))
+        assertEquals((hours(1) * 0.7 + hours(3) * 0.3).toLong(), preferences.getLong(SyncPeriodPolicy.APP_OPEN_INTERVAL_KEY, 0))
+    }
+
+    private class InMemorySharedPreferences : SharedPreferences {
+
+        private val values = mutableMapOf<String, Any?>()
+
+        override fun getAll(): Map<String, *> = values.toMap()
+
+        override fun getString(key: String, defValue: String?) = values[key] as String? ?: defValue
+
+        @Suppress("UNCHECKED_CAST")
+        override fun getStringSet(key: String, defValues: Set<String>?) = values[key] as Set<String>? ?: defValues
+
+        override fun getInt(key: String, defValue: Int) = values[key] as Int? ?: defValue
+
+        override fun getLong(key: String, defValue: Long) = values[key] as Long? ?: defValue
+
+        override fun getFloat(key: String, defValue: Float) = values[key] as Float? ?: defValue
+
+        override fun getBoolean(key: String, defValue: Boolean) = values[key] as Boolean? ?: defValue
+
+        override fun contains(key: String) = key in values
+
+        override fun edit(): SharedPreferences.Editor = Editor()
+
+        override fun registerOnSharedPreferenceChangeListener(listener: SharedPreferences.OnSharedPreferenceChangeListener) = Unit
+
+        override fun unregisterOnSharedPreferenceChangeListener(listener: SharedPreferences.OnSharedPreferenceChangeListener) = Unit
+
+        private inner class Editor : SharedPreferences.Editor {
+
+            private val changes = mutableMapOf<String, Any?>()
+            private val removals = mutableSetOf<String>()
+            private var clear = false
+
+            override fun putString(key: String, value: String?): SharedPreferences.Editor {
+                changes[key] = value
+                return this
+            }
+
+            override fun putStringSet(key: String, values: Set<String>?): SharedPreferences.Editor {
+                changes[key] = values
+                return this
+            }
+
+            override fun putInt(key: String, value: Int): SharedPreferences.Editor {
+                changes[key] = value
+                return this
+            }
+
+            override fun putLong(key: String, value: Long): SharedPreferences.Editor {
+                changes[key] = value
+                return this
+            }
+
+            override fun putFloat(key: String, value: Float): SharedPreferences.Editor {
+                changes[key] = value
+                return this
+            }
+
+            override fun putBoolean(key: String, value: Boolean): SharedPreferences.Editor {
+                changes[key] = value
+                return this
+            }
+
+            override fun remove(key: String): SharedPreferences.Editor {
+                removals += key
+                return this
+            }
+
+            override fun clear(): SharedPreferences.Editor {
+                clear = true
+                return this
+            }
+
+            override fun commit(): Boolean {
+                if (clear) values.clear()
+                removals.forEach { values.remove(it) }
+                values.putAll(changes)
+
+                return true
+            }
+
+            override fun apply() {
+                commit()
+            }
+        }
+    }
+}
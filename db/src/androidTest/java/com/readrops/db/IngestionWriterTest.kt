@@ -0,0 +1,166 @@
+package com.readrops.db
+
+import android.content.Context
+import androidx.paging.PositionalDataSource
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.readrops.db.entities.account.Account
+import junit.framework.TestCase.*
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.concurrent.Callable
+
+@RunWith(AndroidJUnit4::class)
+class IngestionWriterTest {
+
+    private lateinit var database: Database
+    private lateinit var invalidationGate: InvalidationGate
+    private lateinit var writer: IngestionWriter
+
+    @Before
+    fun createDb() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        database = Room.inMemoryDatabaseBuilder(context, Database::class.java).build()
+        invalidationGate = InvalidationGate()
+        writer = IngestionWriter(database, invalidationGate)
+    }
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    private fun insertAccount(name: String) = Runnable {
+        database.accountDao().compatInsert(Account(accountName = name))
+    }
+
+    private fun accountCount() = database.accountDao().selectAll().size
+
+    @Test
+    fun batchCommitTest() {
+        val session = writer.openSession(3, 60_000)
+
+        repeat(3) { session.submit(insertAccount("account $it")) }
+        // waits for the full batch to be committed
+        session.submit(insertAccount("account 3"), 1)
+        session.flush()
+
+        val stats = session.close()
+
+        assertEquals(4, accountCount())
+        assertEquals(2, stats.commitCount)
+        assertEquals(4, stats.operationCount)
+    }
+
+    @Test
+    fun delayCommitTest() {
+        val session = writer.openSession(100, 50)
+
+        session.submit(insertAccount("account"))
+        Thread.sleep(1000)
+
+        // committed without flushing
+        assertEquals(1, accountCount())
+        assertEquals(1, session.close().commitCount)
+    }
+
+    @Test
+    fun executeAfterSubmittedOperationsTest() {
+        val session = writer.openSession(100, 60_000)
+
+        session.submit(insertAccount("account 1"))
+        session.submit(insertAccount("account 2"))
+
+        val count = session.execute(Callable { accountCount() })
+        val stats = session.close()
+
+        assertEquals(2, count)
+        // the pending operations, then the executed one
+        assertEquals(2, stats.commitCount)
+        assertEquals(3, stats.operationCount)
+    }
+
+    @Test
+    fun errorPropagationTest() {
+        val session = writer.openSession(100, 60_000)
+
+        session.submit(insertAccount("account 1"))
+        session.submit(Runnable { throw IllegalStateException("write error") })
+
+        try {
+            session.close()
+            fail()
+        } catch (e: IllegalStateException) {
+            assertEquals("write error", e.message)
+        }
+
+        // the whole batch is rolled back
+        assertEquals(0, accountCount())
+
+        try {
+            session.submit(insertAccount("account 2"))
+            fail()
+        } catch (e: IllegalStateException) {
+            assertEquals("Session is closed", e.message)
+        }
+    }
+
+    @Test
+    fun gateReopenedOnCloseTest() {
+        val session = writer.openSession()
+        val dataSource = TestDataSource()
+
+        invalidationGate.invalidate(dataSource)
+        assertFalse(dataSource.isInvalid)
+
+        session.submit(insertAccount("account"))
+        session.close()
+
+        assertTrue(dataSource.isInvalid)
+    }
+
+    @Test
+    fun gateReopenedAfterErrorTest() {
+        val session = writer.openSession()
+        val dataSource = TestDataSource()
+
+        session.submit(Runnable { throw IllegalStateException("write error") })
+        invalidationGate.invalidate(dataSource)
+
+        try {
+            session.close()
+        } catch (e: IllegalStateException) {
+            // expected
+        }
+
+        assertTrue(dataSource.isInvalid)
+    }
+
+    @Test
+    fun nestedSessionsTest() {
+        val session1 = writer.openSession()
+        val session2 = writer.openSession()
+        val dataSource = TestDataSource()
+
+        invalidationGate.invalidate(dataSource)
+        session1.close()
+        assertFalse(dataSource.isInvalid)
+
+        session2.close()
+        assertTrue(dataSource.isInvalid)
+    }
+
+    private class TestDataSource : PositionalDataSource<Int>() {
+
+        override fun loadInitial(params: LoadInitialParams, callback: LoadInitialCallback<Int>) {
+            callback.onResult(emptyList(), 0, 0)
+        }
+
+        override fun loadRange(params: LoadRangeParams, callback: LoadRangeCallback<Int>) {
+            callback.onResult(emptyList())
+        }
+    }
+}
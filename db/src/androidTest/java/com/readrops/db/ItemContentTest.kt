@@ -0,0 +1,74 @@
+package com.readrops.db
+
+import android.content.Context
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.readrops.db.entities.Feed
+import com.readrops.db.entities.Item
+import com.readrops.db.entities.account.Account
+import com.readrops.db.entities.account.AccountType
+import junit.framework.TestCase.*
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+class ItemContentTest {
+
+    private lateinit var database: Database
+
+    private var feedId = 0
+
+    @Before
+    fun createDb() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        database = Room.inMemoryDatabaseBuilder(context, Database::class.java).build()
+
+        val accountId = database.accountDao().compatInsert(Account(accountName = "account", accountType = AccountType.LOCAL)).toInt()
+        feedId = database.feedDao().compatInsert(Feed(name = "feed", accountId = accountId)).toInt()
+    }
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    @Test
+    fun loadContentTest() {
+        val items = listOf(
+                Item(title = "item 1", description = "<p>description</p>", content = "<p>content</p>", feedId = feedId),
+                Item(title = "item 2", description = "<p>description only</p>", feedId = feedId),
+                Item(title = "item 3", feedId = feedId),
+        )
+
+        val ids = database.itemDao().insertWithContent(items)
+
+        // the bodies are not item columns
+        val item = database.itemDao().select(ids[0].toInt())
+        assertNull(item.description)
+        assertNull(item.content)
+
+        database.itemDao().selectContent(item.id)!!.applyTo(item)
+        assertEquals("<p>description</p>", item.description)
+        assertEquals("<p>content</p>", item.content)
+        assertEquals("<p>content</p>", item.text)
+
+        val descriptionItem = database.itemDao().select(ids[1].toInt())
+        database.itemDao().selectContent(descriptionItem.id)!!.applyTo(descriptionItem)
+        assertNull(descriptionItem.content)
+        assertEquals("<p>description only</p>", descriptionItem.text)
+
+        assertNull(database.itemDao().selectContent(ids[2].toInt()))
+    }
+
+    @Test
+    fun contentDeletedWithItemTest() {
+        val id = database.itemDao().insertWithContent(listOf(Item(content = "<p>content</p>", feedId = feedId))).first().toInt()
+
+        database.itemDao().deleteByIds(listOf(id))
+
+        assertNull(database.itemDao().selectContent(id))
+    }
+}
@@ -0,0 +1,101 @@
+package com.readrops.db
+
+import android.content.Context
+import androidx.room.Room
+import androidx.sqlite.db.SimpleSQLiteQuery
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.readrops.db.entities.Feed
+import com.readrops.db.entities.Item
+import com.readrops.db.entities.ItemState
+import com.readrops.db.entities.ItemStateChange
+import com.readrops.db.entities.account.Account
+import com.readrops.db.entities.account.AccountType
+import junit.framework.TestCase.*
+import org.joda.time.LocalDateTime
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+class ItemRetentionTest {
+
+    private lateinit var database: Database
+
+    private val now = LocalDateTime.now()
+    private var accountId = 0
+    private var feedId = 0
+
+    @Before
+    fun createDb() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        database = Room.inMemoryDatabaseBuilder(context, Database::class.java).build()
+
+        accountId = database.accountDao().compatInsert(Account(accountName = "account", accountType = AccountType.FRESHRSS)).toInt()
+        feedId = database.feedDao().compatInsert(Feed(name = "feed", accountId = accountId)).toInt()
+    }
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    private fun insertItems(count: Int, daysAgo: Int, init: Item.(Int) -> Unit = {}): List<Int> {
+        val items = (0 until count).map { index ->
+            Item(guid = "guid-$daysAgo-$index", remoteId = "remote-$daysAgo-$index", feedId = feedId,
+                    pubDate = now.minusDays(daysAgo).minusMinutes(index)).apply { init(index) }
+        }
+
+        return database.itemDao().insert(items).map { it.toInt() }
+    }
+
+    @Test
+    fun purgeByBatchesTest() {
+        insertItems(5, daysAgo = 10)
+        val recentIds = insertItems(2, daysAgo = 1)
+
+        val maxDate = now.minusDays(5)
+        val batch = database.itemDao().selectPurgeableItems(feedId, accountId, maxDate, 2)
+        assertEquals(2, batch.size)
+
+        var deletedItems = 0
+        while (true) {
+            val ids = database.itemDao().selectPurgeableItems(feedId, accountId, maxDate, 2)
+            if (ids.isEmpty()) break
+
+            deletedItems += database.itemDao().deleteByIds(ids)
+        }
+
+        assertEquals(5, deletedItems)
+        assertEquals(recentIds.size, database.itemDao().countItems(
+                SimpleSQLiteQuery("Select count(*) From Item")))
+    }
+
+    @Test
+    fun keptItemsTest() {
+        val ids = insertItems(5, daysAgo = 10) { index ->
+            when (index) {
+                0 -> isStarred = true
+                1 -> isReadItLater = true
+            }
+        }
+
+        database.itemStateChangesDao().insertItemStateChange(ItemStateChange(id = ids[2], readChange = true, accountId = accountId))
+        database.itemStateDao().insertItemState(ItemState(read = true, starred = true, remoteId = "remote-10-3", accountId = accountId))
+
+        val purgeableIds = database.itemDao().selectPurgeableItems(feedId, accountId, now.minusDays(5), 200)
+
+        assertEquals(listOf(ids[4]), purgeableIds)
+    }
+
+    @Test
+    fun pubDateAtPositionTest() {
+        insertItems(3, daysAgo = 1)
+        insertItems(3, daysAgo = 2)
+
+        assertEquals(now.minusDays(1), database.itemDao().selectPubDateAtPosition(feedId, 0))
+        assertEquals(now.minusDays(2), database.itemDao().selectPubDateAtPosition(feedId, 3))
+        assertNull(database.itemDao().selectPubDateAtPosition(feedId, 6))
+    }
+}
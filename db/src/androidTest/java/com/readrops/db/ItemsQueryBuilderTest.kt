@@ -2,12 +2,19 @@ package com.readrops.db
 
 import android.content.Context
 import androidx.room.Room
+import androidx.sqlite.db.SimpleSQLiteQuery
 import androidx.test.core.app.ApplicationProvider
 import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.readrops.db.entities.Feed
+import com.readrops.db.entities.Item
+import com.readrops.db.entities.ItemState
+import com.readrops.db.entities.account.Account
+import com.readrops.db.entities.account.AccountType
 import com.readrops.db.filters.FilterType
 import com.readrops.db.filters.ListSortType
 import com.readrops.db.queries.ItemsQueryBuilder
 import com.readrops.db.queries.QueryFilters
+import junit.framework.TestCase.assertEquals
 import junit.framework.TestCase.assertFalse
 import junit.framework.TestCase.assertTrue
 import org.junit.After
@@ -130,4 +137,153 @@ class ItemsQueryBuilderTest {
         val queryFilters = QueryFilters(accountId = 1, filterType = FilterType.FEED_FILTER)
         ItemsQueryBuilder.buildItemsQuery(queryFilters)
     }
-}
\ No newline at end of file
+
+    /**
+     * Insert an account with a feed of 4 items: read, unread, unread and read it later, unread and starred
+     *
+     * @return the account id and the items ids
+     */
+    private fun insertItems(accountType: AccountType): Pair<Int, List<Int>> {
+        val accountId = database.accountDao().compatInsert(Account(accountName = "account", accountType = accountType)).toInt()
+        val feedId = database.feedDao().compatInsert(Feed(name = "feed", accountId = accountId)).toInt()
+
+        val ids = database.itemDao().insert(listOf(
+                Item(remoteId = "1", feedId = feedId, isRead = true),
+                Item(remoteId = "2", feedId = feedId),
+                Item(remoteId = "3", feedId = feedId, isReadItLater = true),
+                Item(remoteId = "4", feedId = feedId, isStarred = true),
+        )).map { it.toInt() }
+
+        return Pair(accountId, ids)
+    }
+
+    private fun selectIds(sql: String): List<Int> = database.query(SimpleSQLiteQuery(sql)).use { cursor ->
+        generateSequence { if (cursor.moveToNext()) cursor.getInt(0) else null }.toList()
+    }
+
+    private fun readStates(ids: List<Int>) = ids.map { database.itemDao().select(it).isRead }
+
+    @Test
+    fun itemIdsQueryTest() {
+        val (accountId, ids) = insertItems(AccountType.LOCAL)
+
+        val allIds = ItemsQueryBuilder.buildItemIdsQuery(QueryFilters(accountId = accountId), false, emptyList())
+        assertEquals(listOf(ids[0], ids[1], ids[3]), selectIds(allIds).sorted())
+
+        val unreadIds = ItemsQueryBuilder.buildItemIdsQuery(QueryFilters(accountId = accountId, showReadItems = false),
+                false, listOf(ids[1]))
+        assertEquals(listOf(ids[3]), selectIds(unreadIds))
+
+        val starredIds = ItemsQueryBuilder.buildItemIdsQuery(QueryFilters(accountId = accountId,
+                filterType = FilterType.STARS_FILTER), false, emptyList())
+        assertEquals(listOf(ids[3]), selectIds(starredIds))
+    }
+
+    @Test
+    fun itemsCountQueryTest() {
+        val (accountId, ids) = insertItems(AccountType.LOCAL)
+
+        assertEquals(3, database.itemDao().countItems(ItemsQueryBuilder.buildItemsCountQuery(
+                QueryFilters(accountId = accountId), false, emptyList())))
+        assertEquals(1, database.itemDao().countItems(ItemsQueryBuilder.buildItemsCountQuery(
+                QueryFilters(accountId = accountId, filterType = FilterType.READ_IT_LATER_FILTER), false, emptyList())))
+        assertEquals(1, database.itemDao().countItems(ItemsQueryBuilder.buildItemsCountQuery(
+                QueryFilters(accountId = accountId), false, listOf(ids[0], ids[1]))))
+    }
+
+    @Test
+    fun separateStateItemIdsQueryTest() {
+        val (accountId, ids) = insertItems(AccountType.FRESHRSS)
+        database.itemStateDao().insertItemStates(listOf(
+                ItemState(read = false, starred = true, remoteId = "1", accountId = accountId),
+                ItemState(read = true, starred = false, remoteId = "2", accountId = accountId),
+        ))
+
+        // without a state, an item is read and not starred
+        val unreadIds = ItemsQueryBuilder.buildItemIdsQuery(QueryFilters(accountId = accountId, showReadItems = false),
+                true, emptyList())
+        assertEquals(listOf(ids[0]), selectIds(unreadIds))
+
+        val starredCount = database.itemDao().countItems(ItemsQueryBuilder.buildItemsCountQuery(
+                QueryFilters(accountId = accountId, filterType = FilterType.STARS_FILTER), true, emptyList()))
+        assertEquals(1, starredCount)
+    }
+
+    @Test
+    fun selectedItemsUpdaterReadStateTest() {
+        val (accountId, ids) = insertItems(AccountType.NEXTCLOUD_NEWS)
+        val updater = SelectedItemsUpdater(database)
+
+        database.runInTransaction {
+            updater.selectItems(QueryFilters(accountId = accountId), false, listOf(ids[3]))
+
+            updater.toggleReadStateChanges(true, accountId)
+            updater.insertReadStateChanges(true, accountId)
+            updater.setReadState(true)
+        }
+
+        // the read later item is not in the default list, the starred one is excluded
+        assertEquals(listOf(true, true, false, false), readStates(ids))
+
+        // only the item whose state changed is journaled
+        assertTrue(database.itemStateChangesDao().itemStateChangeExists(ids[1], accountId))
+        assertFalse(database.itemStateChangesDao().itemStateChangeExists(ids[0], accountId))
+    }
+
+    @Test
+    fun selectedItemsUpdaterToggleTest() {
+        val (accountId, ids) = insertItems(AccountType.NEXTCLOUD_NEWS)
+        val updater = SelectedItemsUpdater(database)
+        val filters = QueryFilters(accountId = accountId, filterType = FilterType.READ_IT_LATER_FILTER)
+
+        for (read in listOf(true, false)) {
+            database.runInTransaction {
+                updater.selectItems(filters, false, emptyList())
+
+                updater.toggleReadStateChanges(read, accountId)
+                updater.insertReadStateChanges(read, accountId)
+                updater.setReadState(read)
+            }
+        }
+
+        // marked read then unread again: the change is cancelled
+        assertFalse(database.itemDao().select(ids[2]).isRead)
+        assertFalse(database.itemStateChangesDao().selectItemStateChange(ids[2]).readChange)
+    }
+
+    @Test
+    fun selectedItemsUpdaterSeparateStateTest() {
+        val (accountId, ids) = insertItems(AccountType.FRESHRSS)
+        database.itemStateDao().insertItemState(ItemState(read = false, starred = false, remoteId = "2", accountId = accountId))
+        val updater = SelectedItemsUpdater(database)
+
+        database.runInTransaction {
+            updater.selectItems(QueryFilters(accountId = accountId, showReadItems = false), true, emptyList())
+
+            updater.toggleSeparateReadStateChanges(true, accountId)
+            updater.insertSeparateReadStateChanges(true, accountId)
+            updater.updateItemStatesReadState(true, accountId)
+            updater.insertItemStatesReadState(true, accountId)
+        }
+
+        assertEquals(0, database.itemStateDao().countUnreadItemStates(accountId))
+        assertTrue(database.itemStateChangesDao().itemStateChangeExists(ids[1], accountId))
+        assertFalse(database.itemStateChangesDao().itemStateChangeExists(ids[0], accountId))
+
+        // items are left untouched, their state is in ItemState
+        assertFalse(database.itemDao().select(ids[1]).isRead)
+    }
+
+    @Test
+    fun selectedItemsUpdaterReadLaterTest() {
+        val (accountId, ids) = insertItems(AccountType.LOCAL)
+        val updater = SelectedItemsUpdater(database)
+
+        database.runInTransaction {
+            updater.selectItems(QueryFilters(accountId = accountId, filterType = FilterType.STARS_FILTER), false, emptyList())
+            updater.setReadItLater(true)
+        }
+
+        assertEquals(listOf(false, false, true, true), ids.map { database.itemDao().select(it).isReadItLater })
+    }
+}
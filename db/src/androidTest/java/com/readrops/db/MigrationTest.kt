@@ -0,0 +1,78 @@
+package com.readrops.db
+
+import androidx.room.testing.MigrationTestHelper
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.readrops.db.entities.Item
+import com.readrops.db.utils.Compression
+import junit.framework.TestCase.*
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+class MigrationTest {
+
+    @get:Rule
+    val helper = MigrationTestHelper(InstrumentationRegistry.getInstrumentation(),
+            Database::class.java.canonicalName, FrameworkSQLiteOpenHelperFactory())
+
+    @Test
+    fun migrate3To12Test() {
+        helper.createDatabase(TEST_DB, 3).apply {
+            execSQL("Insert Into Account (id, account_name, account_type, last_modified, current_account, notifications_enabled) " +
+                    "Values (1, 'account', 0, 0, 1, 1)")
+            execSQL("Insert Into Feed (id, name, url, text_color, background_color, account_id) " +
+                    "Values (1, 'feed', 'https://example.com/feed.xml', 0, 0, 1)")
+            execSQL("Insert Into Item (id, title, description, clean_description, content, feed_id, guid, read_time, read, starred, read_it_later) " +
+                    "Values (1, 'item 1', '<p>description</p>', ' ${"a".repeat(400)}', '<p>content</p>', 1, 'guid1', 0, 1, 0, 0)")
+            execSQL("Insert Into Item (id, title, feed_id, guid, read_time, read, starred, read_it_later) " +
+                    "Values (2, 'item 2', 1, 'guid2', 0, 0, 1, 0)")
+            execSQL("Insert Into Item (id, title, clean_description, feed_id, guid, read_time, read, starred, read_it_later) " +
+                    "Values (3, 'item 3', ' short description ', 1, 'guid3', 0, 0, 0, 0)")
+            close()
+        }
+
+        val db = helper.runMigrationsAndValidate(TEST_DB, 12, true, MIGRATION_3_12)
+
+        db.query("Select id, preview, read, starred From Item Order By id").use { cursor ->
+            assertTrue(cursor.moveToNext())
+            // same previews as the new items
+            assertEquals(Item.buildPreview(" " + "a".repeat(400)), cursor.getString(1))
+            assertEquals("a".repeat(300) + "…", cursor.getString(1))
+            assertEquals(1, cursor.getInt(2))
+
+            assertTrue(cursor.moveToNext())
+            assertTrue(cursor.isNull(1))
+            assertEquals(1, cursor.getInt(3))
+
+            assertTrue(cursor.moveToNext())
+            assertEquals("short description", cursor.getString(1))
+        }
+
+        db.query("Select item_id, description, content From ItemContent").use { cursor ->
+            assertEquals(1, cursor.count)
+            assertTrue(cursor.moveToNext())
+
+            assertEquals(1, cursor.getInt(0))
+            assertEquals("<p>description</p>", Compression.decompress(cursor.getBlob(1)))
+            assertEquals("<p>content</p>", Compression.decompress(cursor.getBlob(2)))
+        }
+
+        db.query("Select redirect_count, original_url From Feed").use { cursor ->
+            assertTrue(cursor.moveToNext())
+            assertEquals(0, cursor.getInt(0))
+            assertTrue(cursor.isNull(1))
+        }
+
+        db.query("Select last_states_reconciliation From Account").use { cursor ->
+            assertTrue(cursor.moveToNext())
+            assertEquals(0L, cursor.getLong(0))
+        }
+    }
+
+    companion object {
+        private const val TEST_DB = "migration-test"
+    }
+}
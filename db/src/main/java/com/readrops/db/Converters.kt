@@ -1,6 +1,7 @@
 package com.readrops.db
 
 import androidx.room.TypeConverter
+import com.readrops.db.entities.MarkAllReadScope
 import com.readrops.db.entities.account.AccountType
 import org.joda.time.LocalDateTime
 
@@ -25,4 +26,14 @@ object Converters {
     fun getAccountTypeCode(accountType: AccountType): Int {
         return accountType.ordinal
     }
-}
\ No newline at end of file
+
+    @TypeConverter
+    fun fromMarkAllReadScopeCode(ordinal: Int): MarkAllReadScope {
+        return MarkAllReadScope.values()[ordinal]
+    }
+
+    @TypeConverter
+    fun getMarkAllReadScopeCode(scope: MarkAllReadScope): Int {
+        return scope.ordinal
+    }
+}
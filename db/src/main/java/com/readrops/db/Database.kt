@@ -9,7 +9,8 @@ import com.readrops.db.entities.account.Account
 import dev.matrix.roomigrant.GenerateRoomMigrations
 
 @Database(entities = [Feed::class, Item::class, Folder::class, Account::class,
-    ItemStateChange::class, ItemState::class], version = 3)
+    ItemStateChange::class, ItemState::class, ItemContent::class, MarkAllReadOperation::class,
+    SyncCheckpoint::class, SyncRun::class, HostMetrics::class], version = 12)
 @TypeConverters(Converters::class)
 @GenerateRoomMigrations
 abstract class Database : RoomDatabase() {
@@ -24,4 +25,12 @@ abstract class Database : RoomDatabase() {
     abstract fun itemStateDao(): ItemStateDao
 
     abstract fun itemStateChangesDao(): ItemStateChangeDao
+
+    abstract fun markAllReadOperationDao(): MarkAllReadOperationDao
+
+    abstract fun syncCheckpointDao(): SyncCheckpointDao
+
+    abstract fun syncRunDao(): SyncRunDao
+
+    abstract fun hostMetricsDao(): HostMetricsDao
 }
\ No newline at end of file
@@ -1,13 +1,29 @@
 package com.readrops.db
 
 import androidx.room.Room
+import androidx.room.RoomDatabase
+import androidx.sqlite.db.SupportSQLiteDatabase
 import org.koin.dsl.module
 
 val dbModule = module {
 
     single(createdAtStart = true) {
         Room.databaseBuilder(get(), Database::class.java, "readrops-db")
-                .addMigrations(*Database_Migrations.build())
+                // added last so it replaces any migration Roomigrant would generate between the same versions
+                .addMigrations(*Database_Migrations.build(), MIGRATION_3_12)
+                .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
+                .addCallback(object : RoomDatabase.Callback() {
+                    override fun onOpen(db: SupportSQLiteDatabase) {
+                        // with WAL, NORMAL only syncs on checkpoints instead of every commit, without risking corruption
+                        db.query("PRAGMA synchronous = NORMAL").close()
+                    }
+                })
                 .build()
     }
-}
\ No newline at end of file
+
+    single { InvalidationGate() }
+
+    single { IngestionWriter(get(), get()) }
+
+    single { SelectedItemsUpdater(get()) }
+}
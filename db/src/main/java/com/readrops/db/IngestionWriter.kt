@@ -0,0 +1,215 @@
+package com.readrops.db
+
+import android.os.SystemClock
+import android.util.Log
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * Single database writer used by sync code.
+ * Write operations are submitted to a [Session] which groups them in one transaction
+ * when [Session.maxBatchSize] operations are pending or after [Session.maxDelay] milliseconds,
+ * instead of committing (and invalidating Room observers) once per operation.
+ * All commits of all sessions run on the same thread.
+ * Paged lists invalidations are deferred by the [InvalidationGate] while a session is open.
+ */
+class IngestionWriter(private val database: Database, private val invalidationGate: InvalidationGate) {
+
+    private val executor = Executors.newSingleThreadScheduledExecutor { Thread(it, "IngestionWriter") }
+
+    // only accessed from the writer thread
+    private var openSessions = 0
+
+    fun openSession(): Session = openSession(DEFAULT_BATCH_SIZE, DEFAULT_MAX_DELAY)
+
+    fun openSession(maxBatchSize: Int, maxDelay: Long): Session {
+        invalidationGate.close()
+        executor.execute {
+            if (openSessions++ == 0) setBulkLoadMode(true)
+        }
+
+        return Session(maxBatchSize, maxDelay)
+    }
+
+    /**
+     * Checkpoints happen less often during a sync, the WAL file is checkpointed once all sessions are closed
+     */
+    private fun setBulkLoadMode(enabled: Boolean) {
+        try {
+            with(database.openHelper.writableDatabase) {
+                query("PRAGMA wal_autocheckpoint = ${if (enabled) BULK_AUTOCHECKPOINT else DEFAULT_AUTOCHECKPOINT}").close()
+                if (!enabled) query("PRAGMA wal_checkpoint(PASSIVE)").close()
+            }
+        } catch (e: Exception) {
+            Log.d(TAG, "setBulkLoadMode: ${e.message}")
+        }
+    }
+
+    inner class Session internal constructor(val maxBatchSize: Int, val maxDelay: Long) {
+
+        private val lock = Any()
+        private var pending = arrayListOf<Runnable>()
+        // submitted operations not committed yet, pending or being committed
+        private var queuedCount = 0
+        private var scheduledCommit: ScheduledFuture<*>? = null
+        private var error: Throwable? = null
+        private var closed = false
+
+        private var commitCount = 0
+        private var operationCount = 0
+        private var totalWriteTime = 0L
+        private var maxWriteTime = 0L
+
+        /**
+         * Queue a write operation, it will be committed later with other operations
+         */
+        fun submit(operation: Runnable) {
+            synchronized(lock) {
+                check(!closed) { "Session is closed" }
+                pending.add(operation)
+                queuedCount++
+
+                if (pending.size >= maxBatchSize) {
+                    executor.execute { commit(takePending()) }
+                } else if (scheduledCommit == null) {
+                    scheduledCommit = executor.schedule(Runnable { commit(takePending()) }, maxDelay, TimeUnit.MILLISECONDS)
+                }
+            }
+        }
+
+        /**
+         * Queue a write operation, blocking while [maxQueued] operations are waiting to be committed.
+         * Lets a producer stream data to the database without getting more than a few operations ahead of the writer.
+         */
+        fun submit(operation: Runnable, maxQueued: Int) {
+            synchronized(lock) {
+                while (queuedCount >= maxQueued && error == null) {
+                    (lock as Object).wait()
+                }
+
+                error?.let { throw it }
+            }
+
+            submit(operation)
+        }
+
+        /**
+         * Commit pending operations, then run the operation in its own transaction and return its result.
+         * Use it when the caller needs a write result or needs to read what has been submitted before.
+         */
+        fun <T> execute(operation: Callable<T>): T {
+            flush()
+
+            return await(executor.submit(Callable {
+                val start = SystemClock.elapsedRealtime()
+                val result = database.runInTransaction(operation)
+                recordCommit(1, SystemClock.elapsedRealtime() - start)
+
+                result
+            }))
+        }
+
+        /**
+         * Commit all pending operations and wait for them to be written
+         */
+        fun flush() {
+            await(executor.submit(Callable { commit(takePending()) }))
+
+            error?.let { throw it }
+        }
+
+        /**
+         * Flush and close the session
+         *
+         * @return write statistics of the session
+         */
+        fun close(): IngestionStats {
+            try {
+                flush()
+            } finally {
+                synchronized(lock) { closed = true }
+                executor.execute {
+                    if (--openSessions == 0) setBulkLoadMode(false)
+                }
+
+                invalidationGate.open()
+            }
+
+            return synchronized(lock) {
+                IngestionStats(commitCount, operationCount, totalWriteTime, maxWriteTime)
+            }
+        }
+
+        private fun takePending(): List<Runnable> = synchronized(lock) {
+            scheduledCommit?.cancel(false)
+            scheduledCommit = null
+
+            val operations = pending
+            pending = arrayListOf()
+            operations
+        }
+
+        // runs on the writer thread
+        private fun commit(operations: List<Runnable>) {
+            if (operations.isEmpty() || error != null) return
+
+            val start = SystemClock.elapsedRealtime()
+            try {
+                database.runInTransaction(Runnable { operations.forEach { it.run() } })
+                recordCommit(operations.size, SystemClock.elapsedRealtime() - start)
+            } catch (e: Exception) {
+                Log.e(TAG, "commit: ${e.message}", e)
+                error = e
+            } finally {
+                synchronized(lock) {
+                    queuedCount -= operations.size
+                    (lock as Object).notifyAll()
+                }
+            }
+        }
+
+        private fun recordCommit(operations: Int, writeTime: Long) = synchronized(lock) {
+            commitCount++
+            operationCount += operations
+            totalWriteTime += writeTime
+            maxWriteTime = maxOf(maxWriteTime, writeTime)
+        }
+
+        private fun <T> await(future: Future<T>): T = try {
+            future.get()
+        } catch (e: ExecutionException) {
+            throw (e.cause ?: e)
+        }
+    }
+
+    companion object {
+        private val TAG = IngestionWriter::class.java.simpleName
+
+        const val DEFAULT_BATCH_SIZE = 500
+        const val DEFAULT_MAX_DELAY = 250L
+
+        private const val DEFAULT_AUTOCHECKPOINT = 1000
+        private const val BULK_AUTOCHECKPOINT = 10000
+    }
+}
+
+/**
+ * @param commitCount    number of transactions committed
+ * @param operationCount number of submitted write operations
+ * @param totalWriteTime time spent in transactions, in milliseconds
+ * @param maxWriteTime   longest transaction, in milliseconds
+ */
+data class IngestionStats(
+        val commitCount: Int = 0,
+        val operationCount: Int = 0,
+        val totalWriteTime: Long = 0,
+        val maxWriteTime: Long = 0,
+) {
+
+    override fun toString(): String = "$operationCount operations in $commitCount commits, " +
+            "write time ${totalWriteTime}ms (max ${maxWriteTime}ms)"
+}
@@ -0,0 +1,79 @@
+package com.readrops.db
+
+import android.os.Handler
+import android.os.Looper
+import androidx.paging.DataSource
+
+/**
+ * Defers paged lists invalidation while bulk writes are running.
+ * Without it, each sync commit invalidates the main list, which re-runs its count and first page queries.
+ * While the gate is closed, invalidated data sources are kept and released all at once
+ * every [CADENCE] milliseconds and when the gate opens again.
+ */
+class InvalidationGate {
+
+    private val lock = Any()
+    private val handler = Handler(Looper.getMainLooper())
+
+    private var closedCount = 0
+    private val pendingDataSources = LinkedHashSet<DataSource<*, *>>()
+
+    private val cadenceRelease = object : Runnable {
+        override fun run() {
+            releasePending()
+
+            synchronized(lock) {
+                if (closedCount > 0) handler.postDelayed(this, CADENCE)
+            }
+        }
+    }
+
+    /**
+     * Start deferring invalidations, calls can be nested (one per running sync)
+     */
+    fun close() = synchronized(lock) {
+        if (closedCount++ == 0) handler.postDelayed(cadenceRelease, CADENCE)
+    }
+
+    /**
+     * Stop deferring invalidations once all closing calls are balanced, and release the pending ones
+     */
+    fun open() {
+        synchronized(lock) {
+            closedCount = (closedCount - 1).coerceAtLeast(0)
+            if (closedCount > 0) return
+
+            handler.removeCallbacks(cadenceRelease)
+        }
+
+        releasePending()
+    }
+
+    /**
+     * Invalidate the data source now if the gate is open, later otherwise
+     */
+    fun invalidate(dataSource: DataSource<*, *>) {
+        synchronized(lock) {
+            if (closedCount > 0) {
+                pendingDataSources += dataSource
+                return
+            }
+        }
+
+        dataSource.invalidate()
+    }
+
+    private fun releasePending() {
+        val dataSources = synchronized(lock) {
+            val copy = pendingDataSources.toList()
+            pendingDataSources.clear()
+            copy
+        }
+
+        dataSources.forEach { it.invalidate() }
+    }
+
+    companion object {
+        const val CADENCE = 5000L
+    }
+}
@@ -0,0 +1,109 @@
+package com.readrops.db
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+import com.readrops.db.entities.Item
+import com.readrops.db.utils.Compression
+
+/**
+ * Versions 4 to 11 were never released, users upgrade from version 3 in one step.
+ * Roomigrant only migrates between the committed schemas, its migrations can't copy
+ * the item bodies to ItemContent nor compute the item previews.
+ */
+val MIGRATION_3_12 = object : Migration(3, 12) {
+
+    override fun migrate(database: SupportSQLiteDatabase) {
+        // Feed: retention overrides and learned redirects
+        database.execSQL("ALTER TABLE `Feed` ADD COLUMN `retention_max_age` INTEGER")
+        database.execSQL("ALTER TABLE `Feed` ADD COLUMN `retention_max_count` INTEGER")
+        database.execSQL("ALTER TABLE `Feed` ADD COLUMN `original_url` TEXT")
+        database.execSQL("ALTER TABLE `Feed` ADD COLUMN `redirect_url` TEXT")
+        database.execSQL("ALTER TABLE `Feed` ADD COLUMN `redirect_count` INTEGER NOT NULL DEFAULT 0")
+
+        // Account: last full items states pull
+        database.execSQL("ALTER TABLE `Account` ADD COLUMN `last_states_reconciliation` INTEGER NOT NULL DEFAULT 0")
+
+        migrateItems(database)
+
+        database.execSQL("CREATE TABLE IF NOT EXISTS `MarkAllReadOperation` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                "`scope` INTEGER NOT NULL, `remote_target_id` TEXT, `watermark` INTEGER NOT NULL, `account_id` INTEGER NOT NULL, " +
+                "FOREIGN KEY(`account_id`) REFERENCES `Account`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )")
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_MarkAllReadOperation_account_id` ON `MarkAllReadOperation` (`account_id`)")
+
+        database.execSQL("CREATE TABLE IF NOT EXISTS `SyncCheckpoint` (`account_id` INTEGER NOT NULL, `step` TEXT NOT NULL, " +
+                "`position` TEXT, PRIMARY KEY(`account_id`), " +
+                "FOREIGN KEY(`account_id`) REFERENCES `Account`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )")
+
+        database.execSQL("CREATE TABLE IF NOT EXISTS `SyncRun` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                "`account_id` INTEGER NOT NULL, `start_time` INTEGER NOT NULL, `end_time` INTEGER NOT NULL, `error` TEXT, " +
+                "`push_duration` INTEGER NOT NULL, `fetch_duration` INTEGER NOT NULL, `parse_duration` INTEGER NOT NULL, " +
+                "`reconcile_duration` INTEGER NOT NULL, `insert_duration` INTEGER NOT NULL, `notify_duration` INTEGER NOT NULL, " +
+                "`bytes_received` INTEGER NOT NULL, `items_inserted` INTEGER NOT NULL, `items_updated` INTEGER NOT NULL, " +
+                "`feeds_skipped` INTEGER NOT NULL, `feeds_failed` INTEGER NOT NULL, " +
+                "FOREIGN KEY(`account_id`) REFERENCES `Account`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )")
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_SyncRun_account_id` ON `SyncRun` (`account_id`)")
+
+        database.execSQL("CREATE TABLE IF NOT EXISTS `HostMetrics` (`host` TEXT NOT NULL, `calls` INTEGER NOT NULL, " +
+                "`failed_calls` INTEGER NOT NULL, `dns_count` INTEGER NOT NULL, `dns_time` INTEGER NOT NULL, " +
+                "`connect_count` INTEGER NOT NULL, `connect_time` INTEGER NOT NULL, `tls_count` INTEGER NOT NULL, " +
+                "`tls_time` INTEGER NOT NULL, `ttfb_count` INTEGER NOT NULL, `ttfb_time` INTEGER NOT NULL, " +
+                "`bytes_received` INTEGER NOT NULL, `bytes_sent` INTEGER NOT NULL, `connections_acquired` INTEGER NOT NULL, " +
+                "`connections_reused` INTEGER NOT NULL, PRIMARY KEY(`host`))")
+    }
+
+    /**
+     * Item description and content move to the compressed ItemContent table,
+     * clean_description is replaced by a preview built like the ones of new items
+     */
+    private fun migrateItems(database: SupportSQLiteDatabase) {
+        database.execSQL("CREATE TABLE IF NOT EXISTS `Item_new` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `title` TEXT, " +
+                "`preview` TEXT, `link` TEXT, `image_link` TEXT, `author` TEXT, `pub_date` INTEGER, `feed_id` INTEGER NOT NULL, " +
+                "`guid` TEXT, `read_time` REAL NOT NULL, `read` INTEGER NOT NULL, `starred` INTEGER NOT NULL, " +
+                "`read_it_later` INTEGER NOT NULL, `remoteId` TEXT, " +
+                "FOREIGN KEY(`feed_id`) REFERENCES `Feed`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )")
+
+        database.execSQL("INSERT INTO `Item_new` (`id`, `title`, `preview`, `link`, `image_link`, `author`, `pub_date`, " +
+                "`feed_id`, `guid`, `read_time`, `read`, `starred`, `read_it_later`, `remoteId`) " +
+                "SELECT `id`, `title`, NULL, `link`, `image_link`, " +
+                "`author`, `pub_date`, `feed_id`, `guid`, `read_time`, `read`, `starred`, `read_it_later`, `remoteId` FROM `Item`")
+
+        database.execSQL("CREATE TABLE IF NOT EXISTS `ItemContent` (`item_id` INTEGER NOT NULL, `description` BLOB, " +
+                "`content` BLOB, PRIMARY KEY(`item_id`), " +
+                "FOREIGN KEY(`item_id`) REFERENCES `Item`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )")
+
+        val contentStatement = database.compileStatement("INSERT INTO `ItemContent` (`item_id`, `description`, `content`) VALUES (?, ?, ?)")
+        val previewStatement = database.compileStatement("UPDATE `Item_new` SET `preview` = ? WHERE `id` = ?")
+
+        database.query("SELECT `id`, `description`, `content`, `clean_description` FROM `Item` " +
+                "WHERE `description` IS NOT NULL OR `content` IS NOT NULL OR `clean_description` IS NOT NULL").use { cursor ->
+            while (cursor.moveToNext()) {
+                val id = cursor.getLong(0)
+
+                if (!cursor.isNull(1) || !cursor.isNull(2)) {
+                    contentStatement.clearBindings()
+                    contentStatement.bindLong(1, id)
+
+                    Compression.compress(cursor.getString(1))?.let { contentStatement.bindBlob(2, it) }
+                    Compression.compress(cursor.getString(2))?.let { contentStatement.bindBlob(3, it) }
+
+                    contentStatement.executeInsert()
+                }
+
+                if (!cursor.isNull(3)) {
+                    previewStatement.bindString(1, Item.buildPreview(cursor.getString(3)))
+                    previewStatement.bindLong(2, id)
+
+                    previewStatement.executeUpdateDelete()
+                }
+            }
+        }
+
+        contentStatement.close()
+        previewStatement.close()
+
+        database.execSQL("DROP TABLE `Item`")
+        database.execSQL("ALTER TABLE `Item_new` RENAME TO `Item`")
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_Item_feed_id` ON `Item` (`feed_id`)")
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_Item_guid` ON `Item` (`guid`)")
+    }
+}
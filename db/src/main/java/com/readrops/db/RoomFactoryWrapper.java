@@ -8,49 +8,42 @@ import androidx.paging.PositionalDataSource;
  * Workaround class to avoid item recycler view scrolling down when updating data
  * This class is to keep until a new version of androidx paging is released with
  * bug https://issuetracker.google.com/issues/123834703 merged.
+ * Room invalidations go through an {@link InvalidationGate} which defers them during syncs.
  * @param <T>
  */
 public class RoomFactoryWrapper<T> extends DataSource.Factory<Integer, T> {
     final DataSource.Factory<Integer, T> m_wrappedFactory;
+    final InvalidationGate m_invalidationGate;
 
-    public RoomFactoryWrapper(@NonNull DataSource.Factory<Integer, T> wrappedFactory) {
+    public RoomFactoryWrapper(@NonNull DataSource.Factory<Integer, T> wrappedFactory,
+                              @NonNull InvalidationGate invalidationGate) {
         m_wrappedFactory = wrappedFactory;
+        m_invalidationGate = invalidationGate;
     }
 
     @NonNull
     @Override
     public DataSource<Integer, T> create() {
-        return new DataSourceWrapper<>((PositionalDataSource<T>) m_wrappedFactory.create());
+        return new DataSourceWrapper<>((PositionalDataSource<T>) m_wrappedFactory.create(), m_invalidationGate);
     }
 
     public static class DataSourceWrapper<T> extends PositionalDataSource<T> {
         final PositionalDataSource<T> m_wrappedSource;
 
-        DataSourceWrapper(PositionalDataSource<T> wrappedSource) {
+        DataSourceWrapper(PositionalDataSource<T> wrappedSource, InvalidationGate invalidationGate) {
             m_wrappedSource = wrappedSource;
-        }
-
-        @Override
-        public void addInvalidatedCallback(@NonNull InvalidatedCallback onInvalidatedCallback) {
-            m_wrappedSource.addInvalidatedCallback(onInvalidatedCallback);
-        }
 
-        @Override
-        public void removeInvalidatedCallback(
-                @NonNull InvalidatedCallback onInvalidatedCallback) {
-            m_wrappedSource.removeInvalidatedCallback(onInvalidatedCallback);
+            // the wrapped source becomes invalid at the first Room notification,
+            // this wrapper stays valid and keeps loading from it until the gate releases it
+            m_wrappedSource.addInvalidatedCallback(() -> invalidationGate.invalidate(this));
         }
 
         @Override
         public void invalidate() {
+            super.invalidate();
             m_wrappedSource.invalidate();
         }
 
-        @Override
-        public boolean isInvalid() {
-            return m_wrappedSource.isInvalid();
-        }
-
         @Override
         public void loadInitial(@NonNull LoadInitialParams params,
                                 @NonNull LoadInitialCallback<T> callback) {
@@ -0,0 +1,71 @@
+package com.readrops.db
+
+import com.readrops.db.queries.ItemsQueryBuilder
+import com.readrops.db.queries.QueryFilters
+
+/**
+ * Bulk updates on the items matching the list filters, without loading them.
+ * [selectItems] stores the matching ids in a temporary table, other methods mirror the bulk queries
+ * of the DAOs with this table as the items set, so they don't depend on the order they are run in.
+ * All calls must be made in the same transaction.
+ */
+class SelectedItemsUpdater(private val database: Database) {
+
+    private val db get() = database.openHelper.writableDatabase
+
+    fun selectItems(queryFilters: QueryFilters, separateState: Boolean, excludedIds: Collection<Int>) {
+        db.execSQL("Create Temp Table If Not Exists SelectedItem (id INTEGER PRIMARY KEY)")
+        db.execSQL("Delete From SelectedItem")
+        db.execSQL("Insert Into SelectedItem ${ItemsQueryBuilder.buildItemIdsQuery(queryFilters, separateState, excludedIds)}")
+    }
+
+    fun setReadState(read: Boolean) {
+        db.execSQL("Update Item set read = ? Where id In $SELECTED_IDS", arrayOf(read.toInt()))
+    }
+
+    fun setReadItLater(readLater: Boolean) {
+        db.execSQL("Update Item set read_it_later = ? Where id In $SELECTED_IDS", arrayOf(readLater.toInt()))
+    }
+
+    fun toggleReadStateChanges(read: Boolean, accountId: Int) {
+        db.execSQL("Update ItemStateChange set read_change = Not read_change Where account_id = ? And id In " +
+                "(Select id From Item Where id In $SELECTED_IDS And read != ?)", arrayOf(accountId, read.toInt()))
+    }
+
+    fun insertReadStateChanges(read: Boolean, accountId: Int) {
+        db.execSQL("Insert Into ItemStateChange (id, read_change, star_change, account_id) Select id, 1, 0, ? From Item " +
+                "Where id In $SELECTED_IDS And read != ? And id Not In (Select id From ItemStateChange)",
+                arrayOf(accountId, read.toInt()))
+    }
+
+    fun toggleSeparateReadStateChanges(read: Boolean, accountId: Int) {
+        db.execSQL("Update ItemStateChange set read_change = Not read_change Where account_id = ? And id In " +
+                "(Select Item.id From Item Left Join ItemState On ItemState.remote_id = Item.remoteId And ItemState.account_id = ? " +
+                "Where Item.id In $SELECTED_IDS And coalesce(ItemState.read, 1) != ?)",
+                arrayOf(accountId, accountId, read.toInt()))
+    }
+
+    fun insertSeparateReadStateChanges(read: Boolean, accountId: Int) {
+        db.execSQL("Insert Into ItemStateChange (id, read_change, star_change, account_id) Select Item.id, 1, 0, ? From Item " +
+                "Left Join ItemState On ItemState.remote_id = Item.remoteId And ItemState.account_id = ? " +
+                "Where Item.id In $SELECTED_IDS And coalesce(ItemState.read, 1) != ? And Item.id Not In (Select id From ItemStateChange)",
+                arrayOf(accountId, accountId, read.toInt()))
+    }
+
+    fun updateItemStatesReadState(read: Boolean, accountId: Int) {
+        db.execSQL("Update ItemState set read = ? Where account_id = ? And remote_id In " +
+                "(Select remoteId From Item Where id In $SELECTED_IDS)", arrayOf(read.toInt(), accountId))
+    }
+
+    fun insertItemStatesReadState(read: Boolean, accountId: Int) {
+        db.execSQL("Insert Into ItemState (read, starred, remote_id, account_id) Select ?, starred, remoteId, ? From Item " +
+                "Where id In $SELECTED_IDS And remoteId is not NULL And remoteId Not In (Select remote_id From ItemState Where account_id = ?)",
+                arrayOf(read.toInt(), accountId, accountId))
+    }
+
+    private fun Boolean.toInt() = if (this) 1 else 0
+
+    companion object {
+        private const val SELECTED_IDS = "(Select id From SelectedItem)"
+    }
+}
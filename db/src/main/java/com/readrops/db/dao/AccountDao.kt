@@ -25,6 +25,9 @@ interface AccountDao : BaseDao<Account> {
     @Query("Update Account set last_modified = :lastModified Where id = :accountId")
     fun updateLastModified(accountId: Int, lastModified: Long)
 
+    @Query("Update Account set last_states_reconciliation = :lastStatesReconciliation Where id = :accountId")
+    fun updateLastStatesReconciliation(accountId: Int, lastStatesReconciliation: Long)
+
     @Query("Update Account set current_account = 0 Where id Not In (:accountId)")
     fun deselectOldCurrentAccount(accountId: Int)
 
@@ -49,9 +49,22 @@ abstract class FeedDao : BaseDao<Feed> {
     @Query("Update Feed set etag = :etag, last_modified = :lastModified Where id = :feedId")
     abstract fun updateHeaders(etag: String, lastModified: String, feedId: Int)
 
-    @Query("Update Feed set name = :feedName, url = :feedUrl, folder_id = :folderId Where id = :feedId")
+    // a url edited by the user replaces the one learned from redirects
+    @Query("Update Feed set name = :feedName, url = :feedUrl, folder_id = :folderId, " +
+            "original_url = case When url = :feedUrl Then original_url else null end, " +
+            "redirect_url = case When url = :feedUrl Then redirect_url else null end, " +
+            "redirect_count = case When url = :feedUrl Then redirect_count else 0 end Where id = :feedId")
     abstract fun updateFeedFields(feedId: Int, feedName: String, feedUrl: String, folderId: Int)
 
+    @Query("Update Feed set redirect_url = :redirectUrl, redirect_count = :redirectCount Where id = :feedId")
+    abstract fun updateRedirect(feedId: Int, redirectUrl: String?, redirectCount: Int)
+
+    @Query("Update Feed set url = :url, original_url = :originalUrl, redirect_url = null, redirect_count = 0 Where id = :feedId")
+    abstract fun updateUrl(feedId: Int, url: String, originalUrl: String)
+
+    @Query("Update Feed set retention_max_age = :maxAge, retention_max_count = :maxCount Where id = :feedId")
+    abstract fun updateRetention(feedId: Int, maxAge: Int?, maxCount: Int?)
+
     @Query("Update Feed set name = :name, folder_id = :folderId Where remoteId = :remoteFeedId And account_id = :accountId")
     abstract fun updateNameAndFolder(remoteFeedId: String, accountId: Int, name: String, folderId: Int?)
 
@@ -61,7 +74,8 @@ abstract class FeedDao : BaseDao<Feed> {
     @SuppressWarnings(RoomWarnings.CURSOR_MISMATCH)
     @Query("Select Feed.name as feed_name, Feed.id as feed_id, Folder.name as folder_name, Folder.id as folder_id, Folder.remoteId as folder_remoteId, Folder.account_id as folder_account_id," +
             "Feed.description as feed_description, Feed.icon_url as feed_icon_url, Feed.url as feed_url, Feed.folder_id as feed_folder_id, Feed.text_color as feed_text_color, Feed.background_color as feed_background_color" +
-            ", Feed.account_id as feed_account_id, Feed.notification_enabled as feed_notification_enabled, Feed.siteUrl as feed_siteUrl, Feed.remoteId as feed_remoteId from Feed Left Join Folder on Feed.folder_id = Folder.id Where Feed.account_id = :accountId Order by Feed.name")
+            ", Feed.account_id as feed_account_id, Feed.notification_enabled as feed_notification_enabled, Feed.siteUrl as feed_siteUrl, Feed.remoteId as feed_remoteId, " +
+            "Feed.retention_max_age as feed_retention_max_age, Feed.retention_max_count as feed_retention_max_count from Feed Left Join Folder on Feed.folder_id = Folder.id Where Feed.account_id = :accountId Order by Feed.name")
     abstract fun getAllFeedsWithFolder(accountId: Int): LiveData<List<FeedWithFolder>>
 
     @SuppressWarnings(RoomWarnings.CURSOR_MISMATCH)
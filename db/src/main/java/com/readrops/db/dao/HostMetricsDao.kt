@@ -0,0 +1,29 @@
+package com.readrops.db.dao
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.Query
+import androidx.room.Transaction
+import com.readrops.db.entities.HostMetrics
+
+@Dao
+abstract class HostMetricsDao {
+
+    @Query("Select * From HostMetrics")
+    abstract fun selectAll(): List<HostMetrics>
+
+    @Insert
+    abstract fun insert(metrics: List<HostMetrics>)
+
+    @Query("Delete From HostMetrics")
+    abstract fun deleteAll()
+
+    /**
+     * The in-memory store is bounded, hosts it evicted are dropped too
+     */
+    @Transaction
+    open fun replaceAll(metrics: List<HostMetrics>) {
+        deleteAll()
+        insert(metrics)
+    }
+}
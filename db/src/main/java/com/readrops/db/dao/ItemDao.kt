@@ -3,59 +3,183 @@ package com.readrops.db.dao
 import androidx.lifecycle.LiveData
 import androidx.paging.DataSource
 import androidx.room.Dao
+import androidx.room.Insert
 import androidx.room.Query
 import androidx.room.RawQuery
+import androidx.room.Transaction
 import androidx.sqlite.db.SupportSQLiteQuery
 import com.readrops.db.entities.Feed
 import com.readrops.db.entities.Folder
 import com.readrops.db.entities.Item
+import com.readrops.db.entities.ItemContent
 import com.readrops.db.entities.ItemState
+import com.readrops.db.pojo.FeedNewItemsCount
 import com.readrops.db.pojo.ItemWithFeed
 import com.readrops.db.pojo.StarItem
 import io.reactivex.Completable
+import org.joda.time.LocalDateTime
+
+// SQLite limits a query to 999 variables before version 3.32
+internal const val MAX_QUERY_IDS = 900
 
 @Dao
-interface ItemDao : BaseDao<Item> {
+abstract class ItemDao : BaseDao<Item> {
 
     @RawQuery(observedEntities = [Item::class, Folder::class, Feed::class, ItemState::class])
-    fun selectAll(query: SupportSQLiteQuery): DataSource.Factory<Int?, ItemWithFeed>
+    abstract fun selectAll(query: SupportSQLiteQuery): DataSource.Factory<Int?, ItemWithFeed>
 
     @Query("Select * From Item Where id = :itemId")
-    fun select(itemId: Int): Item
+    abstract fun select(itemId: Int): Item
+
+    @Query("Select Feed.account_id, Item.feed_id, count(*) As item_count, Feed.name As feed_name, Feed.icon_url, " +
+            "Feed.text_color, Feed.background_color, Feed.notification_enabled As feed_notification_enabled, " +
+            "Account.notifications_enabled As account_notifications_enabled From Item " +
+            "Inner Join Feed On Item.feed_id = Feed.id Inner Join Account On Feed.account_id = Account.id " +
+            "Where Item.id In (:itemIds) Group By Item.feed_id")
+    abstract fun selectNewItemsCounts(itemIds: List<Long>): List<FeedNewItemsCount>
+
+    /**
+     * New items counts by feed, the ids are split to stay under SQLite variables limit
+     */
+    @Transaction
+    open fun selectNewItemsCountsByFeed(itemIds: List<Long>): List<FeedNewItemsCount> {
+        if (itemIds.size <= MAX_QUERY_IDS) return selectNewItemsCounts(itemIds)
+
+        return itemIds.chunked(MAX_QUERY_IDS)
+                .flatMap { selectNewItemsCounts(it) }
+                .groupBy { it.feedId }
+                .map { (_, counts) -> counts.first().copy(itemCount = counts.sumOf { it.itemCount }) }
+    }
 
     @Query("Select case When :guid In (Select guid From Item Inner Join Feed on Item.feed_id = Feed.id and account_id = :accountId) Then 1 else 0 end")
-    fun itemExists(guid: String, accountId: Int): Boolean
+    abstract fun itemExists(guid: String, accountId: Int): Boolean
 
     @Query("Select case When :remoteId In (Select remoteId from Item) And :feedId In (Select feed_id From Item) Then 1 else 0 end")
-    fun remoteItemExists(remoteId: String, feedId: Int): Boolean
+    abstract fun remoteItemExists(remoteId: String, feedId: Int): Boolean
+
+    @Query("Select Exists (Select 1 From Item Inner Join Feed On Item.feed_id = Feed.id And account_id = :accountId)")
+    abstract fun accountHasItems(accountId: Int): Boolean
 
     @Query("Select * From Item Where remoteId = :remoteId And feed_id = :feedId")
-    fun selectByRemoteId(remoteId: String, feedId: Int): Item
+    abstract fun selectByRemoteId(remoteId: String, feedId: Int): Item
 
     @Query("Update Item Set read = :read Where id = :itemId")
-    fun setReadState(itemId: Int, read: Boolean): Completable
+    abstract fun setReadState(itemId: Int, read: Boolean): Completable
+
+    @Query("Update Item set read = :read Where id In (:ids)")
+    protected abstract fun setItemsReadStateChunk(ids: List<Int>, read: Boolean)
+
+    /**
+     * The ids are split to stay under SQLite variables limit
+     */
+    @Transaction
+    open fun setItemsReadState(ids: List<Int>, read: Boolean) {
+        ids.chunked(MAX_QUERY_IDS).forEach { setItemsReadStateChunk(it, read) }
+    }
 
     @Query("Update Item set starred = :starred Where id = :itemId")
-    fun setStarState(itemId: Int, starred: Boolean): Completable
+    abstract fun setStarState(itemId: Int, starred: Boolean): Completable
 
     @Query("Update Item set read = :readState Where feed_id In (Select id From Feed Where account_id = :accountId)")
-    fun setAllItemsReadState(readState: Int, accountId: Int): Completable
+    abstract fun setAllItemsReadState(readState: Int, accountId: Int): Completable
 
     @Query("Update Item set read = :readState Where feed_id = :feedId")
-    fun setAllFeedItemsReadState(feedId: Int, readState: Int): Completable
+    abstract fun setAllFeedItemsReadState(feedId: Int, readState: Int): Completable
+
+    @Query("Update Item set read = :readState Where feed_id In (Select id From Feed Where folder_id = :folderId)")
+    abstract fun setAllFolderItemsReadState(folderId: Int, readState: Int): Completable
+
+    @Query("Select max(cast(Item.remoteId as integer)) From Item Inner Join Feed On Item.feed_id = Feed.id Where Feed.account_id = :accountId")
+    abstract fun getNewestRemoteId(accountId: Int): Long?
+
+    @Query("Select max(cast(remoteId as integer)) From Item Where feed_id = :feedId")
+    abstract fun getNewestFeedRemoteId(feedId: Int): Long?
+
+    @Query("Select max(cast(Item.remoteId as integer)) From Item Inner Join Feed On Item.feed_id = Feed.id Where Feed.folder_id = :folderId")
+    abstract fun getNewestFolderRemoteId(folderId: Int): Long?
+
+    // FreshRSS remote ids embed a fixed length hexadecimal id, the greatest one is the newest item
+    @Query("Select max(Item.remoteId) From Item Inner Join Feed On Item.feed_id = Feed.id Where Feed.account_id = :accountId")
+    abstract fun getGreatestRemoteId(accountId: Int): String?
+
+    @Query("Select max(remoteId) From Item Where feed_id = :feedId")
+    abstract fun getGreatestFeedRemoteId(feedId: Int): String?
+
+    @Query("Select max(Item.remoteId) From Item Inner Join Feed On Item.feed_id = Feed.id Where Feed.folder_id = :folderId")
+    abstract fun getGreatestFolderRemoteId(folderId: Int): String?
 
     @Query("Update Item set read_it_later = :readLater Where id = :itemId")
-    fun setReadItLater(readLater: Boolean, itemId: Int): Completable
+    abstract fun setReadItLater(readLater: Boolean, itemId: Int): Completable
+
+    @Query("Update Item set read_it_later = :readLater Where id In (:ids)")
+    protected abstract fun setItemsReadItLaterChunk(ids: List<Int>, readLater: Boolean)
+
+    @Transaction
+    protected open fun setItemsReadItLaterChunks(ids: List<Int>, readLater: Boolean) {
+        ids.chunked(MAX_QUERY_IDS).forEach { setItemsReadItLaterChunk(it, readLater) }
+    }
+
+    /**
+     * The ids are split to stay under SQLite variables limit
+     */
+    fun setItemsReadItLater(ids: List<Int>, readLater: Boolean): Completable =
+            Completable.fromAction { setItemsReadItLaterChunks(ids, readLater) }
 
     @Query("Select count(*) From Item Where feed_id = :feedId And read = 0")
-    fun getUnreadCount(feedId: Int): Int
+    abstract fun getUnreadCount(feedId: Int): Int
 
     @RawQuery(observedEntities = [Item::class, ItemState::class])
-    fun getItemById(query: SupportSQLiteQuery): LiveData<ItemWithFeed>
+    abstract fun getItemById(query: SupportSQLiteQuery): LiveData<ItemWithFeed>
+
+    @RawQuery
+    abstract fun countItems(query: SupportSQLiteQuery): Int
 
     @Query("Select Item.guid, Feed.remoteId as feedRemoteId From Item Inner Join Feed On Item.feed_id = Feed.id Where Item.remoteId In (:remoteIds) And account_id = :accountId")
-    fun getStarChanges(remoteIds: List<String>, accountId: Int): List<StarItem>
+    abstract fun getStarChanges(remoteIds: List<String>, accountId: Int): List<StarItem>
 
     @Query("Update Item set read = :read, starred = :starred Where remoteId = :remoteId")
-    fun setReadAndStarState(remoteId: String, read: Boolean, starred: Boolean)
-}
\ No newline at end of file
+    abstract fun setReadAndStarState(remoteId: String, read: Boolean, starred: Boolean)
+
+    /**
+     * Select the publication date of the nth newest item of a feed, used as cutoff to keep only the n newest items
+     */
+    @Query("Select pub_date From Item Where feed_id = :feedId And pub_date is not NULL Order By pub_date DESC Limit 1 Offset :offset")
+    abstract fun selectPubDateAtPosition(feedId: Int, offset: Int): LocalDateTime?
+
+    /**
+     * Select a batch of items of a feed published before the given date.
+     * Starred, read-it-later items and items with a pending state change are never selected.
+     */
+    @Query("Select Item.id From Item Where feed_id = :feedId And pub_date < :maxDate And starred = 0 And read_it_later = 0 " +
+            "And id Not In (Select id From ItemStateChange Where account_id = :accountId) " +
+            "And (remoteId is NULL Or remoteId Not In (Select remote_id From ItemState Where starred = 1 And account_id = :accountId)) Limit :limit")
+    abstract fun selectPurgeableItems(feedId: Int, accountId: Int, maxDate: LocalDateTime, limit: Int): List<Int>
+
+    @Query("Delete From Item Where id In (:ids)")
+    abstract fun deleteByIds(ids: List<Int>): Int
+
+    @Insert
+    abstract fun insertContents(contents: List<ItemContent>)
+
+    @Query("Select * From ItemContent Where item_id = :itemId")
+    abstract fun selectContent(itemId: Int): ItemContent?
+
+    /**
+     * Insert items and their compressed description and content in the same transaction
+     *
+     * @return the inserted items ids
+     */
+    @Transaction
+    open fun insertWithContent(items: List<Item>): List<Long> {
+        val ids = insert(items)
+        val contents = arrayListOf<ItemContent>()
+
+        items.forEachIndexed { index, item ->
+            item.id = ids[index].toInt()
+            ItemContent.fromItem(item)?.let { contents += it }
+        }
+
+        insertContents(contents)
+        return ids
+    }
+}
@@ -21,6 +21,9 @@ interface ItemStateChangeDao : BaseDao<ItemStateChange> {
     @Query("Delete From ItemStateChange Where account_id = :accountId")
     fun resetStateChanges(accountId: Int)
 
+    @Query("Delete From ItemStateChange Where account_id = :accountId And id Not In (Select id From Item)")
+    fun deleteOrphanStateChanges(accountId: Int): Int
+
     @Query("Select case When ItemState.remote_id is NULL Or ItemState.read = 1 Then 1 else 0 End read,  " +
             "case When ItemState.remote_id is NULL Or ItemState.starred = 1 Then 1 else 0 End starred," +
             "ItemStateChange.read_change, ItemStateChange.star_change, Item.remoteId " +
@@ -116,4 +119,41 @@ interface ItemStateChangeDao : BaseDao<ItemStateChange> {
     @Query("Update ItemStateChange set star_change = :starChange Where id = :id")
     fun updateItemStarStateChange(starChange: Boolean, id: Int)
 
+    // bulk read state changes: an existing change is toggled and a missing one is inserted
+    // for each item whose current read state differs from the new one
+
+    @Query("Update ItemStateChange set read_change = Not read_change Where account_id = :accountId And id In " +
+            "(Select id From Item Where id In (:ids) And read != :read)")
+    fun toggleReadStateChanges(ids: List<Int>, read: Boolean, accountId: Int)
+
+    @Query("Insert Into ItemStateChange (id, read_change, star_change, account_id) Select id, 1, 0, :accountId From Item " +
+            "Where id In (:ids) And read != :read And id Not In (Select id From ItemStateChange)")
+    fun insertReadStateChanges(ids: List<Int>, read: Boolean, accountId: Int)
+
+    @Query("Update ItemStateChange set read_change = Not read_change Where account_id = :accountId And id In " +
+            "(Select Item.id From Item Left Join ItemState On ItemState.remote_id = Item.remoteId And ItemState.account_id = :accountId " +
+            "Where Item.id In (:ids) And coalesce(ItemState.read, 1) != :read)")
+    fun toggleSeparateReadStateChanges(ids: List<Int>, read: Boolean, accountId: Int)
+
+    @Query("Insert Into ItemStateChange (id, read_change, star_change, account_id) Select Item.id, 1, 0, :accountId From Item " +
+            "Left Join ItemState On ItemState.remote_id = Item.remoteId And ItemState.account_id = :accountId " +
+            "Where Item.id In (:ids) And coalesce(ItemState.read, 1) != :read And Item.id Not In (Select id From ItemStateChange)")
+    fun insertSeparateReadStateChanges(ids: List<Int>, read: Boolean, accountId: Int)
+
+    /**
+     * The ids are split to stay under SQLite variables limit
+     */
+    fun upsertReadStateChanges(ids: List<Int>, read: Boolean, accountId: Int) = ids.chunked(MAX_QUERY_IDS).forEach {
+        toggleReadStateChanges(it, read, accountId)
+        insertReadStateChanges(it, read, accountId)
+    }
+
+    fun upsertSeparateReadStateChanges(ids: List<Int>, read: Boolean, accountId: Int) = ids.chunked(MAX_QUERY_IDS).forEach {
+        toggleSeparateReadStateChanges(it, read, accountId)
+        insertSeparateReadStateChanges(it, read, accountId)
+    }
+
+    @Query("Delete From ItemStateChange Where account_id = :accountId And read_change = 0 And star_change = 0")
+    fun deleteEmptyStateChanges(accountId: Int)
+
 }
\ No newline at end of file
@@ -27,9 +27,72 @@ interface ItemStateDao : BaseDao<ItemState> {
     @Query("Update ItemState set starred = :star Where remote_id = :remoteId And account_id = :accountId")
     fun updateItemStarState(star: Boolean, remoteId: String, accountId: Int)
 
+    @Query("Update ItemState set read = :read Where account_id = :accountId And remote_id In (Select remoteId From Item Where id In (:ids))")
+    fun updateItemsReadState(ids: List<Int>, read: Boolean, accountId: Int)
+
+    @Query("Insert Into ItemState (read, starred, remote_id, account_id) Select :read, starred, remoteId, :accountId From Item " +
+            "Where id In (:ids) And remoteId is not NULL And remoteId Not In (Select remote_id From ItemState Where account_id = :accountId)")
+    fun insertItemsReadState(ids: List<Int>, read: Boolean, accountId: Int)
+
+    /**
+     * Update the read state of the existing states and insert the missing ones,
+     * the ids are split to stay under SQLite variables limit
+     */
+    fun upsertItemsReadState(ids: List<Int>, read: Boolean, accountId: Int) = ids.chunked(MAX_QUERY_IDS).forEach {
+        updateItemsReadState(it, read, accountId)
+        insertItemsReadState(it, read, accountId)
+    }
+
+    @Query("Update ItemState set read = :read Where account_id = :accountId And remote_id <= :maxRemoteId")
+    fun setAllItemsReadState(read: Boolean, maxRemoteId: String?, accountId: Int)
+
+    @Query("Update ItemState set read = :read Where account_id = :accountId And remote_id In (Select remoteId From Item Where feed_id = :feedId)")
+    fun setAllFeedItemsReadState(feedId: Int, read: Boolean, accountId: Int)
+
+    @Query("Update ItemState set read = :read Where account_id = :accountId And remote_id In " +
+            "(Select Item.remoteId From Item Inner Join Feed On Item.feed_id = Feed.id Where Feed.folder_id = :folderId)")
+    fun setAllFolderItemsReadState(folderId: Int, read: Boolean, accountId: Int)
+
     @Query("Select case When Exists (Select remote_id, account_id From ItemState Where remote_id = :remoteId And account_id = :accountId) Then 1 else 0 End")
     fun itemStateExists(remoteId: String, accountId: Int): Boolean
 
+    @Query("Update ItemState set starred = 1 Where account_id = :accountId And remote_id In (:remoteIds)")
+    fun setItemsStarred(remoteIds: List<String>, accountId: Int)
+
+    @Query("Update ItemState set starred = 0 Where account_id = :accountId")
+    fun unstarItemStates(accountId: Int)
+
+    @Query("Select remote_id From ItemState Where account_id = :accountId And remote_id In (:remoteIds)")
+    fun selectExistingRemoteIds(remoteIds: List<String>, accountId: Int): List<String>
+
+    @Query("Update ItemState set read = :read Where account_id = :accountId And remote_id In (:remoteIds)")
+    fun setItemsReadState(remoteIds: List<String>, read: Boolean, accountId: Int)
+
+    @Query("Select count(*) From ItemState Where account_id = :accountId And read = 0")
+    fun countUnreadItemStates(accountId: Int): Int
+
+    /**
+     * Update the read state of the existing states, missing ones are inserted as not starred
+     */
+    fun upsertReadItemStates(remoteIds: List<String>, read: Boolean, accountId: Int) {
+        setItemsReadState(remoteIds, read, accountId)
+
+        val existingIds = selectExistingRemoteIds(remoteIds, accountId).toHashSet()
+        insertItemStates(remoteIds.filter { it !in existingIds }
+                .map { ItemState(read = read, starred = false, remoteId = it, accountId = accountId) })
+    }
+
+    /**
+     * Star the existing states, missing ones are inserted as read as they were not in the unread ids
+     */
+    fun upsertStarredItemStates(remoteIds: List<String>, accountId: Int) {
+        setItemsStarred(remoteIds, accountId)
+
+        val existingIds = selectExistingRemoteIds(remoteIds, accountId).toHashSet()
+        insertItemStates(remoteIds.filter { it !in existingIds }
+                .map { ItemState(read = true, starred = true, remoteId = it, accountId = accountId) })
+    }
+
     fun upsertItemReadState(itemState: ItemState) = Completable.create {
         if (itemStateExists(itemState.remoteId, itemState.accountId)) {
             updateItemReadState(itemState.read, itemState.remoteId, itemState.accountId)
@@ -0,0 +1,15 @@
+package com.readrops.db.dao
+
+import androidx.room.Dao
+import androidx.room.Query
+import com.readrops.db.entities.MarkAllReadOperation
+
+@Dao
+interface MarkAllReadOperationDao : BaseDao<MarkAllReadOperation> {
+
+    @Query("Select * From MarkAllReadOperation Where account_id = :accountId Order By id")
+    fun selectOperations(accountId: Int): List<MarkAllReadOperation>
+
+    @Query("Delete From MarkAllReadOperation Where id In (:ids)")
+    fun deleteOperations(ids: List<Int>)
+}
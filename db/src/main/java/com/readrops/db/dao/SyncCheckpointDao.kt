@@ -0,0 +1,20 @@
+package com.readrops.db.dao
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import com.readrops.db.entities.SyncCheckpoint
+
+@Dao
+interface SyncCheckpointDao {
+
+    @Query("Select * From SyncCheckpoint Where account_id = :accountId")
+    fun selectCheckpoint(accountId: Int): SyncCheckpoint?
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    fun upsertCheckpoint(checkpoint: SyncCheckpoint)
+
+    @Query("Delete From SyncCheckpoint Where account_id = :accountId")
+    fun deleteCheckpoint(accountId: Int)
+}
@@ -0,0 +1,28 @@
+package com.readrops.db.dao
+
+import androidx.lifecycle.LiveData
+import androidx.room.Dao
+import androidx.room.Query
+import com.readrops.db.entities.SyncRun
+import com.readrops.db.pojo.SyncRunWithAccount
+
+@Dao
+interface SyncRunDao : BaseDao<SyncRun> {
+
+    @Query("Select SyncRun.*, Account.account_name From SyncRun Inner Join Account On SyncRun.account_id = Account.id " +
+            "Order By start_time DESC Limit :limit")
+    fun selectLatestRuns(limit: Int): LiveData<List<SyncRunWithAccount>>
+
+    @Query("Select * From SyncRun Where account_id = :accountId Order By start_time DESC Limit :limit")
+    fun selectAccountRuns(accountId: Int, limit: Int): List<SyncRun>
+
+    @Query("Update SyncRun set notify_duration = :duration Where id In (:ids)")
+    fun updateNotifyDuration(ids: List<Long>, duration: Long)
+
+    /**
+     * Keep only the [count] latest runs of the account
+     */
+    @Query("Delete From SyncRun Where account_id = :accountId And id Not In " +
+            "(Select id From SyncRun Where account_id = :accountId Order By start_time DESC Limit :count)")
+    fun deleteOldRuns(accountId: Int, count: Int)
+}
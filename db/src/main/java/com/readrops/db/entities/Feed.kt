@@ -26,6 +26,11 @@ data class Feed(
         var remoteId: String? = null,
         @ColumnInfo(name = "account_id", index = true) var accountId: Int = 0,
         @ColumnInfo(name = "notification_enabled", defaultValue = "1") var isNotificationEnabled: Boolean = false,
+        @ColumnInfo(name = "retention_max_age") var retentionMaxAge: Int? = null,
+        @ColumnInfo(name = "retention_max_count") var retentionMaxCount: Int? = null,
+        @ColumnInfo(name = "original_url") var originalUrl: String? = null,
+        @ColumnInfo(name = "redirect_url") var redirectUrl: String? = null,
+        @ColumnInfo(name = "redirect_count", defaultValue = "0") var redirectCount: Int = 0,
         @Ignore var unreadCount: Int = 0,
         @Ignore var remoteFolderId: String? = null,
 ) : Parcelable
\ No newline at end of file
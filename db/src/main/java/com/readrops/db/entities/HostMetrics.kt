@@ -0,0 +1,56 @@
+package com.readrops.db.entities
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * Network measures aggregated for one host since the metrics were first recorded.
+ * Timings are totals in microseconds, divided by their count to get an average.
+ *
+ * @param connectTime        connection establishment, TLS handshake included
+ * @param ttfbTime           time to first byte, from the request headers to the response headers
+ * @param bytesReceived      response bodies bytes, compressed bodies being counted before decompression
+ * @param connectionsReused  calls served by a pooled connection, out of [connectionsAcquired]
+ */
+@Entity
+data class HostMetrics(
+        @PrimaryKey val host: String,
+        var calls: Long = 0,
+        @ColumnInfo(name = "failed_calls") var failedCalls: Long = 0,
+        @ColumnInfo(name = "dns_count") var dnsCount: Long = 0,
+        @ColumnInfo(name = "dns_time") var dnsTime: Long = 0,
+        @ColumnInfo(name = "connect_count") var connectCount: Long = 0,
+        @ColumnInfo(name = "connect_time") var connectTime: Long = 0,
+        @ColumnInfo(name = "tls_count") var tlsCount: Long = 0,
+        @ColumnInfo(name = "tls_time") var tlsTime: Long = 0,
+        @ColumnInfo(name = "ttfb_count") var ttfbCount: Long = 0,
+        @ColumnInfo(name = "ttfb_time") var ttfbTime: Long = 0,
+        @ColumnInfo(name = "bytes_received") var bytesReceived: Long = 0,
+        @ColumnInfo(name = "bytes_sent") var bytesSent: Long = 0,
+        @ColumnInfo(name = "connections_acquired") var connectionsAcquired: Long = 0,
+        @ColumnInfo(name = "connections_reused") var connectionsReused: Long = 0,
+) {
+
+    val reuseRatio get() = if (connectionsAcquired > 0) connectionsReused.toDouble() / connectionsAcquired else 0.0
+
+    /**
+     * Add the measures of [other], recorded for the same host
+     */
+    fun add(other: HostMetrics) {
+        calls += other.calls
+        failedCalls += other.failedCalls
+        dnsCount += other.dnsCount
+        dnsTime += other.dnsTime
+        connectCount += other.connectCount
+        connectTime += other.connectTime
+        tlsCount += other.tlsCount
+        tlsTime += other.tlsTime
+        ttfbCount += other.ttfbCount
+        ttfbTime += other.ttfbTime
+        bytesReceived += other.bytesReceived
+        bytesSent += other.bytesSent
+        connectionsAcquired += other.connectionsAcquired
+        connectionsReused += other.connectionsReused
+    }
+}
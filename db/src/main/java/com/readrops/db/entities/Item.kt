@@ -11,13 +11,13 @@ import org.joda.time.LocalDateTime
 data class Item(
         @PrimaryKey(autoGenerate = true) var id: Int = 0,
         var title: String? = null,
-        var description: String? = null,
-        @ColumnInfo(name = "clean_description") var cleanDescription: String? = null,
+        @Ignore var description: String? = null,
+        var preview: String? = null,
         var link: String? = null,
         @ColumnInfo(name = "image_link") var imageLink: String? = null,
         var author: String? = null,
         @ColumnInfo(name = "pub_date") var pubDate: LocalDateTime? = null,
-        var content: String? = null,
+        @Ignore var content: String? = null,
         @ColumnInfo(name = "feed_id", index = true) var feedId: Int = 0,
         @ColumnInfo(index = true) var guid: String? = null,
         @ColumnInfo(name = "read_time") var readTime: Double = 0.0,
@@ -35,4 +35,21 @@ data class Item(
         get() = imageLink != null
 
     override fun compareTo(other: Item): Int = this.pubDate!!.compareTo(other.pubDate)
+
+    companion object {
+        // the item list displays at most 3 lines of the preview
+        const val PREVIEW_MAX_LENGTH = 300
+
+        /**
+         * @param text plain text, without html
+         * @return the text cut to [PREVIEW_MAX_LENGTH] characters
+         */
+        @JvmStatic
+        fun buildPreview(text: String): String {
+            val trimmedText = text.trim()
+
+            return if (trimmedText.length <= PREVIEW_MAX_LENGTH) trimmedText
+            else trimmedText.substring(0, PREVIEW_MAX_LENGTH).trimEnd() + "…"
+        }
+    }
 }
\ No newline at end of file
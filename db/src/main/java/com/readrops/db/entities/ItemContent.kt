@@ -0,0 +1,38 @@
+package com.readrops.db.entities
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.ForeignKey
+import androidx.room.PrimaryKey
+import com.readrops.db.utils.Compression
+
+/**
+ * Item description and content, stored compressed apart from the item row so list queries
+ * and existence checks only scan small Item pages. Loaded only when an item is displayed.
+ */
+@Entity(foreignKeys = [ForeignKey(entity = Item::class, parentColumns = ["id"],
+        childColumns = ["item_id"], onDelete = ForeignKey.CASCADE)])
+class ItemContent(
+        @PrimaryKey @ColumnInfo(name = "item_id") val itemId: Int,
+        val description: ByteArray? = null,
+        val content: ByteArray? = null,
+) {
+
+    fun applyTo(item: Item) {
+        item.description = Compression.decompress(description)
+        item.content = Compression.decompress(content)
+    }
+
+    companion object {
+
+        /**
+         * @return the compressed content of the item, or null if it has neither description nor content
+         */
+        @JvmStatic
+        fun fromItem(item: Item): ItemContent? {
+            if (item.description == null && item.content == null) return null
+
+            return ItemContent(item.id, Compression.compress(item.description), Compression.compress(item.content))
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.readrops.db.entities
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.ForeignKey
+import androidx.room.PrimaryKey
+import com.readrops.db.entities.account.Account
+
+/**
+ * Pending mark-all-read action of a remote account, pushed with the server bulk endpoints on the next sync
+ * instead of journaling every item of the scope in [ItemStateChange].
+ *
+ * @param remoteTargetId remote id of the feed or the folder, null for [MarkAllReadScope.ACCOUNT]
+ * @param watermark      items up to this point are marked read:
+ * a timestamp in microseconds for FreshRSS, the newest remote item id for Nextcloud News
+ */
+@Entity(foreignKeys = [ForeignKey(entity = Account::class, parentColumns = ["id"],
+        childColumns = ["account_id"], onDelete = ForeignKey.CASCADE)])
+data class MarkAllReadOperation(
+        @PrimaryKey(autoGenerate = true) val id: Int = 0,
+        val scope: MarkAllReadScope,
+        @ColumnInfo(name = "remote_target_id") val remoteTargetId: String? = null,
+        val watermark: Long,
+        @ColumnInfo(name = "account_id", index = true) val accountId: Int,
+)
+
+enum class MarkAllReadScope {
+    ACCOUNT,
+    FOLDER,
+    FEED
+}
@@ -0,0 +1,22 @@
+package com.readrops.db.entities
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.ForeignKey
+import androidx.room.PrimaryKey
+import com.readrops.db.entities.account.Account
+
+/**
+ * Progress of an interrupted sync, so the next one can resume from it instead of starting over.
+ * There is at most one checkpoint per account, deleted once the sync succeeds.
+ *
+ * @param step     sync step the position belongs to, defined by the service
+ * @param position last position written in the step, an item id offset or a continuation token
+ */
+@Entity(foreignKeys = [ForeignKey(entity = Account::class, parentColumns = ["id"],
+        childColumns = ["account_id"], onDelete = ForeignKey.CASCADE)])
+data class SyncCheckpoint(
+        @PrimaryKey @ColumnInfo(name = "account_id") val accountId: Int,
+        val step: String,
+        val position: String? = null,
+)
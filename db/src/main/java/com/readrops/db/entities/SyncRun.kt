@@ -0,0 +1,44 @@
+package com.readrops.db.entities
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.ForeignKey
+import androidx.room.PrimaryKey
+import com.readrops.db.entities.account.Account
+
+/**
+ * Journal entry of one account sync, successful or not.
+ * Phases durations are in milliseconds, 0 when a sync has no such phase.
+ * Phases can overlap as some syncs fetch and insert at the same time.
+ *
+ * @param startTime     sync start, in milliseconds since epoch
+ * @param endTime       sync end, in milliseconds since epoch
+ * @param error         null if the sync succeeded
+ * @param bytesReceived bytes received from the network, compressed bodies being counted before decompression
+ * @param feedsSkipped  feeds not modified since the previous sync
+ */
+@Entity(foreignKeys = [ForeignKey(entity = Account::class, parentColumns = ["id"],
+        childColumns = ["account_id"], onDelete = ForeignKey.CASCADE)])
+data class SyncRun(
+        @PrimaryKey(autoGenerate = true) val id: Long = 0,
+        @ColumnInfo(name = "account_id", index = true) val accountId: Int,
+        @ColumnInfo(name = "start_time") val startTime: Long,
+        @ColumnInfo(name = "end_time") val endTime: Long,
+        val error: String? = null,
+        @ColumnInfo(name = "push_duration") val pushDuration: Long = 0,
+        @ColumnInfo(name = "fetch_duration") val fetchDuration: Long = 0,
+        @ColumnInfo(name = "parse_duration") val parseDuration: Long = 0,
+        @ColumnInfo(name = "reconcile_duration") val reconcileDuration: Long = 0,
+        @ColumnInfo(name = "insert_duration") val insertDuration: Long = 0,
+        @ColumnInfo(name = "notify_duration") val notifyDuration: Long = 0,
+        @ColumnInfo(name = "bytes_received") val bytesReceived: Long = 0,
+        @ColumnInfo(name = "items_inserted") val itemsInserted: Int = 0,
+        @ColumnInfo(name = "items_updated") val itemsUpdated: Int = 0,
+        @ColumnInfo(name = "feeds_skipped") val feedsSkipped: Int = 0,
+        @ColumnInfo(name = "feeds_failed") val feedsFailed: Int = 0,
+) {
+
+    val duration get() = endTime - startTime
+
+    val isSuccessful get() = error == null
+}
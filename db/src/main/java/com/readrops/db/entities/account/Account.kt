@@ -20,6 +20,8 @@ data class Account(
         var token: String? = null,
         var writeToken: String? = null, // TODO : see if there is a better solution to store specific service account fields
         @ColumnInfo(name = "notifications_enabled") var isNotificationsEnabled: Boolean = false,
+        // last full items states pull, in seconds
+        @ColumnInfo(name = "last_states_reconciliation") var lastStatesReconciliation: Long = 0,
         @Ignore var login: String? = null,
         @Ignore var password: String? = null,
 ) : Parcelable {
@@ -0,0 +1,18 @@
+package com.readrops.db.pojo
+
+import androidx.room.ColumnInfo
+
+/**
+ * New items count of a feed, with what a sync notification displays about it
+ */
+data class FeedNewItemsCount(
+        @ColumnInfo(name = "account_id") val accountId: Int,
+        @ColumnInfo(name = "feed_id") val feedId: Int,
+        @ColumnInfo(name = "item_count") val itemCount: Int,
+        @ColumnInfo(name = "feed_name") val feedName: String?,
+        @ColumnInfo(name = "icon_url") val iconUrl: String?,
+        @ColumnInfo(name = "text_color") val textColor: Int,
+        @ColumnInfo(name = "background_color") val backgroundColor: Int,
+        @ColumnInfo(name = "feed_notification_enabled") val isFeedNotificationEnabled: Boolean,
+        @ColumnInfo(name = "account_notifications_enabled") val isAccountNotificationsEnabled: Boolean,
+)
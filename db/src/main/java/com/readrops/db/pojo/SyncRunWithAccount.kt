@@ -0,0 +1,10 @@
+package com.readrops.db.pojo
+
+import androidx.room.ColumnInfo
+import androidx.room.Embedded
+import com.readrops.db.entities.SyncRun
+
+data class SyncRunWithAccount(
+        @Embedded val syncRun: SyncRun,
+        @ColumnInfo(name = "account_name") val accountName: String?,
+)
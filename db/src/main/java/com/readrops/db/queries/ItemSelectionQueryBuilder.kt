@@ -5,8 +5,9 @@ import androidx.sqlite.db.SupportSQLiteQueryBuilder
 
 object ItemSelectionQueryBuilder {
 
-    private val COLUMNS = arrayOf("Item.id", "Item.remoteId", "title", "Item.description", "content",
-            "link", "pub_date", "image_link", "author", "Item.read", "text_color",
+    // description and content are loaded apart from ItemContent table
+    private val COLUMNS = arrayOf("Item.id", "Item.remoteId", "title", "link", "pub_date",
+            "image_link", "author", "Item.read", "text_color",
             "background_color", "read_time", "Feed.name", "Feed.id as feedId", "siteUrl",
             "Folder.id as folder_id", "Folder.name as folder_name")
 
@@ -1,5 +1,6 @@
 package com.readrops.db.queries
 
+import androidx.sqlite.db.SimpleSQLiteQuery
 import androidx.sqlite.db.SupportSQLiteQuery
 import androidx.sqlite.db.SupportSQLiteQueryBuilder
 import com.readrops.db.filters.FilterType
@@ -7,7 +8,7 @@ import com.readrops.db.filters.ListSortType
 
 object ItemsQueryBuilder {
 
-    private val COLUMNS = arrayOf("Item.id", "Item.remoteId", "title", "clean_description", "image_link", "pub_date",
+    private val COLUMNS = arrayOf("Item.id", "Item.remoteId", "title", "preview", "image_link", "pub_date",
             "read_it_later", "Feed.name", "text_color", "background_color", "icon_url", "read_time",
             "Feed.id as feedId", "Feed.account_id", "Folder.id as folder_id", "Folder.name as folder_name")
 
@@ -33,12 +34,35 @@ object ItemsQueryBuilder {
     fun buildItemsQuery(queryFilters: QueryFilters): SupportSQLiteQuery =
             buildQuery(queryFilters, false)
 
-    private fun buildQuery(queryFilters: QueryFilters, separateState: Boolean): SupportSQLiteQuery = with(queryFilters) {
+    /**
+     * Query selecting the ids of the items matching the filters, minus the excluded ones.
+     * Used by bulk updates as a subquery, so the matching rows are never loaded.
+     */
+    @JvmStatic
+    fun buildItemIdsQuery(queryFilters: QueryFilters, separateState: Boolean, excludedIds: Collection<Int>): String {
+        checkFilters(queryFilters)
+
+        val selectAllJoin = if (separateState) SELECT_ALL_JOIN + SEPARATE_STATE_JOIN else SELECT_ALL_JOIN
+        val where = buildWhereClause(queryFilters, separateState) +
+                if (excludedIds.isNotEmpty()) " And Item.id Not In (${excludedIds.joinToString(",")})" else ""
+
+        return "Select Item.id From $selectAllJoin Where $where"
+    }
+
+    @JvmStatic
+    fun buildItemsCountQuery(queryFilters: QueryFilters, separateState: Boolean, excludedIds: Collection<Int>): SupportSQLiteQuery =
+            SimpleSQLiteQuery("Select count(*) From (${buildItemIdsQuery(queryFilters, separateState, excludedIds)})")
+
+    private fun checkFilters(queryFilters: QueryFilters) = with(queryFilters) {
         if (accountId == 0)
             throw IllegalArgumentException("AccountId must be greater than 0")
 
         if (filterType == FilterType.FEED_FILTER && filterFeedId == 0)
             throw IllegalArgumentException("FeedId must be greater than 0 if current filter is FEED_FILTER")
+    }
+
+    private fun buildQuery(queryFilters: QueryFilters, separateState: Boolean): SupportSQLiteQuery = with(queryFilters) {
+        checkFilters(this)
 
         val columns = if (separateState) COLUMNS.plus(SEPARATE_STATE_COLUMNS) else COLUMNS.plus(OTHER_COLUMNS)
         val selectAllJoin = if (separateState) SELECT_ALL_JOIN + SEPARATE_STATE_JOIN else SELECT_ALL_JOIN
@@ -0,0 +1,56 @@
+package com.readrops.db.utils
+
+import java.io.ByteArrayOutputStream
+import java.util.zip.Deflater
+import java.util.zip.Inflater
+
+object Compression {
+
+    private const val BUFFER_SIZE = 8192
+
+    @JvmStatic
+    fun compress(text: String?): ByteArray? {
+        if (text == null) return null
+
+        val deflater = Deflater(Deflater.DEFAULT_COMPRESSION)
+        val output = ByteArrayOutputStream(text.length / 3)
+        val buffer = ByteArray(BUFFER_SIZE)
+
+        try {
+            deflater.setInput(text.toByteArray(Charsets.UTF_8))
+            deflater.finish()
+
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer))
+            }
+        } finally {
+            deflater.end()
+        }
+
+        return output.toByteArray()
+    }
+
+    @JvmStatic
+    fun decompress(bytes: ByteArray?): String? {
+        if (bytes == null) return null
+
+        val inflater = Inflater()
+        val output = ByteArrayOutputStream(bytes.size * 3)
+        val buffer = ByteArray(BUFFER_SIZE)
+
+        try {
+            inflater.setInput(bytes)
+
+            while (!inflater.finished()) {
+                val count = inflater.inflate(buffer)
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) break
+
+                output.write(buffer, 0, count)
+            }
+        } finally {
+            inflater.end()
+        }
+
+        return output.toString(Charsets.UTF_8.name())
+    }
+}
@@ -0,0 +1,38 @@
+package com.readrops.db.utils
+
+import junit.framework.TestCase.assertEquals
+import junit.framework.TestCase.assertNull
+import junit.framework.TestCase.assertTrue
+import org.junit.Test
+
+class CompressionTest {
+
+    @Test
+    fun roundTripTest() {
+        val text = "<p>Hello, wörld 👋</p>".repeat(1000)
+
+        val compressed = Compression.compress(text)!!
+
+        assertTrue(compressed.size < text.length)
+        assertEquals(text, Compression.decompress(compressed))
+    }
+
+    @Test
+    fun largerThanBufferTest() {
+        // incompressible enough to need several inflate passes
+        val text = (0 until 20_000).joinToString("") { (it * 7919 % 65_521).toString(36) }
+
+        assertEquals(text, Compression.decompress(Compression.compress(text)))
+    }
+
+    @Test
+    fun emptyTextTest() {
+        assertEquals("", Compression.decompress(Compression.compress("")))
+    }
+
+    @Test
+    fun nullTest() {
+        assertNull(Compression.compress(null))
+        assertNull(Compression.decompress(null))
+    }
+}